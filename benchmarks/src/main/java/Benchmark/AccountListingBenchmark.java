@@ -0,0 +1,117 @@
+package Benchmark;
+
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.h2.tools.RunScript;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import DAO.DaoException;
+import DAO.MessageDAO;
+import Model.Message;
+import Util.ConnectionPool;
+import Util.SchemaMigrator;
+
+/**
+ * Per-account listing latency as the message table grows, on the original
+ * schema and after the migrations. The account being listed always has the
+ * same 100 messages, spread evenly through the table; every other row belongs
+ * to a second account.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class AccountListingBenchmark {
+
+    private static final int ACCOUNT_MESSAGES = 100;
+
+    @Param({ "10000", "100000", "1000000" })
+    public int rows;
+
+    @Param({ "baseline", "migrated" })
+    public String schema;
+
+    private ConnectionPool pool;
+    private MessageDAO messageDao;
+
+    @Setup
+    public void setUp() throws Exception {
+        JdbcDataSource raw = new JdbcDataSource();
+        raw.setURL("jdbc:h2:mem:account-listing;DB_CLOSE_DELAY=-1");
+        raw.setUser("sa");
+        raw.setPassword("sa");
+        pool = new ConnectionPool(raw, 10, 2, 5_000, 600_000, 0, 32);
+
+        try (Connection connection = pool.getConnection();
+                Reader script = new InputStreamReader(getClass().getResourceAsStream("/SocialMedia.sql"), StandardCharsets.UTF_8)) {
+            RunScript.execute(connection, script);
+            try (Statement stmt = connection.createStatement()) {
+                stmt.execute("INSERT INTO account (username, password) VALUES ('other', 'password')");
+            }
+            seed(connection);
+        }
+        if ("migrated".equals(schema)) {
+            new SchemaMigrator(pool).migrate();
+        }
+        messageDao = new MessageDAO(pool);
+    }
+
+    private void seed(Connection connection) throws Exception {
+        int spacing = rows / ACCOUNT_MESSAGES;
+        connection.setAutoCommit(false);
+        try (PreparedStatement stmt = connection.prepareStatement(
+                "INSERT INTO message (posted_by, message_text, time_posted_epoch) VALUES (?, ?, ?)")) {
+            for (int i = 1; i < rows; i++) {
+                stmt.setInt(1, i % spacing == 0 ? 1 : 2);
+                stmt.setString(2, "seeded message " + i);
+                stmt.setLong(3, 1669947792L + i);
+                stmt.addBatch();
+                if (i % 10_000 == 0) {
+                    stmt.executeBatch();
+                }
+            }
+            stmt.executeBatch();
+        }
+        connection.commit();
+        connection.setAutoCommit(true);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        try (Connection connection = pool.getConnection(); Statement stmt = connection.createStatement()) {
+            stmt.execute("DROP ALL OBJECTS");
+        }
+        pool.close();
+    }
+
+    @Benchmark
+    public List<Message> listAccountMessages() throws DaoException {
+        return messageDao.getMessagesByAccountId(1);
+    }
+
+    @Benchmark
+    public List<Message> listAccountMessagePage() throws DaoException {
+        return messageDao.getMessagesByAccountIdAfter(1, 0, 20);
+    }
+}
@@ -0,0 +1,141 @@
+package Benchmark;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.SQLException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import Controller.SocialMediaController;
+import DAO.AccountDAO;
+import DAO.MessageDAO;
+import Service.AccountService;
+import Service.MessageService;
+import io.javalin.Javalin;
+
+/**
+ * Creating and fetching size messages with one request each, against the batch
+ * endpoints doing the same in a single request. Scores are per size messages,
+ * so the two are directly comparable.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn")
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class BatchHttpBenchmark {
+
+    @Param({ "1000" })
+    public int accounts;
+
+    @Param({ "10000" })
+    public int messages;
+
+    @Param({ "10", "100" })
+    public int size;
+
+    private SeededDatabase database;
+    private Javalin app;
+    private HttpClient webClient;
+    private String baseUrl;
+    private String batchBody;
+
+    @Setup
+    public void setUp() throws SQLException {
+        database = new SeededDatabase("batch-http-benchmark", accounts, messages);
+        SocialMediaController controller = new SocialMediaController(
+                new AccountService(new AccountDAO(database.getPool())),
+                new MessageService(new MessageDAO(database.getPool())));
+        app = controller.startAPI();
+        app.start(0);
+        baseUrl = "http://localhost:" + app.port();
+        webClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+        StringBuilder body = new StringBuilder("[");
+        for (int i = 0; i < size; i++) {
+            body.append(i == 0 ? "" : ",").append(message(i % accounts + 1));
+        }
+        batchBody = body.append(']').toString();
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        app.stop();
+        database.close();
+    }
+
+    private static String message(int postedBy) {
+        return "{\"posted_by\":" + postedBy + ",\"message_text\":\"benchmark post\",\"time_posted_epoch\":1669947792}";
+    }
+
+    private String send(HttpRequest request) throws IOException, InterruptedException {
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException(request.method() + " " + request.uri() + " returned " + response.statusCode());
+        }
+        return response.body();
+    }
+
+    private String get(String path) throws IOException, InterruptedException {
+        return send(HttpRequest.newBuilder().uri(URI.create(baseUrl + path)).GET().build());
+    }
+
+    private String post(String path, String body) throws IOException, InterruptedException {
+        return send(HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + path))
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .header("Content-Type", "application/json")
+                .build());
+    }
+
+    @Benchmark
+    public int createOneByOne() throws Exception {
+        int length = 0;
+        for (int i = 0; i < size; i++) {
+            length += post("/messages", message(i % accounts + 1)).length();
+        }
+        return length;
+    }
+
+    @Benchmark
+    public String createBatch() throws Exception {
+        return post("/messages/batch", batchBody);
+    }
+
+    @Benchmark
+    public int getOneByOne() throws Exception {
+        int first = ThreadLocalRandom.current().nextInt(messages - size) + 1;
+        int length = 0;
+        for (int i = 0; i < size; i++) {
+            length += get("/messages/" + (first + i)).length();
+        }
+        return length;
+    }
+
+    @Benchmark
+    public String getBatch() throws Exception {
+        int first = ThreadLocalRandom.current().nextInt(messages - size) + 1;
+        StringBuilder ids = new StringBuilder();
+        for (int i = 0; i < size; i++) {
+            ids.append(i == 0 ? "" : ",").append(first + i);
+        }
+        return get("/messages?ids=" + ids);
+    }
+}
@@ -0,0 +1,91 @@
+package Benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import Model.Message;
+import Util.JsonCodec;
+import Util.ResponseCompressor;
+import Util.ResponseCompressor.Encoding;
+import Util.VersionedBodyCache;
+
+/**
+ * CPU cost of answering GET /messages with a list of messageCount messages:
+ * serializing only (uncompressed), serializing and compressing on every
+ * request (what Javalin's built-in gzip did), and serving the body cached for
+ * an unchanged version. The bytes each coding saves at the chosen level are
+ * printed once per trial, to set against the time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class CompressionBenchmark {
+
+    @Param({ "100", "10000" })
+    public int messageCount;
+
+    @Param({ "1", "6" })
+    public int level;
+
+    private final JsonCodec codec = JsonCodec.getInstance();
+    private List<Message> messages;
+    private ResponseCompressor compressor;
+    private VersionedBodyCache cache;
+
+    @Setup
+    public void setUp() {
+        messages = new ArrayList<>(messageCount);
+        for (int i = 1; i <= messageCount; i++) {
+            messages.add(new Message(i, 1 + i % 100, "message number " + i + " from the seeded timeline", 1669947792L + i));
+        }
+        compressor = new ResponseCompressor(0, level);
+        cache = new VersionedBodyCache(compressor, Long.MAX_VALUE);
+
+        byte[] identity = serialize();
+        for (Encoding encoding : new Encoding[] { Encoding.GZIP, Encoding.DEFLATE }) {
+            int compressed = compressor.compress(identity, encoding).length;
+            System.out.printf("%n%d messages, level %d: %s %d -> %d bytes (%.1f%% saved)%n", messageCount, level,
+                    encoding.getToken(), identity.length, compressed, 100.0 * (identity.length - compressed) / identity.length);
+        }
+    }
+
+    private byte[] serialize() {
+        return codec.toJsonBytes(messages, messages.getClass());
+    }
+
+    @Benchmark
+    public byte[] uncompressed() {
+        return serialize();
+    }
+
+    @Benchmark
+    public byte[] gzipPerRequest() {
+        return compressor.compress(serialize(), Encoding.GZIP);
+    }
+
+    @Benchmark
+    public byte[] deflatePerRequest() {
+        return compressor.compress(serialize(), Encoding.DEFLATE);
+    }
+
+    @Benchmark
+    public byte[] gzipCached() {
+        return cache.get(1, Encoding.GZIP, this::serialize).getBytes();
+    }
+}
@@ -0,0 +1,112 @@
+package Benchmark;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import Controller.SocialMediaController;
+import DAO.AccountDAO;
+import DAO.MessageDAO;
+import Service.AccountService;
+import Service.MessageService;
+import io.javalin.Javalin;
+
+/**
+ * A client polling a message and an account's listing that have not changed,
+ * sending the ETag it was given (answered 304 before any database work) or
+ * not (the full 200 response every time).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn")
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ConditionalGetBenchmark {
+
+    private static final String MESSAGE_PATH = "/messages/1";
+    private static final String ACCOUNT_PATH = "/accounts/1/messages";
+
+    @Param({ "100" })
+    public int accounts;
+
+    // messages per account is messages / accounts
+    @Param({ "10000", "100000" })
+    public int messages;
+
+    private SeededDatabase database;
+    private Javalin app;
+    private HttpClient webClient;
+    private String baseUrl;
+    private String messageTag;
+    private String accountTag;
+
+    @Setup
+    public void setUp() throws Exception {
+        database = new SeededDatabase("conditional-get-benchmark", accounts, messages);
+        SocialMediaController controller = new SocialMediaController(
+                new AccountService(new AccountDAO(database.getPool())),
+                new MessageService(new MessageDAO(database.getPool())));
+        app = controller.startAPI();
+        app.start(0);
+        baseUrl = "http://localhost:" + app.port();
+        webClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        messageTag = send(MESSAGE_PATH, null, 200).headers().firstValue("ETag").orElseThrow();
+        accountTag = send(ACCOUNT_PATH, null, 200).headers().firstValue("ETag").orElseThrow();
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        app.stop();
+        database.close();
+    }
+
+    private HttpResponse<String> send(String path, String ifNoneMatch, int expectedStatus) throws IOException, InterruptedException {
+        HttpRequest.Builder request = HttpRequest.newBuilder().uri(URI.create(baseUrl + path)).GET();
+        if (ifNoneMatch != null) {
+            request.header("If-None-Match", ifNoneMatch);
+        }
+        HttpResponse<String> response = webClient.send(request.build(), HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != expectedStatus) {
+            throw new IllegalStateException("GET " + path + " returned " + response.statusCode());
+        }
+        return response;
+    }
+
+    @Benchmark
+    public String pollMessage() throws Exception {
+        return send(MESSAGE_PATH, null, 200).body();
+    }
+
+    @Benchmark
+    public String pollMessageWithTag() throws Exception {
+        return send(MESSAGE_PATH, messageTag, 304).body();
+    }
+
+    @Benchmark
+    public String pollAccountMessages() throws Exception {
+        return send(ACCOUNT_PATH, null, 200).body();
+    }
+
+    @Benchmark
+    public String pollAccountMessagesWithTag() throws Exception {
+        return send(ACCOUNT_PATH, accountTag, 304).body();
+    }
+}
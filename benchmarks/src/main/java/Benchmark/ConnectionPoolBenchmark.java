@@ -0,0 +1,87 @@
+package Benchmark;
+
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.h2.tools.RunScript;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import DAO.AccountDAO;
+import DAO.DaoException;
+import Model.Account;
+import Util.ConnectionPool;
+
+/**
+ * Per-request DAO latency with a raw JdbcDataSource, which opens a new physical
+ * connection on every call, versus the bounded ConnectionPool.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ConnectionPoolBenchmark {
+
+    @Param({ "raw", "pooled" })
+    public String dataSource;
+
+    private ConnectionPool pool;
+    private AccountDAO accountDao;
+
+    @Setup
+    public void setUp() throws Exception {
+        JdbcDataSource raw = new JdbcDataSource();
+        raw.setURL("jdbc:h2:./target/bench/connection-pool;");
+        raw.setUser("sa");
+        raw.setPassword("sa");
+        try (Connection connection = raw.getConnection();
+                Reader script = new InputStreamReader(getClass().getResourceAsStream("/SocialMedia.sql"), StandardCharsets.UTF_8)) {
+            RunScript.execute(connection, script);
+        }
+
+        DataSource source = raw;
+        if ("pooled".equals(dataSource)) {
+            pool = new ConnectionPool(raw, 10, 2, 5_000, 600_000, 0, 0);
+            source = pool;
+        }
+        accountDao = new AccountDAO(source);
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (pool != null) {
+            pool.close();
+        }
+    }
+
+    @Benchmark
+    public Optional<Account> getAccountById() throws DaoException {
+        return accountDao.getAccountById(1);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Optional<Account> getAccountByIdConcurrent() throws DaoException {
+        return accountDao.getAccountById(1);
+    }
+}
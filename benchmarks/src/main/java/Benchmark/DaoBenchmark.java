@@ -0,0 +1,109 @@
+package Benchmark;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import DAO.AccountDAO;
+import DAO.DaoException;
+import DAO.MessageDAO;
+import Model.Account;
+import Model.Message;
+
+/**
+ * MessageDAO and AccountDAO operations against a seeded database, uncached.
+ * Lookups pick a random existing row each time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class DaoBenchmark {
+
+    @Param({ "1000" })
+    public int accounts;
+
+    @Param({ "10000", "100000" })
+    public int messages;
+
+    private SeededDatabase database;
+    private MessageDAO messageDao;
+    private AccountDAO accountDao;
+
+    @Setup
+    public void setUp() throws SQLException {
+        database = new SeededDatabase("dao-benchmark", accounts, messages);
+        messageDao = new MessageDAO(database.getPool());
+        accountDao = new AccountDAO(database.getPool());
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        database.close();
+    }
+
+    private int randomMessageId() {
+        return ThreadLocalRandom.current().nextInt(messages) + 1;
+    }
+
+    private int randomAccountId() {
+        return ThreadLocalRandom.current().nextInt(accounts) + 1;
+    }
+
+    @Benchmark
+    public Optional<Message> getMessageById() throws DaoException {
+        return messageDao.getMessageById(randomMessageId());
+    }
+
+    @Benchmark
+    public List<Message> getMessagesByAccountId() throws DaoException {
+        return messageDao.getMessagesByAccountId(randomAccountId());
+    }
+
+    @Benchmark
+    public List<Message> getMessagesAfter() throws DaoException {
+        return messageDao.getMessagesAfter(randomMessageId(), 50);
+    }
+
+    @Benchmark
+    public Optional<Message> replaceMessageText() throws DaoException {
+        return messageDao.replaceMessageText(randomMessageId(), "updated message");
+    }
+
+    @Benchmark
+    public Message createMessage() throws DaoException {
+        return messageDao.createMessage(new Message(randomAccountId(), "benchmark post", 1669947792L));
+    }
+
+    @Benchmark
+    public Optional<Account> getAccountById() throws DaoException {
+        return accountDao.getAccountById(randomAccountId());
+    }
+
+    @Benchmark
+    public Optional<Account> getAccountByUsername() throws DaoException {
+        return accountDao.getAccountByUsername("user" + randomAccountId());
+    }
+
+    @Benchmark
+    public boolean doesUsernameExist() throws DaoException {
+        return accountDao.doesUsernameExist("user" + randomAccountId());
+    }
+}
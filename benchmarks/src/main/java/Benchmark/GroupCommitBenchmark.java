@@ -0,0 +1,98 @@
+package Benchmark;
+
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.util.concurrent.TimeUnit;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.h2.tools.RunScript;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import DAO.MessageDAO;
+import Model.Account;
+import Model.Message;
+import Service.MessageInsertPipeline;
+import Service.MessageService;
+import Util.BoundedCache;
+import Util.ConnectionPool;
+
+/**
+ * Sustained posts per second from 16 concurrent callers of MessageService.createMessage,
+ * committing every message on its own versus sharing commits through the insert pipeline.
+ * Uses a file database so a commit costs what it does in the application.
+ * The direct runs ignore maxLingerMillis.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Threads(16)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class GroupCommitBenchmark {
+
+    @Param({ "direct", "pipelined" })
+    public String mode;
+
+    @Param({ "0", "2" })
+    public long maxLingerMillis;
+
+    /**
+     * Extra H2 URL settings. WRITE_DELAY=0 writes the store on every commit instead of
+     * once a second in the background, which is closer to a server database's commit cost.
+     */
+    @Param({ "", "WRITE_DELAY=0" })
+    public String settings;
+
+    private ConnectionPool pool;
+    private MessageInsertPipeline pipeline;
+    private MessageService messageService;
+    private final Account account = new Account(1, "testuser1", "password");
+
+    @Setup
+    public void setUp() throws Exception {
+        JdbcDataSource raw = new JdbcDataSource();
+        raw.setURL("jdbc:h2:./target/bench/group-commit;" + settings);
+        raw.setUser("sa");
+        raw.setPassword("sa");
+        pool = new ConnectionPool(raw, 10, 2, 5_000, 600_000, 0, 32);
+        try (Connection connection = pool.getConnection();
+                Reader script = new InputStreamReader(getClass().getResourceAsStream("/SocialMedia.sql"), StandardCharsets.UTF_8)) {
+            RunScript.execute(connection, script);
+        }
+        MessageDAO messageDao = new MessageDAO(pool);
+        if ("pipelined".equals(mode)) {
+            pipeline = new MessageInsertPipeline(messageDao, 64, maxLingerMillis, 10_000);
+        }
+        messageService = new MessageService(messageDao, new BoundedCache<>(1_000, 0), pipeline);
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (pipeline != null) {
+            System.out.printf("%n%d batches, %.1f rows per batch, %d fallbacks%n",
+                    pipeline.getBatchCount(), pipeline.getAverageBatchSize(), pipeline.getFallbackCount());
+            pipeline.close();
+        }
+        pool.close();
+    }
+
+    @Benchmark
+    public Message createMessage() {
+        return messageService.createMessage(new Message(1, "benchmark post", 1669947792L), account);
+    }
+}
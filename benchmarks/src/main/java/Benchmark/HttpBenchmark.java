@@ -0,0 +1,119 @@
+package Benchmark;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.SQLException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import Controller.SocialMediaController;
+import DAO.AccountDAO;
+import DAO.MessageDAO;
+import Service.AccountService;
+import Service.MessageService;
+import io.javalin.Javalin;
+
+/**
+ * End-to-end requests through SocialMediaController, served on an ephemeral port
+ * over a seeded database, from one HttpClient per benchmark (HTTP/1.1, kept alive).
+ * Each benchmark fails if a response is not 200.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn")
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class HttpBenchmark {
+
+    @Param({ "1000" })
+    public int accounts;
+
+    @Param({ "10000" })
+    public int messages;
+
+    private SeededDatabase database;
+    private Javalin app;
+    private HttpClient webClient;
+    private String baseUrl;
+
+    @Setup
+    public void setUp() throws SQLException {
+        database = new SeededDatabase("http-benchmark", accounts, messages);
+        SocialMediaController controller = new SocialMediaController(
+                new AccountService(new AccountDAO(database.getPool())),
+                new MessageService(new MessageDAO(database.getPool())));
+        app = controller.startAPI();
+        app.start(0);
+        baseUrl = "http://localhost:" + app.port();
+        webClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        app.stop();
+        database.close();
+    }
+
+    private String send(HttpRequest request) throws IOException, InterruptedException {
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException(request.method() + " " + request.uri() + " returned " + response.statusCode());
+        }
+        return response.body();
+    }
+
+    private String get(String path) throws IOException, InterruptedException {
+        return send(HttpRequest.newBuilder().uri(URI.create(baseUrl + path)).GET().build());
+    }
+
+    private String post(String path, String body) throws IOException, InterruptedException {
+        return send(HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + path))
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .header("Content-Type", "application/json")
+                .build());
+    }
+
+    @Benchmark
+    public String getMessageById() throws Exception {
+        return get("/messages/" + (ThreadLocalRandom.current().nextInt(messages) + 1));
+    }
+
+    @Benchmark
+    public String getMessagePage() throws Exception {
+        return get("/messages?limit=50");
+    }
+
+    @Benchmark
+    public String getMessagesByAccountId() throws Exception {
+        return get("/accounts/" + (ThreadLocalRandom.current().nextInt(accounts) + 1) + "/messages");
+    }
+
+    @Benchmark
+    public String createMessage() throws Exception {
+        return post("/messages", "{\"posted_by\":1,\"message_text\":\"benchmark post\",\"time_posted_epoch\":1669947792}");
+    }
+
+    @Benchmark
+    public String login() throws Exception {
+        int account = ThreadLocalRandom.current().nextInt(accounts) + 1;
+        return post("/login", "{\"username\":\"user" + account + "\",\"password\":\"password\"}");
+    }
+}
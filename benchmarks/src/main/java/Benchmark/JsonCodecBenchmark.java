@@ -0,0 +1,86 @@
+package Benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Model.Account;
+import Model.Message;
+import Util.JsonCodec;
+
+/**
+ * Parse + serialize throughput of one request/response round through a fresh
+ * ObjectMapper per request, as the controller used to do, versus the shared
+ * JsonCodec.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class JsonCodecBenchmark {
+
+    private static final String MESSAGE_JSON = "{\"posted_by\":1,\"message_text\":\"hello message\",\"time_posted_epoch\":1669947792}";
+    private static final String ACCOUNT_JSON = "{\"username\":\"user\",\"password\":\"password\"}";
+
+    private final JsonCodec codec = JsonCodec.getInstance();
+    private List<Message> messages;
+
+    @Setup
+    public void setUp() {
+        messages = new ArrayList<>();
+        for (int i = 1; i <= 100; i++) {
+            messages.add(new Message(i, 1, "message number " + i, 1669947792L + i));
+        }
+    }
+
+    @Benchmark
+    public String messagePerRequestMapper() throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        Message message = mapper.readValue(MESSAGE_JSON, Message.class);
+        return new ObjectMapper().writeValueAsString(message);
+    }
+
+    @Benchmark
+    public String messageSharedCodec() throws Exception {
+        Message message = codec.readMessage(MESSAGE_JSON);
+        return codec.toJsonString(message, Message.class);
+    }
+
+    @Benchmark
+    public String accountPerRequestMapper() throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        Account account = mapper.readValue(ACCOUNT_JSON, Account.class);
+        return new ObjectMapper().writeValueAsString(account);
+    }
+
+    @Benchmark
+    public String accountSharedCodec() throws Exception {
+        Account account = codec.readAccount(ACCOUNT_JSON);
+        return codec.toJsonString(account, Account.class);
+    }
+
+    @Benchmark
+    public String messageListPerRequestMapper() throws Exception {
+        return new ObjectMapper().writeValueAsString(messages);
+    }
+
+    @Benchmark
+    public String messageListSharedCodec() {
+        return codec.toJsonString(messages, messages.getClass());
+    }
+}
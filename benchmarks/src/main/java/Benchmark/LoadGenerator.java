@@ -0,0 +1,469 @@
+package Benchmark;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import Controller.SocialMediaController;
+import DAO.AccountDAO;
+import DAO.MessageDAO;
+import Model.Account;
+import Model.Message;
+import Service.AccountService;
+import Service.AuthTokenService;
+import Service.MessageService;
+import Util.DatabaseExecutor;
+import Util.JsonCodec;
+import io.javalin.Javalin;
+
+/**
+ * HTTP load generator for the eight routes of SocialMediaController.
+ *
+ * It first seeds the target through the API itself (registers accounts and posts
+ * messages), then drives a weighted mix of routes for a fixed duration and prints
+ * throughput and latency percentiles per route.
+ *
+ * Closed loop (-mode closed): -threads workers each send a request, wait for the
+ * response, and send the next. Throughput is whatever the server sustains, which
+ * makes it the quickest way to find the saturation point, but a stalled server also
+ * stalls the load, so latencies during a stall are under-reported.
+ *
+ * Open loop (-mode open): requests are scheduled at a constant -rate per second,
+ * regardless of how fast responses come back. Latency is measured from each
+ * request's scheduled start, not from when a worker got around to sending it, so
+ * time spent queued behind a slow server is counted (coordinated-omission
+ * correction). Service time, measured from the actual send, is reported alongside.
+ * -threads then only caps the requests in flight; if it is too low the run reports
+ * how many requests started late.
+ *
+ * Without -url the API is started in this JVM on an ephemeral port over a private
+ * in-memory database; pass -url to load a separately started server instead.
+ *
+ * java -cp target/benchmarks.jar Benchmark.LoadGenerator -mode open -rate 2000 -duration 30
+ */
+public class LoadGenerator {
+
+    enum Route {
+        REGISTER("POST /register"),
+        LOGIN("POST /login"),
+        CREATE_MESSAGE("POST /messages"),
+        GET_ALL_MESSAGES("GET /messages"),
+        GET_MESSAGE("GET /messages/{id}"),
+        DELETE_MESSAGE("DELETE /messages/{id}"),
+        UPDATE_MESSAGE("PATCH /messages/{id}"),
+        GET_ACCOUNT_MESSAGES("GET /accounts/{id}/messages");
+
+        private final String label;
+
+        Route(String label) {
+            this.label = label;
+        }
+    }
+
+    /**
+     * Relative weights of each route when -mix is not given: mostly reads, with
+     * the full listing kept rare because its cost grows with the table.
+     */
+    private static final String DEFAULT_MIX = "REGISTER=2,LOGIN=5,CREATE_MESSAGE=15,GET_ALL_MESSAGES=1,"
+            + "GET_MESSAGE=40,DELETE_MESSAGE=5,UPDATE_MESSAGE=10,GET_ACCOUNT_MESSAGES=22";
+
+    private final Map<String, String> options;
+    private final JsonCodec codec = JsonCodec.getInstance();
+    private final HttpClient webClient;
+    private final String runId = Long.toString(System.currentTimeMillis(), 36);
+    private String baseUrl;
+
+    private final Route[] routes;
+    private final int[] cumulativeWeights;
+
+    private int[] accountIds;
+    private String[] usernames;
+    private int[] messageIds;
+    private final ConcurrentLinkedQueue<Integer> deletableMessageIds = new ConcurrentLinkedQueue<>();
+    private final AtomicLong registrations = new AtomicLong();
+
+    private final Map<Route, Histogram> responseTimes = new EnumMap<>(Route.class);
+    private final Map<Route, Histogram> serviceTimes = new EnumMap<>(Route.class);
+    private final Map<Route, LongAdder> errors = new EnumMap<>(Route.class);
+    private final LongAdder lateStarts = new LongAdder();
+
+    LoadGenerator(Map<String, String> options) {
+        this.options = options;
+        this.webClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+
+        Map<Route, Integer> mix = parseMix(option("mix", DEFAULT_MIX));
+        this.routes = mix.keySet().toArray(new Route[0]);
+        this.cumulativeWeights = new int[routes.length];
+        int total = 0;
+        for (int i = 0; i < routes.length; i++) {
+            total += mix.get(routes[i]);
+            cumulativeWeights[i] = total;
+        }
+        for (Route route : Route.values()) {
+            responseTimes.put(route, new ConcurrentHistogram(3));
+            serviceTimes.put(route, new ConcurrentHistogram(3));
+            errors.put(route, new LongAdder());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("-") || args[i].equals("-help") || args[i].equals("-h") || i + 1 == args.length) {
+                usage();
+                return;
+            }
+            options.put(args[i].substring(1), args[++i]);
+        }
+        new LoadGenerator(options).run();
+    }
+
+    private static void usage() {
+        System.out.println("Options:");
+        System.out.println("  -url <base url>        server to load; default: start one in this JVM");
+        System.out.println("  -mode closed|open      closed loop or constant arrival rate (default closed)");
+        System.out.println("  -threads <n>           workers; in open mode the cap on requests in flight (default 16 / 256)");
+        System.out.println("  -rate <per second>     arrival rate in open mode (default 1000)");
+        System.out.println("  -duration <seconds>    measured run length (default 30)");
+        System.out.println("  -warmup <seconds>      load applied before measuring (default 10)");
+        System.out.println("  -accounts <n>          accounts to register before the run (default 100)");
+        System.out.println("  -messages <n>          messages to post before the run (default 1000)");
+        System.out.println("  -mix ROUTE=w,...       route weights (default " + DEFAULT_MIX + ")");
+        System.out.println("  -hgrm <directory>      also write each route's full percentile distribution there");
+    }
+
+    void run() throws Exception {
+        SeededDatabase database = null;
+        Javalin app = null;
+        if (options.containsKey("url")) {
+            baseUrl = options.get("url").replaceAll("/$", "");
+        } else {
+            database = new SeededDatabase("load-generator", 1, 1);
+            // every request comes from this one address, so the write limit is left off
+            app = new SocialMediaController(
+                    new AccountService(new AccountDAO(database.getPool())),
+                    new MessageService(new MessageDAO(database.getPool())),
+                    DatabaseExecutor.getDefault(), AuthTokenService.getDefault(), null).startAPI();
+            app.start(0);
+            baseUrl = "http://localhost:" + app.port();
+        }
+        try {
+            boolean open = "open".equals(option("mode", "closed"));
+            int threads = Integer.parseInt(option("threads", open ? "256" : "16"));
+            seed(Integer.parseInt(option("accounts", "100")), Integer.parseInt(option("messages", "1000")), Math.min(threads, 32));
+
+            long warmupNanos = TimeUnit.SECONDS.toNanos(Long.parseLong(option("warmup", "10")));
+            long durationNanos = TimeUnit.SECONDS.toNanos(Long.parseLong(option("duration", "30")));
+            long start = System.nanoTime();
+            long measureFrom = start + warmupNanos;
+            long end = measureFrom + durationNanos;
+
+            System.out.printf("Loading %s (%s loop, %d threads%s) for %ds after %ds warmup%n", baseUrl,
+                    open ? "open" : "closed", threads, open ? ", " + option("rate", "1000") + "/s" : "",
+                    TimeUnit.NANOSECONDS.toSeconds(durationNanos), TimeUnit.NANOSECONDS.toSeconds(warmupNanos));
+            ExecutorService workers = Executors.newFixedThreadPool(threads);
+            List<Future<?>> running = new ArrayList<>();
+            if (open) {
+                long intervalNanos = Math.max(1, (long) (1e9 / Double.parseDouble(option("rate", "1000"))));
+                AtomicLong sequence = new AtomicLong();
+                for (int i = 0; i < threads; i++) {
+                    running.add(workers.submit(() -> openLoop(sequence, start, intervalNanos, measureFrom, end)));
+                }
+            } else {
+                for (int i = 0; i < threads; i++) {
+                    running.add(workers.submit(() -> closedLoop(measureFrom, end)));
+                }
+            }
+            for (Future<?> worker : running) {
+                worker.get();
+            }
+            workers.shutdown();
+            report(open, durationNanos);
+        } finally {
+            if (app != null) {
+                app.stop();
+                database.close();
+            }
+        }
+    }
+
+    private void closedLoop(long measureFrom, long end) {
+        long now;
+        while ((now = System.nanoTime()) < end) {
+            Route route = pickRoute();
+            boolean ok = send(route);
+            long done = System.nanoTime();
+            if (now >= measureFrom) {
+                record(route, now, now, done, ok);
+            }
+        }
+    }
+
+    private void openLoop(AtomicLong sequence, long start, long intervalNanos, long measureFrom, long end) {
+        while (true) {
+            long intended = start + sequence.getAndIncrement() * intervalNanos;
+            if (intended >= end) {
+                return;
+            }
+            long wait;
+            while ((wait = intended - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            long sent = System.nanoTime();
+            Route route = pickRoute();
+            boolean ok = send(route);
+            long done = System.nanoTime();
+            if (intended >= measureFrom) {
+                if (sent - intended > TimeUnit.MILLISECONDS.toNanos(1)) {
+                    lateStarts.increment();
+                }
+                record(route, intended, sent, done, ok);
+            }
+        }
+    }
+
+    private void record(Route route, long intended, long sent, long done, boolean ok) {
+        responseTimes.get(route).recordValue(done - intended);
+        serviceTimes.get(route).recordValue(done - sent);
+        if (!ok) {
+            errors.get(route).increment();
+        }
+    }
+
+    private Route pickRoute() {
+        int ticket = ThreadLocalRandom.current().nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < routes.length; i++) {
+            if (ticket < cumulativeWeights[i]) {
+                return routes[i];
+            }
+        }
+        return routes[routes.length - 1];
+    }
+
+    /**
+     * Sends one request for the route.
+     * @return true if the server answered 2xx
+     */
+    private boolean send(Route route) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int account = random.nextInt(accountIds.length);
+        int messageId = messageIds[random.nextInt(messageIds.length)];
+        try {
+            switch (route) {
+            case REGISTER:
+                return post("/register", accountJson("load" + runId + "_new" + registrations.incrementAndGet())) != null;
+            case LOGIN:
+                return post("/login", accountJson(usernames[account])) != null;
+            case CREATE_MESSAGE:
+                String created = post("/messages", messageJson(accountIds[account]));
+                if (created == null) {
+                    return false;
+                }
+                deletableMessageIds.offer(codec.readMessage(created).getMessage_id());
+                return true;
+            case GET_ALL_MESSAGES:
+                return send(request("/messages").GET()) != null;
+            case GET_MESSAGE:
+                return send(request("/messages/" + messageId).GET()) != null;
+            case DELETE_MESSAGE:
+                // only delete what this run posted, so the seeded messages stay readable
+                Integer deletable = deletableMessageIds.poll();
+                return send(request("/messages/" + (deletable == null ? Integer.MAX_VALUE : deletable)).DELETE()) != null;
+            case UPDATE_MESSAGE:
+                return send(request("/messages/" + messageId).method("PATCH",
+                        HttpRequest.BodyPublishers.ofString("{\"message_text\":\"updated by load generator\"}"))) != null;
+            case GET_ACCOUNT_MESSAGES:
+                return send(request("/accounts/" + accountIds[account] + "/messages").GET()) != null;
+            default:
+                throw new IllegalArgumentException("Unknown route " + route);
+            }
+        } catch (IOException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    // SEED through the API, in parallel
+    private void seed(int accountCount, int messageCount, int parallelism) throws Exception {
+        long start = System.nanoTime();
+        accountIds = new int[accountCount];
+        usernames = new String[accountCount];
+        messageIds = new int[messageCount];
+        ExecutorService seeders = Executors.newFixedThreadPool(parallelism);
+        try {
+            List<Future<?>> pending = new ArrayList<>();
+            for (int i = 0; i < accountCount; i++) {
+                int index = i;
+                pending.add(seeders.submit(() -> {
+                    usernames[index] = "load" + runId + "_" + index;
+                    String body = post("/register", accountJson(usernames[index]));
+                    if (body == null) {
+                        throw new IllegalStateException("Could not register " + usernames[index]);
+                    }
+                    accountIds[index] = codec.readAccount(body).getAccount_id();
+                    return null;
+                }));
+            }
+            await(pending);
+            for (int i = 0; i < messageCount; i++) {
+                int index = i;
+                pending.add(seeders.submit(() -> {
+                    String body = post("/messages", messageJson(accountIds[index % accountCount]));
+                    if (body == null) {
+                        throw new IllegalStateException("Could not post a seed message");
+                    }
+                    messageIds[index] = codec.readMessage(body).getMessage_id();
+                    return null;
+                }));
+            }
+            await(pending);
+        } finally {
+            seeders.shutdown();
+        }
+        System.out.printf("Seeded %d accounts and %d messages in %d ms%n", accountCount, messageCount,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    private static void await(List<Future<?>> pending) throws Exception {
+        for (Future<?> future : pending) {
+            future.get();
+        }
+        pending.clear();
+    }
+
+    private String accountJson(String username) {
+        Account account = new Account(username, "password");
+        return codec.toJsonString(account, Account.class);
+    }
+
+    private String messageJson(int postedBy) {
+        Message message = new Message(postedBy, "posted by load generator", System.currentTimeMillis() / 1000);
+        return codec.toJsonString(message, Message.class);
+    }
+
+    private HttpRequest.Builder request(String path) {
+        return HttpRequest.newBuilder().uri(URI.create(baseUrl + path)).timeout(Duration.ofSeconds(30));
+    }
+
+    private String post(String path, String json) throws IOException, InterruptedException {
+        return send(request(path).POST(HttpRequest.BodyPublishers.ofString(json)).header("Content-Type", "application/json"));
+    }
+
+    /**
+     * @return the response body, or null if the status was not 2xx
+     */
+    private String send(HttpRequest.Builder request) throws IOException, InterruptedException {
+        HttpResponse<String> response = webClient.send(request.build(), HttpResponse.BodyHandlers.ofString());
+        return response.statusCode() / 100 == 2 ? response.body() : null;
+    }
+
+    // REPORT
+    private void report(boolean open, long durationNanos) throws IOException {
+        double seconds = durationNanos / 1e9;
+        if (open) {
+            System.out.println();
+            System.out.println("Response time, from each request's scheduled start (coordinated-omission corrected):");
+            printTable(responseTimes, seconds);
+            System.out.println();
+            System.out.println("Service time, from when the request was actually sent:");
+            printTable(serviceTimes, seconds);
+            long late = lateStarts.sum();
+            if (late > 0) {
+                System.out.printf("%n%d requests started more than 1 ms late; the server is saturated or -threads is too low%n", late);
+            }
+        } else {
+            System.out.println();
+            printTable(serviceTimes, seconds);
+        }
+        if (options.containsKey("hgrm")) {
+            writeDistributions(Paths.get(options.get("hgrm")), open ? responseTimes : serviceTimes);
+        }
+    }
+
+    private void printTable(Map<Route, Histogram> histograms, double seconds) {
+        System.out.printf("%-30s %10s %8s %10s %10s %10s %10s %10s%n",
+                "route", "requests", "errors", "req/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms");
+        Histogram total = new Histogram(3);
+        long totalErrors = 0;
+        for (Route route : Route.values()) {
+            Histogram histogram = histograms.get(route);
+            if (histogram.getTotalCount() == 0) {
+                continue;
+            }
+            printRow(route.label, histogram, errors.get(route).sum(), seconds);
+            total.add(histogram);
+            totalErrors += errors.get(route).sum();
+        }
+        printRow("all", total, totalErrors, seconds);
+    }
+
+    private static void printRow(String label, Histogram histogram, long errorCount, double seconds) {
+        System.out.printf("%-30s %10d %8d %10.1f %10.3f %10.3f %10.3f %10.3f%n",
+                label, histogram.getTotalCount(), errorCount, histogram.getTotalCount() / seconds,
+                histogram.getValueAtPercentile(50) / 1e6, histogram.getValueAtPercentile(99) / 1e6,
+                histogram.getValueAtPercentile(99.9) / 1e6, histogram.getMaxValue() / 1e6);
+    }
+
+    private static void writeDistributions(Path directory, Map<Route, Histogram> histograms) throws IOException {
+        Files.createDirectories(directory);
+        for (Map.Entry<Route, Histogram> entry : histograms.entrySet()) {
+            if (entry.getValue().getTotalCount() == 0) {
+                continue;
+            }
+            Path file = directory.resolve(entry.getKey().name().toLowerCase() + ".hgrm");
+            try (PrintStream out = new PrintStream(new FileOutputStream(file.toFile()))) {
+                entry.getValue().outputPercentileDistribution(out, 1e6);
+            }
+        }
+        System.out.println("Wrote percentile distributions (ms) to " + directory);
+    }
+
+    private String option(String name, String defaultValue) {
+        return options.getOrDefault(name, defaultValue);
+    }
+
+    private static Map<Route, Integer> parseMix(String mix) {
+        Map<Route, Integer> weights = new EnumMap<>(Route.class);
+        for (String part : mix.split(",")) {
+            String[] pair = part.trim().split("=");
+            int weight = Integer.parseInt(pair[1].trim());
+            if (weight > 0) {
+                weights.put(Route.valueOf(pair[0].trim().toUpperCase()), weight);
+            }
+        }
+        if (weights.isEmpty()) {
+            throw new IllegalArgumentException("The route mix must give at least one route a positive weight");
+        }
+        return weights;
+    }
+}
@@ -0,0 +1,76 @@
+package Benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import Model.Message;
+import Util.AsyncLogSink;
+import Util.AsyncLogger;
+
+/**
+ * Cost on the calling thread of one per-request INFO line that formats a Message:
+ * slf4j-simple writing synchronously, the same line through AsyncLogger, and the
+ * sampled variant MessageService now uses. slf4j-simple writes to a file so the
+ * console does not skew the run.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.slf4j.simpleLogger.logFile=target/bench/logging-benchmark.log")
+@Threads(4)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class LoggingBenchmark {
+
+    private final Logger syncLogger = LoggerFactory.getLogger("Benchmark.sync");
+    private final AsyncLogger asyncLogger = AsyncLogger.getLogger(LoggingBenchmark.class);
+    private final Message message = new Message(1, 1, "a message that is logged on every request", 1669947792L);
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Drops {
+        public long dropped;
+        private long droppedAtStart;
+
+        @Setup(Level.Iteration)
+        public void start() {
+            droppedAtStart = AsyncLogSink.getDefault().getDroppedCount();
+        }
+
+        @TearDown(Level.Iteration)
+        public void stop() {
+            dropped = AsyncLogSink.getDefault().getDroppedCount() - droppedAtStart;
+        }
+    }
+
+    @Benchmark
+    public void synchronous() {
+        syncLogger.info("Creating message: {}", message);
+    }
+
+    @Benchmark
+    public void async(Drops drops) {
+        asyncLogger.info("Creating message: {}", message);
+    }
+
+    @Benchmark
+    public void asyncSampled(Drops drops) {
+        asyncLogger.infoSampled("Creating message: {}", message);
+    }
+}
@@ -0,0 +1,127 @@
+package Benchmark;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.SQLException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import Controller.SocialMediaController;
+import DAO.AccountDAO;
+import DAO.MessageDAO;
+import Service.AccountService;
+import Service.MessageService;
+import io.javalin.Javalin;
+
+/**
+ * Message reads while other clients log in as fast as they can. Password checks
+ * run on the PasswordHasher's own threads, at most half the cores by default,
+ * so the reads' latency should stay close to the same reads sent with no logins
+ * (the "alone" group) however slow the hash is; compare mixed:read with
+ * alone:readAlone, and across iterations values. On a single core the one hash
+ * thread still takes its share of that core.
+ *
+ * Logins answered with 503 (hasher queue full) count as completed; reads must
+ * return 200.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn")
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class LoginIsolationBenchmark {
+
+    @Param({ "1000" })
+    public int accounts;
+
+    @Param({ "10000" })
+    public int messages;
+
+    // PBKDF2 iterations, read by PasswordHasher when it is first used
+    @Param({ "10000", "310000" })
+    public int iterations;
+
+    private SeededDatabase database;
+    private Javalin app;
+    private HttpClient webClient;
+    private String baseUrl;
+
+    @Setup
+    public void setUp() throws SQLException {
+        System.setProperty("auth.hash.iterations", String.valueOf(iterations));
+        database = new SeededDatabase("login-isolation-benchmark", accounts, messages);
+        SocialMediaController controller = new SocialMediaController(
+                new AccountService(new AccountDAO(database.getPool())),
+                new MessageService(new MessageDAO(database.getPool())));
+        app = controller.startAPI();
+        app.start(0);
+        baseUrl = "http://localhost:" + app.port();
+        webClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        app.stop();
+        database.close();
+    }
+
+    private HttpResponse<String> send(HttpRequest request) throws IOException, InterruptedException {
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(4)
+    public String read() throws Exception {
+        HttpResponse<String> response = send(HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + "/messages/" + (ThreadLocalRandom.current().nextInt(messages) + 1)))
+                .GET()
+                .build());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("GET /messages/{id} returned " + response.statusCode());
+        }
+        return response.body();
+    }
+
+    @Benchmark
+    @Group("alone")
+    @GroupThreads(4)
+    public String readAlone() throws Exception {
+        return read();
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(4)
+    public String login() throws Exception {
+        int account = ThreadLocalRandom.current().nextInt(accounts) + 1;
+        HttpResponse<String> response = send(HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + "/login"))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"username\":\"user" + account + "\",\"password\":\"password\"}"))
+                .header("Content-Type", "application/json")
+                .build());
+        if (response.statusCode() != 200 && response.statusCode() != 503) {
+            throw new IllegalStateException("POST /login returned " + response.statusCode());
+        }
+        return response.body();
+    }
+}
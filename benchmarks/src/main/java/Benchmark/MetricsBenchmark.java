@@ -0,0 +1,52 @@
+package Benchmark;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import Util.HttpMetrics;
+import Util.LatencyHistogram;
+import Util.Metrics;
+
+/**
+ * What recording a request costs on the hot path: one histogram sample, and a
+ * full per-route record (lookup, histogram, status counter), from four threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Threads(4)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class MetricsBenchmark {
+
+    private final Metrics metrics = new Metrics();
+    private final LatencyHistogram histogram = metrics.histogram("benchmark_seconds", "Benchmark latencies");
+    private final HttpMetrics httpMetrics = new HttpMetrics(metrics);
+
+    @Benchmark
+    public void recordHistogram() {
+        histogram.record(ThreadLocalRandom.current().nextLong(50_000_000));
+    }
+
+    @Benchmark
+    public void recordRequest() {
+        httpMetrics.record("GET", "/messages/{message_id}", 200, ThreadLocalRandom.current().nextLong(50_000_000));
+    }
+
+    @Benchmark
+    public String scrape() {
+        return metrics.scrape();
+    }
+}
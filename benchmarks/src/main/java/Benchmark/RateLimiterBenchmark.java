@@ -0,0 +1,73 @@
+package Benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import Util.RateLimiter;
+
+/**
+ * Cost of one rate limit check: a key that is let through (one CAS), a key
+ * that is over its limit (no write at all), and a stream of keys cycling
+ * through fewer keys than the table holds (all limited after the first pass)
+ * or far more (nearly every check evicts a bucket and takes a fresh one). The
+ * threaded variant has four threads taking permits from the same bucket.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class RateLimiterBenchmark {
+
+    private static final int TABLE_SIZE = 65_536;
+
+    @Param({ "1000", "1000000" })
+    public int keys;
+
+    // effectively unlimited, so every check takes a permit
+    private RateLimiter open;
+    // one permit a second, so after the first check every check is refused
+    private RateLimiter closed;
+    private long next;
+
+    @Setup
+    public void setUp() {
+        open = new RateLimiter(1e9, 1_000_000, TABLE_SIZE);
+        closed = new RateLimiter(1, 1, TABLE_SIZE);
+    }
+
+    @Benchmark
+    public long allowedSameKey() {
+        return open.tryAcquire(42);
+    }
+
+    @Benchmark
+    public long limitedSameKey() {
+        return closed.tryAcquire(42);
+    }
+
+    @Benchmark
+    public long manyKeys() {
+        // not thread-safe, and need not be: it only picks the next key
+        return closed.tryAcquire(next++ % keys);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public long allowedSameKeyContended() {
+        return open.tryAcquire(42);
+    }
+}
@@ -0,0 +1,135 @@
+package Benchmark;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import Util.InvertedIndex;
+
+/**
+ * Query and update latency of the message search index, on synthetic messages
+ * whose words follow a Zipf distribution over a fixed vocabulary (a few very
+ * common words, a long tail of rare ones), like real text.
+ *
+ * Setup prints the index's own size estimate and the heap it actually took,
+ * measured around building it, so memory can be compared across sizes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class SearchIndexBenchmark {
+
+    private static final int VOCABULARY = 50_000;
+    private static final int WORDS_PER_MESSAGE = 12;
+
+    @Param({ "100000", "1000000" })
+    public int messages;
+
+    private String[] vocabulary;
+    private double[] cumulative;
+    private InvertedIndex index;
+    private int nextId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        vocabulary = new String[VOCABULARY];
+        cumulative = new double[VOCABULARY];
+        double total = 0;
+        for (int i = 0; i < VOCABULARY; i++) {
+            vocabulary[i] = "w" + Integer.toString(i, 36);
+            total += 1.0 / (i + 1);
+            cumulative[i] = total;
+        }
+        for (int i = 0; i < VOCABULARY; i++) {
+            cumulative[i] /= total;
+        }
+
+        Random random = new Random(42);
+        long heapBefore = usedHeap();
+        index = new InvertedIndex();
+        for (int id = 1; id <= messages; id++) {
+            index.add(id, message(random));
+        }
+        long heapAfter = usedHeap();
+        nextId = messages + 1;
+        System.out.printf("%n%d messages: %d terms, %d postings, estimated %d MB, measured %d MB%n",
+                index.getDocumentCount(), index.getTermCount(), index.getPostingCount(),
+                index.estimateBytes() >> 20, (heapAfter - heapBefore) >> 20);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private String word(Random random) {
+        int position = java.util.Arrays.binarySearch(cumulative, random.nextDouble());
+        return vocabulary[Math.min(VOCABULARY - 1, position < 0 ? -position - 1 : position)];
+    }
+
+    private String message(Random random) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < WORDS_PER_MESSAGE; i++) {
+            text.append(word(random)).append(' ');
+        }
+        return text.toString();
+    }
+
+    // ranks 0-9 are in a large share of all messages
+    private String commonWord() {
+        return vocabulary[ThreadLocalRandom.current().nextInt(10)];
+    }
+
+    // ranks 1000-1999 are in a few hundred messages per million
+    private String midWord() {
+        return vocabulary[1000 + ThreadLocalRandom.current().nextInt(1000)];
+    }
+
+    @Benchmark
+    public List<Integer> andCommonWords() {
+        return index.search(commonWord() + " " + commonWord(), true, 50);
+    }
+
+    @Benchmark
+    public List<Integer> andCommonAndRareWord() {
+        return index.search(commonWord() + " " + midWord(), true, 50);
+    }
+
+    @Benchmark
+    public List<Integer> orRareWords() {
+        return index.search(midWord() + " " + midWord() + " " + midWord(), false, 50);
+    }
+
+    @Benchmark
+    public List<Integer> orCommonWords() {
+        return index.search(commonWord() + " " + commonWord(), false, 50);
+    }
+
+    // a new message appended to the index, as createMessage does
+    @Benchmark
+    public int addMessage() {
+        int id = nextId++;
+        index.add(id, message(ThreadLocalRandom.current()));
+        return id;
+    }
+}
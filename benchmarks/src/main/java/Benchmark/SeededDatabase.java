@@ -0,0 +1,111 @@
+package Benchmark;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.h2.tools.RunScript;
+
+import Util.ConnectionPool;
+import Util.SchemaMigrator;
+
+/**
+ * A private in-memory H2 database with the application schema, fully migrated,
+ * and a configurable number of accounts and messages behind a ConnectionPool.
+ *
+ * Accounts are named user1..userN with password "password". Messages are spread
+ * round-robin over the accounts and have consecutive IDs starting at 1, so any ID
+ * from 1 to messageCount exists.
+ */
+class SeededDatabase implements AutoCloseable {
+
+    private final ConnectionPool pool;
+    private final int accountCount;
+    private final int messageCount;
+
+    SeededDatabase(String name, int accountCount, int messageCount) throws SQLException {
+        if (accountCount < 1 || messageCount < 1) {
+            throw new IllegalArgumentException("A seeded database needs at least one account and one message");
+        }
+        JdbcDataSource raw = new JdbcDataSource();
+        raw.setURL("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+        raw.setUser("sa");
+        raw.setPassword("sa");
+        this.pool = new ConnectionPool(raw, 10, 2, 5_000, 600_000, 0, 32);
+        this.accountCount = accountCount;
+        this.messageCount = messageCount;
+
+        try (Connection connection = pool.getConnection();
+                Reader script = new InputStreamReader(SeededDatabase.class.getResourceAsStream("/SocialMedia.sql"), StandardCharsets.UTF_8)) {
+            RunScript.execute(connection, script);
+            try (Statement stmt = connection.createStatement()) {
+                // start from empty tables so IDs line up with the seed loop
+                stmt.execute("DELETE FROM message");
+                stmt.execute("DELETE FROM account");
+                stmt.execute("ALTER TABLE message ALTER COLUMN message_id RESTART WITH 1");
+                stmt.execute("ALTER TABLE account ALTER COLUMN account_id RESTART WITH 1");
+            }
+            seed(connection);
+        } catch (IOException e) {
+            throw new SQLException("Could not read the schema script", e);
+        }
+        new SchemaMigrator(pool).migrate();
+    }
+
+    private void seed(Connection connection) throws SQLException {
+        connection.setAutoCommit(false);
+        try (PreparedStatement stmt = connection.prepareStatement("INSERT INTO account (username, password) VALUES (?, ?)")) {
+            for (int i = 1; i <= accountCount; i++) {
+                stmt.setString(1, "user" + i);
+                stmt.setString(2, "password");
+                stmt.addBatch();
+                if (i % 10_000 == 0) {
+                    stmt.executeBatch();
+                }
+            }
+            stmt.executeBatch();
+        }
+        try (PreparedStatement stmt = connection.prepareStatement(
+                "INSERT INTO message (posted_by, message_text, time_posted_epoch) VALUES (?, ?, ?)")) {
+            for (int i = 1; i <= messageCount; i++) {
+                stmt.setInt(1, (i - 1) % accountCount + 1);
+                stmt.setString(2, "seeded message " + i);
+                stmt.setLong(3, 1669947792L + i);
+                stmt.addBatch();
+                if (i % 10_000 == 0) {
+                    stmt.executeBatch();
+                }
+            }
+            stmt.executeBatch();
+        }
+        connection.commit();
+        connection.setAutoCommit(true);
+    }
+
+    ConnectionPool getPool() {
+        return pool;
+    }
+
+    int getAccountCount() {
+        return accountCount;
+    }
+
+    int getMessageCount() {
+        return messageCount;
+    }
+
+    @Override
+    public void close() throws SQLException {
+        try (Connection connection = pool.getConnection(); Statement stmt = connection.createStatement()) {
+            stmt.execute("DROP ALL OBJECTS");
+        } finally {
+            pool.close();
+        }
+    }
+}
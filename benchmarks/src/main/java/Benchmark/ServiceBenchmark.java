@@ -0,0 +1,105 @@
+package Benchmark;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import DAO.AccountDAO;
+import DAO.MessageDAO;
+import Model.Account;
+import Model.Message;
+import Model.MessagePage;
+import Service.AccountService;
+import Service.MessageService;
+
+/**
+ * MessageService and AccountService methods against a seeded database, with
+ * their caches and filters in place. hotMessages bounds the IDs that are read
+ * so the message cache can hold all of them, or not.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn")
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ServiceBenchmark {
+
+    @Param({ "1000" })
+    public int accounts;
+
+    @Param({ "100000" })
+    public int messages;
+
+    @Param({ "1000", "100000" })
+    public int hotMessages;
+
+    private SeededDatabase database;
+    private MessageService messageService;
+    private AccountService accountService;
+    private Account account;
+
+    @Setup
+    public void setUp() throws SQLException {
+        database = new SeededDatabase("service-benchmark", accounts, messages);
+        messageService = new MessageService(new MessageDAO(database.getPool()));
+        accountService = new AccountService(new AccountDAO(database.getPool()));
+        account = accountService.getAccountById(1).orElseThrow();
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        database.close();
+    }
+
+    private int randomAccountId() {
+        return ThreadLocalRandom.current().nextInt(accounts) + 1;
+    }
+
+    @Benchmark
+    public Optional<Message> getMessageById() {
+        return messageService.getMessageById(ThreadLocalRandom.current().nextInt(Math.min(hotMessages, messages)) + 1);
+    }
+
+    @Benchmark
+    public MessagePage getMessagePage() {
+        return messageService.getMessagePage(null, 50);
+    }
+
+    @Benchmark
+    public List<Message> getMessagesByAccountId() {
+        return messageService.getMessagesByAccountId(randomAccountId());
+    }
+
+    @Benchmark
+    public Message createMessage() {
+        return messageService.createMessage(new Message(1, "benchmark post", 1669947792L), account);
+    }
+
+    @Benchmark
+    public Optional<Account> getAccountById() {
+        return accountService.getAccountById(randomAccountId());
+    }
+
+    @Benchmark
+    public boolean isUsernameTaken() {
+        // half registered names, half names that were never registered
+        int n = ThreadLocalRandom.current().nextInt(2 * accounts) + 1;
+        return accountService.isUsernameTaken("user" + n);
+    }
+}
@@ -0,0 +1,107 @@
+package Benchmark;
+
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.h2.tools.RunScript;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import DAO.AccountDAO;
+import DAO.DaoException;
+import DAO.MessageDAO;
+import Model.Account;
+import Model.Message;
+import Util.ConnectionPool;
+
+/**
+ * Hot by-id lookups through the pool with and without the per-connection
+ * prepared statement cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class StatementCacheBenchmark {
+
+    @Param({ "0", "32" })
+    public int statementCacheSize;
+
+    private ConnectionPool pool;
+    private AccountDAO accountDao;
+    private MessageDAO messageDao;
+
+    @Setup
+    public void setUp() throws Exception {
+        JdbcDataSource raw = new JdbcDataSource();
+        raw.setURL("jdbc:h2:./target/bench/statement-cache;");
+        raw.setUser("sa");
+        raw.setPassword("sa");
+        pool = new ConnectionPool(raw, 10, 2, 5_000, 600_000, 0, statementCacheSize);
+        try (Connection connection = pool.getConnection();
+                Reader script = new InputStreamReader(getClass().getResourceAsStream("/SocialMedia.sql"), StandardCharsets.UTF_8)) {
+            RunScript.execute(connection, script);
+        }
+        accountDao = new AccountDAO(pool);
+        messageDao = new MessageDAO(pool);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.close();
+    }
+
+    /**
+     * Reports the cache hit ratio next to the timings.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class CacheCounters {
+        public long hits;
+        public long misses;
+
+        private long hitsAtStart;
+        private long missesAtStart;
+
+        @Setup(Level.Iteration)
+        public void start(StatementCacheBenchmark benchmark) {
+            hitsAtStart = benchmark.pool.getStatementCacheHits();
+            missesAtStart = benchmark.pool.getStatementCacheMisses();
+        }
+
+        @TearDown(Level.Iteration)
+        public void stop(StatementCacheBenchmark benchmark) {
+            hits = benchmark.pool.getStatementCacheHits() - hitsAtStart;
+            misses = benchmark.pool.getStatementCacheMisses() - missesAtStart;
+        }
+    }
+
+    @Benchmark
+    public Optional<Account> getAccountById(CacheCounters counters) throws DaoException {
+        return accountDao.getAccountById(1);
+    }
+
+    @Benchmark
+    public Optional<Message> getMessageById(CacheCounters counters) throws DaoException {
+        return messageDao.getMessageById(1);
+    }
+}
@@ -0,0 +1,93 @@
+package Benchmark;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import DAO.DaoException;
+import DAO.MessageDAO;
+import Model.Message;
+
+/**
+ * Timeline pages against the full listing clients used to pull and sort
+ * themselves. A page should cost the same however large the table is; the
+ * full listing grows with it.
+ *
+ * Seeded messages are posted one second apart, in id order, starting just
+ * after SEED_EPOCH.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class TimelineBenchmark {
+
+    private static final long SEED_EPOCH = 1669947792L;
+    private static final int PAGE = 50;
+
+    @Param({ "1000" })
+    public int accounts;
+
+    @Param({ "100000", "1000000" })
+    public int messages;
+
+    private SeededDatabase database;
+    private MessageDAO messageDao;
+
+    @Setup
+    public void setUp() throws SQLException {
+        database = new SeededDatabase("timeline-benchmark", accounts, messages);
+        messageDao = new MessageDAO(database.getPool());
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        database.close();
+    }
+
+    private long randomTime() {
+        return SEED_EPOCH + ThreadLocalRandom.current().nextInt(messages) + 1;
+    }
+
+    @Benchmark
+    public List<Message> newestPage() throws DaoException {
+        return messageDao.getMessagesInTimeRange(null, null, true, null, 0, PAGE + 1);
+    }
+
+    // a page from the middle of a one-hour window, as when following a cursor
+    @Benchmark
+    public List<Message> rangePageAfterCursor() throws DaoException {
+        long since = randomTime();
+        return messageDao.getMessagesInTimeRange(since, since + 3600, false, since + 600, 0, PAGE + 1);
+    }
+
+    @Benchmark
+    public List<Message> accountNewestPage() throws DaoException {
+        int accountId = ThreadLocalRandom.current().nextInt(accounts) + 1;
+        return messageDao.getMessagesByAccountIdInTimeRange(accountId, null, null, true, null, 0, PAGE + 1);
+    }
+
+    // what clients did before: fetch everything and keep the newest page
+    @Benchmark
+    public List<Message> fullListingNewestPage() throws DaoException {
+        List<Message> all = messageDao.getAllMessages();
+        all.sort((a, b) -> Long.compare(b.getTime_posted_epoch(), a.getTime_posted_epoch()));
+        return all.subList(0, PAGE + 1);
+    }
+}
@@ -0,0 +1,119 @@
+package Benchmark;
+
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.h2.tools.RunScript;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import DAO.DaoException;
+import DAO.MessageDAO;
+import Model.Message;
+import Util.ConnectionPool;
+
+/**
+ * The statements PATCH and DELETE run: one statement that writes and returns
+ * the affected row, for a single message and for a batch. The delete
+ * benchmarks insert the rows they delete, so they include those inserts.
+ *
+ * statements and connections are totals per iteration; divide by ops for per-request counts.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class UpdateDeleteBenchmark {
+
+    private ConnectionPool pool;
+    private MessageDAO messageDao;
+    private int updates;
+
+    @Setup
+    public void setUp() throws Exception {
+        JdbcDataSource raw = new JdbcDataSource();
+        raw.setURL("jdbc:h2:mem:update-delete;DB_CLOSE_DELAY=-1");
+        raw.setUser("sa");
+        raw.setPassword("sa");
+        pool = new ConnectionPool(raw, 10, 2, 5_000, 600_000, 0, 32);
+        try (Connection connection = pool.getConnection();
+                Reader script = new InputStreamReader(getClass().getResourceAsStream("/SocialMedia.sql"), StandardCharsets.UTF_8)) {
+            RunScript.execute(connection, script);
+        }
+        messageDao = new MessageDAO(pool);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.close();
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class StatementCounters {
+        public long statements;
+        public long connections;
+        public long ops;
+
+        private long statementsAtStart;
+        private long connectionsAtStart;
+
+        @Setup(Level.Iteration)
+        public void start(UpdateDeleteBenchmark benchmark) {
+            statementsAtStart = benchmark.pool.getStatementCacheHits() + benchmark.pool.getStatementCacheMisses();
+            connectionsAtStart = benchmark.pool.getBorrowCount();
+            ops = 0;
+        }
+
+        @TearDown(Level.Iteration)
+        public void stop(UpdateDeleteBenchmark benchmark) {
+            statements = benchmark.pool.getStatementCacheHits() + benchmark.pool.getStatementCacheMisses() - statementsAtStart;
+            connections = benchmark.pool.getBorrowCount() - connectionsAtStart;
+        }
+    }
+
+    @Benchmark
+    public Optional<Message> replaceMessageText(StatementCounters counters) throws DaoException {
+        counters.ops++;
+        return messageDao.replaceMessageText(1, "updated text " + (updates++ & 15));
+    }
+
+    @Benchmark
+    public Optional<Message> deleteMessageReturning(StatementCounters counters) throws DaoException {
+        counters.ops++;
+        int id = messageDao.createMessage(new Message(1, "to be deleted", 1669947792L)).getMessage_id();
+        return messageDao.deleteMessageReturning(id);
+    }
+
+    @Benchmark
+    public List<Message> deleteMessagesReturning(StatementCounters counters) throws DaoException {
+        counters.ops++;
+        List<Message> created = messageDao.createMessages(List.of(new Message(1, "to be deleted", 1669947792L),
+                new Message(1, "to be deleted", 1669947792L), new Message(1, "to be deleted", 1669947792L)));
+        List<Integer> ids = new ArrayList<>(created.size());
+        for (Message message : created) {
+            ids.add(message.getMessage_id());
+        }
+        return messageDao.deleteMessagesReturning(ids);
+    }
+}
@@ -0,0 +1,125 @@
+package Benchmark;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.SQLException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import Controller.SocialMediaController;
+import DAO.AccountDAO;
+import DAO.MessageDAO;
+import Service.AccountService;
+import Service.MessageService;
+import io.javalin.Javalin;
+
+/**
+ * The same requests as HttpBenchmark, sent by many client threads at once, with
+ * the server handling them on Jetty's platform thread pool or on virtual threads.
+ *
+ * Each benchmark reports throughput and the sampled latency distribution (p99,
+ * p99.9, ...), so both can be compared between the two modes. The client
+ * concurrency is 256 by default, above the 250 threads the platform pool may
+ * start; change it with -t. The database executor's queue is made longer than
+ * that, so no request is turned away with 503. Database work runs on platform
+ * or virtual threads to match. The virtual mode needs JDK 21 or later, e.g.
+ * /path/to/jdk21/bin/java -jar target/benchmarks.jar VirtualThreadBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = { "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn",
+        "-Ddb.executor.queueCapacity=1000" })
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(256)
+public class VirtualThreadBenchmark {
+
+    @Param({ "platform", "virtual" })
+    public String threads;
+
+    @Param({ "1000" })
+    public int accounts;
+
+    @Param({ "10000" })
+    public int messages;
+
+    private SeededDatabase database;
+    private Javalin app;
+    private HttpClient webClient;
+    private String baseUrl;
+
+    @Setup
+    public void setUp() throws SQLException {
+        boolean virtual = "virtual".equals(threads);
+        if (virtual && Runtime.version().feature() < 21) {
+            throw new IllegalStateException("threads=virtual needs JDK 21 or later, running " + Runtime.version());
+        }
+        System.setProperty(SocialMediaController.VIRTUAL_THREADS_PROPERTY, String.valueOf(virtual));
+        database = new SeededDatabase("virtual-thread-benchmark", accounts, messages);
+        SocialMediaController controller = new SocialMediaController(
+                new AccountService(new AccountDAO(database.getPool())),
+                new MessageService(new MessageDAO(database.getPool())));
+        app = controller.startAPI();
+        app.start(0);
+        baseUrl = "http://localhost:" + app.port();
+        webClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        app.stop();
+        database.close();
+        System.clearProperty(SocialMediaController.VIRTUAL_THREADS_PROPERTY);
+    }
+
+    private String send(HttpRequest request) throws IOException, InterruptedException {
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException(request.method() + " " + request.uri() + " returned " + response.statusCode());
+        }
+        return response.body();
+    }
+
+    @Benchmark
+    public String getMessageById() throws Exception {
+        return send(HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + "/messages/" + (ThreadLocalRandom.current().nextInt(messages) + 1)))
+                .GET()
+                .build());
+    }
+
+    @Benchmark
+    public String getMessagesByAccountId() throws Exception {
+        return send(HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + "/accounts/" + (ThreadLocalRandom.current().nextInt(accounts) + 1) + "/messages"))
+                .GET()
+                .build());
+    }
+
+    @Benchmark
+    public String createMessage() throws Exception {
+        return send(HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + "/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"posted_by\":1,\"message_text\":\"benchmark post\",\"time_posted_epoch\":1669947792}"))
+                .header("Content-Type", "application/json")
+                .build());
+    }
+}
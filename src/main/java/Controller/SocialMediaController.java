@@ -1,125 +1,839 @@
 package Controller;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 
-import DAO.DaoException;
 import Model.Account;
 import Model.Message;
+import Model.MessagePage;
+import Model.MessageResult;
 import Service.AccountService;
+import Service.AuthTokenService;
 import Service.MessageService;
 import Service.ServiceException;
+import Service.UsernameFilter;
+import Util.BoundedCache;
+import Util.DatabaseExecutor;
+import Util.HttpMetrics;
+import Util.InvertedIndex;
+import Util.JsonCodec;
+import Util.Metrics;
+import Util.RateLimiter;
+import Util.ResponseCompressor;
+import Util.ResponseCompressor.Encoding;
+import Util.VersionedBodyCache;
 import io.javalin.Javalin;
 import io.javalin.http.Context;
+import io.javalin.http.Handler;
+import io.javalin.http.HttpResponseException;
+import io.javalin.http.HttpStatus;
+import io.javalin.http.UnauthorizedResponse;
+import io.javalin.util.ConcurrencyUtil;
+import io.javalin.util.LoomUtil;
 
 public class SocialMediaController {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(SocialMediaController.class);
+
+    /**
+     * Set to true to run request handlers on virtual threads (JDK 21+) instead of
+     * Jetty's platform thread pool. Read each time startAPI is called.
+     */
+    public static final String VIRTUAL_THREADS_PROPERTY = "server.virtualThreads";
+
+    /**
+     * Set to true when the app is only reachable through a proxy or load balancer that
+     * appends the client's address to X-Forwarded-For. The write limiter then charges
+     * callers without a token by the last address in that header, the one the proxy
+     * added, instead of by the connection's address, which would be the proxy's for
+     * every client. Leave it unset otherwise: clients can send the header themselves.
+     * Read when the controller is created.
+     */
+    public static final String TRUST_FORWARDED_FOR_PROPERTY = "ratelimit.trustForwardedFor";
+    /**
+     * System property: how many streamed message listings may be written at once
+     * (2 by default). Read when the controller is created.
+     */
+    public static final String MAX_STREAMS_PROPERTY = "http.stream.maxConcurrent";
+
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int MAX_BATCH_SIZE = Integer.getInteger("messages.batch.maxSize", 1000);
+    private static final String NDJSON = "application/x-ndjson";
+    private static final String PROMETHEUS_TEXT = "text/plain; version=0.0.4; charset=utf-8";
+    private static final String RETRY_AFTER_SECONDS = "1";
+    private static final String BEARER_PREFIX = "Bearer ";
+    private static final String AUTHENTICATED_ACCOUNT_ID = "authenticated_account_id";
+    private static final String ENTITY_TAG = "entity_tag";
+    // set on keys for client addresses, so they never collide with account ids
+    private static final long ADDRESS_KEY = Long.MIN_VALUE;
+    private static final long LIST_BODY_CACHE_MAX_BYTES = Long.getLong("http.compression.listCacheMaxBytes", 64L * 1024 * 1024);
+
+    /**
+     * Response header carrying the token issued by a successful login.
+     */
+    public static final String AUTH_TOKEN_HEADER = "X-Auth-Token";
+
     private final AccountService accountService;
     private final MessageService messageService;
+    private final DatabaseExecutor databaseExecutor;
+    private final AuthTokenService tokenService;
+    private final JsonCodec codec;
+    private final Metrics metrics;
+    private final HttpMetrics httpMetrics;
+    private final RateLimiter writeLimiter;
+    private final boolean trustForwardedFor;
+    private final ResponseCompressor compressor;
+    // each stream holds a connection and a database thread until the client has read it all
+    private final Semaphore streams;
+    // the body of GET /messages, serialized and compressed once per version of the messages
+    private final VersionedBodyCache allMessagesBody;
 
     // Initialize the account and message instances
     public SocialMediaController() {
-        this.accountService = new AccountService();
-        this.messageService = new MessageService();
+        this(new AccountService(), new MessageService());
+    }
+
+    public SocialMediaController(AccountService accountService, MessageService messageService) {
+        this(accountService, messageService, DatabaseExecutor.getDefault());
+    }
+
+    /**
+     * @param databaseExecutor runs every handler that touches the database
+     */
+    public SocialMediaController(AccountService accountService, MessageService messageService,
+            DatabaseExecutor databaseExecutor) {
+        this(accountService, messageService, databaseExecutor, AuthTokenService.getDefault());
+    }
+
+    /**
+     * @param tokenService issues login tokens and checks the ones sent back as Authorization: Bearer
+     */
+    public SocialMediaController(AccountService accountService, MessageService messageService,
+            DatabaseExecutor databaseExecutor, AuthTokenService tokenService) {
+        this(accountService, messageService, databaseExecutor, tokenService, RateLimiter.getDefault());
+    }
+
+    /**
+     * @param writeLimiter limits how often each account, or each client address when the request
+     *                     carries no token, may create, update or delete messages, with one permit
+     *                     per message of a batch; null for no limit
+     */
+    public SocialMediaController(AccountService accountService, MessageService messageService,
+            DatabaseExecutor databaseExecutor, AuthTokenService tokenService, RateLimiter writeLimiter) {
+        this.accountService = accountService;
+        this.messageService = messageService;
+        this.databaseExecutor = databaseExecutor;
+        this.tokenService = tokenService;
+        this.writeLimiter = writeLimiter;
+        this.trustForwardedFor = Boolean.getBoolean(TRUST_FORWARDED_FOR_PROPERTY);
+        this.streams = new Semaphore(Integer.getInteger(MAX_STREAMS_PROPERTY, 2));
+        this.codec = JsonCodec.getInstance();
+        this.metrics = Metrics.getDefault();
+        this.httpMetrics = new HttpMetrics(metrics);
+        this.compressor = ResponseCompressor.getDefault();
+        this.allMessagesBody = new VersionedBodyCache(compressor, LIST_BODY_CACHE_MAX_BYTES);
     }
 
     public Javalin startAPI() throws ServiceException {
-        Javalin app = Javalin.create();
-        app.post("/register", this::registerAccount);
-        app.post("/login", this::loginAccount);
-        app.post("/messages", this::createMessage);
-        app.get("/messages", this::getAllMessages);
-        app.get("/messages/{message_id}", this::getMessageById);
-        app.delete("/messages/{message_id}", this::deleteMessageById);
-        app.patch("/messages/{message_id}", this::updateMessageById);
-        app.get("/accounts/{account_id}/messages", this::getMessagesByAccountId);
+        configureRequestThreads(Boolean.getBoolean(VIRTUAL_THREADS_PROPERTY));
+        Javalin app = Javalin.create(config -> {
+            config.jsonMapper(codec);
+            config.requestLogger.http(this::recordRequest);
+            // compressResponse does it instead, so cached bodies are not compressed twice
+            config.compression.none();
+        });
+        registerCacheMetrics();
+        registerUsernameFilterMetrics();
+        registerSearchMetrics();
+        registerRateLimitMetrics();
+        app.before(this::authenticate);
+        // after authenticate, which finds the account to charge
+        app.before(this::limitMessageWrites);
+        app.after(this::compressResponse);
+        app.post("/register", async(this::registerAccount));
+        app.post("/login", async(this::loginAccount));
+        app.post("/messages", async(this::createMessage));
+        app.post("/messages/batch", onDatabaseExecutor(this::createMessages));
+        app.post("/messages/batch-delete", onDatabaseExecutor(this::deleteMessagesByIds));
+        app.get("/messages", onDatabaseExecutor(this::getAllMessages));
+        // before /messages/{message_id}, which would otherwise take "search" as an id
+        app.get("/messages/search", onDatabaseExecutor(this::searchMessages));
+        app.get("/messages/{message_id}", conditional(this::messageTag, onDatabaseExecutor(this::getMessageById)));
+        app.delete("/messages/{message_id}", onDatabaseExecutor(this::deleteMessageById));
+        app.patch("/messages/{message_id}", onDatabaseExecutor(this::updateMessageById));
+        app.get("/accounts/{account_id}/messages", conditional(this::accountMessagesTag, onDatabaseExecutor(this::getMessagesByAccountId)));
+        app.get("/metrics", this::getMetrics);
 
         return app;
     }
 
-    // USER REG
-    private void registerAccount(Context ctx) throws JsonProcessingException {
-        ObjectMapper mapper = new ObjectMapper();
-        Account account = mapper.readValue(ctx.body(), Account.class);
+    /**
+     * Picks the thread pool Jetty will be created with. Javalin would otherwise
+     * switch to virtual threads on its own whenever the JDK has them, so the choice
+     * is always made explicitly here; asking for virtual threads on an older JDK
+     * falls back to platform threads with a warning.
+     */
+    static void configureRequestThreads(boolean virtualThreads) {
+        boolean available = LoomUtil.INSTANCE.getLoomAvailable();
+        if (virtualThreads && !available) {
+            LOGGER.warn("{}=true but virtual threads need JDK 21 or later (running {}); using platform threads",
+                    VIRTUAL_THREADS_PROPERTY, Runtime.version());
+        }
+        ConcurrencyUtil.INSTANCE.setUseLoom(virtualThreads && available);
+        LOGGER.info("Handling requests on {} threads", virtualThreads && available ? "virtual" : "platform");
+    }
 
-        // Validation
-        if (account.getUsername() == null || account.getUsername().isEmpty()) {
-            ctx.status(400).result("");
+    // A handler that starts the work for a request and returns a future of its completion
+    @FunctionalInterface
+    private interface AsyncHandler {
+        CompletableFuture<?> handle(Context ctx) throws Exception;
+    }
+
+    /**
+     * Frees the Jetty thread until the handler's future completes. When an
+     * executor the handler needs has a full queue, the request is answered right
+     * away with 503 and a Retry-After header instead of waiting.
+     */
+    private Handler async(AsyncHandler handler) {
+        return ctx -> ctx.future(() -> {
+            CompletableFuture<?> future;
+            try {
+                future = handler.handle(ctx);
+            } catch (RejectedExecutionException e) {
+                rejectOverloaded(ctx);
+                return CompletableFuture.completedFuture(null);
+            } catch (Exception e) {
+                return CompletableFuture.failedFuture(e);
+            }
+            return future.exceptionally(e -> {
+                if (causeOf(e) instanceof RejectedExecutionException) {
+                    rejectOverloaded(ctx);
+                    return null;
+                }
+                throw e instanceof CompletionException ? (CompletionException) e : new CompletionException(e);
+            });
+        });
+    }
+
+    /**
+     * Runs the whole handler on the database executor.
+     */
+    private Handler onDatabaseExecutor(Handler handler) {
+        return async(ctx -> databaseExecutor.submit(() -> {
+            try {
+                handler.handle(ctx);
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }));
+    }
+
+    private interface TagFunction {
+        String tagFor(Context ctx);
+    }
+
+    /**
+     * Answers 304 Not Modified straight away, on the request thread, when the
+     * request's If-None-Match holds the resource's current tag, with the ETag of
+     * the coding the client holds, as its 200 carried it. Otherwise the tag
+     * is kept for the handler, which sends it as the ETag of a successful
+     * response with sendTag. The tag is read before the handler reads the data,
+     * so a change that lands in between only makes the tag older than the data.
+     */
+    private Handler conditional(TagFunction tags, Handler handler) {
+        return ctx -> {
+            String tag = tags.tagFor(ctx);
+            if (tag != null) {
+                String etag = "\"" + tag + "\"";
+                String held = matchingTag(ctx.header("If-None-Match"), etag);
+                if (held != null) {
+                    ctx.status(304).header("ETag", held);
+                    return;
+                }
+                ctx.attribute(ENTITY_TAG, etag);
+            }
+            handler.handle(ctx);
+        };
+    }
+
+    /**
+     * Compresses a buffered response body when it is at least the compressor's
+     * minimum size and the client accepts gzip or deflate. Streamed bodies, and
+     * those whose handler already chose a coding with sendEncoding, are left
+     * alone. The coding is added to any ETag, since each coding of a body is a
+     * different representation of it.
+     */
+    private void compressResponse(Context ctx) throws IOException {
+        InputStream result = ctx.resultInputStream();
+        if (result == null || ctx.res().getHeader("Vary") != null) {
             return;
         }
+        byte[] body = result.readAllBytes();
+        if (compressor.shouldCompress(body.length)) {
+            Encoding encoding = compressor.negotiate(ctx.header("Accept-Encoding"));
+            body = compressor.compress(body, encoding);
+            sendEncoding(ctx, encoding);
+        }
+        ctx.result(body);
+    }
 
-        if (account.getPassword() == null || account.getPassword().length() < 4) {
-            ctx.status(400).result("");
+    // Headers for a body big enough to compress, whether or not this client gets it compressed
+    private void sendEncoding(Context ctx, Encoding encoding) {
+        ctx.header("Vary", "Accept-Encoding");
+        if (encoding == Encoding.IDENTITY) {
             return;
         }
+        ctx.header("Content-Encoding", encoding.getToken());
+        String etag = ctx.res().getHeader("ETag");
+        if (etag != null) {
+            ctx.header("ETag", codedTag(etag, encoding));
+        }
+    }
 
-        if (accountService.isUsernameTaken(account.getUsername())) {
-            ctx.status(400).result("");
+    private void sendTag(Context ctx) {
+        String etag = ctx.attribute(ENTITY_TAG);
+        if (etag != null) {
+            ctx.header("ETag", etag);
+        }
+    }
+
+    private static String codedTag(String etag, Encoding encoding) {
+        return etag.substring(0, etag.length() - 1) + "-" + encoding.getToken() + "\"";
+    }
+
+    // If-None-Match is "*" or a comma-separated list of tags, any of which may be weak (W/"...")
+    // and may end in the coding sendEncoding added; returns the ETag of the matching
+    // representation, or null if none matches
+    private static String matchingTag(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return null;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.startsWith("W/")) {
+                candidate = candidate.substring(2);
+            }
+            if (candidate.equals("*") || candidate.equals(etag)) {
+                return etag;
+            }
+            for (Encoding encoding : Encoding.values()) {
+                if (encoding != Encoding.IDENTITY && candidate.equals(codedTag(etag, encoding))) {
+                    return candidate;
+                }
+            }
+        }
+        return null;
+    }
+
+    private String messageTag(Context ctx) {
+        try {
+            return "m" + messageService.getMessageTag(Integer.parseInt(ctx.pathParam("message_id")));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private String accountMessagesTag(Context ctx) {
+        try {
+            return "a" + messageService.getAccountMessagesTag(Integer.parseInt(ctx.pathParam("account_id")));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private void rejectOverloaded(Context ctx) {
+        ctx.status(503).header("Retry-After", RETRY_AFTER_SECONDS).result("");
+    }
+
+    // The exception a future failed with, without the CompletionException around it
+    private static Throwable causeOf(Throwable e) {
+        return e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+    }
+
+    // Requests may carry the token from /login; a bad or expired one is refused,
+    // a good one identifies the account without touching the database
+    private void authenticate(Context ctx) {
+        String authorization = ctx.header("Authorization");
+        if (authorization == null || !authorization.startsWith(BEARER_PREFIX)) {
+            return;
+        }
+        OptionalInt accountId = tokenService.verify(authorization.substring(BEARER_PREFIX.length()).trim());
+        if (accountId.isEmpty()) {
+            throw new UnauthorizedResponse();
+        }
+        ctx.attribute(AUTHENTICATED_ACCOUNT_ID, accountId.getAsInt());
+    }
+
+    /**
+     * Answers 429 Too Many Requests, with a Retry-After of the seconds until a
+     * permit is available, when the caller has used up its message writes. The
+     * caller is the account of a valid token, and otherwise the client address:
+     * posted_by in the body is not checked until the handler runs, so charging
+     * it would let anyone use up someone else's permits. This runs on the
+     * request thread before the body is read or any database work is queued.
+     * Batches are charged a permit per message by their handlers instead (see
+     * chargeBatch), once the body says how many there are.
+     */
+    private void limitMessageWrites(Context ctx) {
+        if (writeLimiter == null || !isMessageWrite(ctx) || isBatchWrite(ctx)) {
             return;
         }
+        long waitNanos = writeLimiter.tryAcquire(writeLimitKey(ctx));
+        if (waitNanos > 0) {
+            sendRetryAfter(ctx, waitNanos);
+            throw new HttpResponseException(HttpStatus.TOO_MANY_REQUESTS.getCode(), "");
+        }
+    }
+
+    // Takes a permit per item of a batch, at least one; false after answering 429
+    private boolean chargeBatch(Context ctx, int items) {
+        if (writeLimiter == null) {
+            return true;
+        }
+        long waitNanos = writeLimiter.tryAcquire(writeLimitKey(ctx), Math.max(1, items));
+        if (waitNanos > 0) {
+            sendRetryAfter(ctx, waitNanos);
+            ctx.status(429).result("");
+            return false;
+        }
+        return true;
+    }
 
+    private long writeLimitKey(Context ctx) {
+        Integer accountId = ctx.attribute(AUTHENTICATED_ACCOUNT_ID);
+        return accountId != null ? accountId : ADDRESS_KEY | addressHash(clientAddress(ctx));
+    }
+
+    // The last X-Forwarded-For entry is the one our proxy added; earlier ones come from the client
+    private String clientAddress(Context ctx) {
+        String forwardedFor = trustForwardedFor ? ctx.header("X-Forwarded-For") : null;
+        if (forwardedFor == null || forwardedFor.isBlank()) {
+            return ctx.ip();
+        }
+        return forwardedFor.substring(forwardedFor.lastIndexOf(',') + 1).trim();
+    }
+
+    private static void sendRetryAfter(Context ctx, long waitNanos) {
+        ctx.header("Retry-After", Long.toString(TimeUnit.NANOSECONDS.toSeconds(waitNanos - 1) + 1));
+    }
+
+    private static boolean isMessageWrite(Context ctx) {
+        String method = ctx.method().name();
+        String path = ctx.path();
+        return (method.equals("POST") || method.equals("PATCH") || method.equals("DELETE"))
+                && (path.equals("/messages") || path.startsWith("/messages/"));
+    }
+
+    private static boolean isBatchWrite(Context ctx) {
+        String path = ctx.path();
+        return ctx.method().name().equals("POST") && (path.equals("/messages/batch") || path.equals("/messages/batch-delete"));
+    }
+
+    // 64-bit FNV-1a, so distinct addresses practically never share a bucket
+    private static long addressHash(String address) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < address.length(); i++) {
+            hash = (hash ^ address.charAt(i)) * 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    // Called by Javalin once each request has been handled. When no route matched,
+    // Javalin either throws or, once an after handler has run, returns a placeholder
+    // message; route templates always start with a slash
+    private void recordRequest(Context ctx, Float executionTimeMs) {
+        String path;
         try {
-            Account registeredAccount = accountService.createAccount(account);
-            ctx.status(200).json(registeredAccount);
-        } catch (ServiceException e) {
-            ctx.status(400).result("Error creating account");
+            path = ctx.endpointHandlerPath();
+        } catch (IllegalStateException e) {
+            path = null;
         }
+        if (path != null && !path.startsWith("/")) {
+            path = null;
+        }
+        httpMetrics.record(ctx.method().name(), path, ctx.statusCode(), (long) (executionTimeMs * 1_000_000));
+    }
+
+    private void registerSearchMetrics() {
+        InvertedIndex searchIndex = messageService.getSearchIndex();
+        if (searchIndex == null) {
+            return;
+        }
+        metrics.gauge("search_index_documents", "Messages in the search index", searchIndex::getDocumentCount);
+        metrics.gauge("search_index_terms", "Distinct words in the search index", searchIndex::getTermCount);
+        metrics.gauge("search_index_postings", "Word occurrences in the search index", searchIndex::getPostingCount);
+        metrics.gauge("search_index_bytes", "Estimated heap used by the search index", searchIndex::estimateBytes);
+    }
+
+    private void registerRateLimitMetrics() {
+        if (writeLimiter == null) {
+            return;
+        }
+        metrics.counter("ratelimit_requests_total", "Message writes checked by the rate limiter", writeLimiter::getAllowedCount,
+                "result", "allowed");
+        metrics.counter("ratelimit_requests_total", "Message writes checked by the rate limiter", writeLimiter::getLimitedCount,
+                "result", "limited");
+        metrics.counter("ratelimit_evictions_total", "Callers forgotten before their permits refilled, to make room for others",
+                writeLimiter::getEvictionCount);
+        metrics.gauge("ratelimit_table_size", "Callers the rate limiter can track at once", writeLimiter::getTableSize);
+    }
+
+    private void registerUsernameFilterMetrics() {
+        UsernameFilter filter = accountService.getUsernameFilter();
+        String help = "Share of checks for unregistered usernames that the filter could not rule out";
+        metrics.gauge("username_filter_false_positive_rate", help, filter::getExpectedFalsePositiveRate, "kind", "expected");
+        metrics.gauge("username_filter_false_positive_rate", help, filter::getObservedFalsePositiveRate, "kind", "observed");
+    }
+
+    private void registerCacheMetrics() {
+        registerCacheMetrics("messages", messageService.getMessageCache());
+        registerCacheMetrics("accounts_by_id", accountService.getAccountCache().getByIdCache());
+        registerCacheMetrics("accounts_by_username", accountService.getAccountCache().getByUsernameCache());
+        String name = "message_list_body";
+        metrics.gauge("cache_bytes", "Bytes held by the cache", allMessagesBody::getCachedBytes, "cache", name);
+        metrics.counter("cache_hits_total", "Lookups answered from the cache", allMessagesBody::getHitCount, "cache", name);
+        metrics.counter("cache_misses_total", "Lookups that missed the cache", allMessagesBody::getMissCount, "cache", name);
+    }
+
+    private void registerCacheMetrics(String name, BoundedCache<?, ?> cache) {
+        metrics.gauge("cache_size", "Entries currently cached", cache::size, "cache", name);
+        metrics.counter("cache_hits_total", "Lookups answered from the cache", cache::getHitCount, "cache", name);
+        metrics.counter("cache_misses_total", "Lookups that missed the cache", cache::getMissCount, "cache", name);
+        metrics.counter("cache_evictions_total", "Entries evicted to make room", cache::getEvictionCount, "cache", name);
+    }
+
+    // Metrics in the Prometheus text format
+    private void getMetrics(Context ctx) {
+        ctx.status(200).contentType(PROMETHEUS_TEXT).result(metrics.scrape());
+    }
+
+    // USER REG
+    // the username check and insert run on the database executor, the password hash on the hasher's
+    private CompletableFuture<?> registerAccount(Context ctx) throws JsonProcessingException {
+        Account account = codec.readAccount(ctx.body());
+
+        // Validation
+        if (account.getUsername() == null || account.getUsername().isEmpty()) {
+            ctx.status(400).result("");
+            return CompletableFuture.completedFuture(null);
+        }
+
+        if (account.getPassword() == null || account.getPassword().length() < 4) {
+            ctx.status(400).result("");
+            return CompletableFuture.completedFuture(null);
+        }
+
+        return CompletableFuture.supplyAsync(() -> accountService.isUsernameTaken(account.getUsername()), databaseExecutor)
+                .thenCompose(taken -> {
+                    if (taken) {
+                        ctx.status(400).result("");
+                        return CompletableFuture.completedFuture(null);
+                    }
+                    return accountService.createAccountAsync(account, databaseExecutor)
+                            .thenAccept(registeredAccount -> ctx.status(200).json(registeredAccount));
+                })
+                .exceptionally(e -> {
+                    if (!(causeOf(e) instanceof ServiceException)) {
+                        throw new CompletionException(causeOf(e));
+                    }
+                    ctx.status(400).result("Error creating account");
+                    return null;
+                });
     }
 
     // LOGIN
-    private void loginAccount(Context ctx) throws JsonProcessingException, DaoException {
-        ObjectMapper mapper = new ObjectMapper();
-        Account account = mapper.readValue(ctx.body(), Account.class);
+    // the account lookup runs on the database executor, the password check on the hasher's
+    private CompletableFuture<?> loginAccount(Context ctx) throws JsonProcessingException {
+        Account account = codec.readAccount(ctx.body());
 
-        try {
-            Optional<Account> loggedInAccount = accountService.validateLogin(account);
-            if (loggedInAccount.isPresent()) {
-                ctx.sessionAttribute("logged_in_account", loggedInAccount.get());
+        return accountService.validateLoginAsync(account, databaseExecutor).handle((loggedInAccount, e) -> {
+            if (e != null) {
+                if (!(causeOf(e) instanceof ServiceException)) {
+                    throw new CompletionException(causeOf(e));
+                }
+                ctx.status(401).result("");
+            } else if (loggedInAccount.isPresent()) {
+                ctx.header(AUTH_TOKEN_HEADER, tokenService.issue(loggedInAccount.get().getAccount_id()));
                 ctx.status(200).json(loggedInAccount.get());
             } else {
                 ctx.status(401).result("");
             }
-        } catch (ServiceException e) {
-            ctx.status(401).result("");
-        }
+            return null;
+        });
     }
 
     // Create new Message
-    private void createMessage(Context ctx) throws JsonProcessingException {
-        ObjectMapper mapper = new ObjectMapper();
-        Message mappedMessage = mapper.readValue(ctx.body(), Message.class);
+    // the account lookup runs on the database executor; with group commit on, no thread waits for the insert's batch
+    private CompletableFuture<?> createMessage(Context ctx) throws JsonProcessingException {
+        Message mappedMessage = codec.readMessage(ctx.body());
 
         // Validation
         if (mappedMessage.getMessage_text() == null || mappedMessage.getMessage_text().trim().isEmpty()) {
             ctx.status(400).result("");
-            return;
+            return CompletableFuture.completedFuture(null);
         }
 
         if (mappedMessage.getMessage_text().length() > 254) {
             ctx.status(400).result("");
+            return CompletableFuture.completedFuture(null);
+        }
+
+        // an authenticated caller may only post as themselves
+        Integer authenticatedAccountId = ctx.attribute(AUTHENTICATED_ACCOUNT_ID);
+        if (authenticatedAccountId != null && authenticatedAccountId != mappedMessage.getPosted_by()) {
+            ctx.status(401).result("");
+            return CompletableFuture.completedFuture(null);
+        }
+
+        return CompletableFuture.supplyAsync(() -> accountService.getAccountById(mappedMessage.getPosted_by()), databaseExecutor)
+                .thenCompose(account -> {
+                    if (account.isEmpty()) {
+                        ctx.status(400).result("");
+                        return CompletableFuture.completedFuture(null);
+                    }
+                    return messageService.createMessageAsync(mappedMessage, account.get(), Runnable::run)
+                            .thenAccept(message -> ctx.status(200).json(message));
+                })
+                .exceptionally(e -> {
+                    if (!(causeOf(e) instanceof ServiceException)) {
+                        throw new CompletionException(causeOf(e));
+                    }
+                    ctx.status(400).result("Error creating message");
+                    return null;
+                });
+    }
+
+    // Create up to MAX_BATCH_SIZE messages from a JSON array in one transaction,
+    // with one result per message; invalid messages are reported and left out
+    private void createMessages(Context ctx) {
+        List<Message> messages = readBatch(ctx, codec::readMessages);
+        if (messages == null || !chargeBatch(ctx, messages.size())) {
             return;
         }
 
+        // an authenticated caller may only post as themselves
+        Integer authenticatedAccountId = ctx.attribute(AUTHENTICATED_ACCOUNT_ID);
+        if (authenticatedAccountId != null) {
+            for (Message message : messages) {
+                if (authenticatedAccountId != message.getPosted_by()) {
+                    ctx.status(401).result("");
+                    return;
+                }
+            }
+        }
+
         try {
-            Optional<Account> account = accountService.getAccountById(mappedMessage.getPosted_by());
-            if (account.isPresent()) {
-                Message message = messageService.createMessage(mappedMessage, account.get());
-                ctx.status(200).json(message);
-            } else {
-                ctx.status(400).result("");
+            Set<Integer> postedBy = new HashSet<>();
+            for (Message message : messages) {
+                postedBy.add(message.getPosted_by());
             }
+            Map<Integer, Account> accounts = accountService.getAccountsByIds(postedBy);
+            ctx.status(200).json(messageService.createMessages(messages, accounts));
         } catch (ServiceException e) {
-            ctx.status(400).result("Error creating message");
+            ctx.status(503).result("");
         }
     }
 
-    // Get all messages
-    private void getAllMessages(Context ctx) {
-        List<Message> messages = messageService.getAllMessages();
-        ctx.status(200).json(messages);
+    // Delete up to MAX_BATCH_SIZE messages given as a JSON array of ids, with one result per id
+    private void deleteMessagesByIds(Context ctx) {
+        List<Integer> ids = readBatch(ctx, codec::readIds);
+        if (ids == null || !chargeBatch(ctx, ids.size())) {
+            return;
+        }
+        try {
+            // an authenticated caller may only delete their own messages
+            Integer authenticatedAccountId = ctx.attribute(AUTHENTICATED_ACCOUNT_ID);
+            if (authenticatedAccountId != null) {
+                for (MessageResult result : messageService.getMessagesByIds(ids)) {
+                    if (result.getMessage() != null && authenticatedAccountId != result.getMessage().getPosted_by()) {
+                        ctx.status(401).result("");
+                        return;
+                    }
+                }
+            }
+            ctx.status(200).json(messageService.deleteMessagesByIds(ids));
+        } catch (ServiceException e) {
+            ctx.status(503).result("");
+        }
+    }
+
+    // Get the messages with the given comma-separated ids, with one result per id
+    private void getMessagesByIds(Context ctx) {
+        List<Integer> ids = new ArrayList<>();
+        try {
+            for (String id : ctx.queryParam("ids").split(",")) {
+                if (!id.trim().isEmpty()) {
+                    ids.add(Integer.valueOf(id.trim()));
+                }
+            }
+        } catch (NumberFormatException e) {
+            ctx.status(400).result("");
+            return;
+        }
+        if (ids.size() > MAX_BATCH_SIZE) {
+            ctx.status(400).result("");
+            return;
+        }
+        try {
+            ctx.status(200).json(messageService.getMessagesByIds(ids));
+        } catch (ServiceException e) {
+            ctx.status(503).result("");
+        }
+    }
+
+    private interface BatchReader<T> {
+        List<T> read(String json) throws JsonProcessingException;
+    }
+
+    // The request body as a list of at most MAX_BATCH_SIZE non-null items, or null after answering 400
+    private <T> List<T> readBatch(Context ctx, BatchReader<T> reader) {
+        List<T> items;
+        try {
+            items = reader.read(ctx.body());
+        } catch (JsonProcessingException e) {
+            items = null;
+        }
+        if (items == null || items.size() > MAX_BATCH_SIZE || items.contains(null)) {
+            ctx.status(400).result("");
+            return null;
+        }
+        return items;
+    }
+
+    // Get all messages, the ones listed in ids, a page of a timeline when since, until or order is given, one page of them
+    // when limit or cursor is given, or a stream of them for Accept: application/x-ndjson or ?stream=true
+    private void getAllMessages(Context ctx) throws IOException {
+        if (ctx.queryParam("ids") != null) {
+            getMessagesByIds(ctx);
+            return;
+        }
+        if (isTimelineRequest(ctx)) {
+            getMessageTimeline(ctx, null);
+            return;
+        }
+        if (isPageRequest(ctx)) {
+            try {
+                MessagePage page = messageService.getMessagePage(ctx.queryParam("cursor"), pageLimit(ctx));
+                ctx.status(200).json(page);
+            } catch (IllegalArgumentException e) {
+                ctx.status(400).result("");
+            }
+            return;
+        }
+        String accept = ctx.header("Accept");
+        if (accept != null && accept.contains(NDJSON)) {
+            streamMessages(ctx, true);
+            return;
+        }
+        if ("true".equals(ctx.queryParam("stream"))) {
+            streamMessages(ctx, false);
+            return;
+        }
+        sendAllMessages(ctx);
+    }
+
+    // The version is read before the messages, so a change that lands in between
+    // only leaves the cached body newer than its version, never older
+    private void sendAllMessages(Context ctx) {
+        long version = messageService.getAllMessagesVersion();
+        Encoding accepted = compressor.negotiate(ctx.header("Accept-Encoding"));
+        VersionedBodyCache.Body body = allMessagesBody.get(version, accepted, () -> {
+            List<Message> messages = messageService.getAllMessages();
+            return codec.toJsonBytes(messages, messages.getClass());
+        });
+        if (compressor.shouldCompress(body.getBytes().length) || body.getEncoding() != Encoding.IDENTITY) {
+            sendEncoding(ctx, body.getEncoding());
+        }
+        ctx.status(200).contentType("application/json").result(body.getBytes());
+    }
+
+    // Write rows straight from the result set to the response, one JSON object per line
+    // for NDJSON or as a single JSON array otherwise, without building the full list
+    // at most http.stream.maxConcurrent at once, so slow readers cannot take every connection; the rest get 503
+    private void streamMessages(Context ctx, boolean ndjson) throws IOException {
+        if (!streams.tryAcquire()) {
+            rejectOverloaded(ctx);
+            return;
+        }
+        try {
+            writeStream(ctx, ndjson);
+        } finally {
+            streams.release();
+        }
+    }
+
+    private void writeStream(Context ctx, boolean ndjson) throws IOException {
+        ctx.status(200).contentType(ndjson ? NDJSON : "application/json");
+        // the length is not known up front, so a client that accepts a coding always gets it
+        Encoding encoding = compressor.negotiate(ctx.header("Accept-Encoding"));
+        sendEncoding(ctx, encoding);
+        OutputStream out = compressor.compressing(ctx.outputStream(), encoding);
+        try (JsonGenerator generator = codec.createGenerator(out)) {
+            generator.setRootValueSeparator(null);
+            if (!ndjson) {
+                generator.writeStartArray();
+            }
+            boolean[] first = { true };
+            messageService.streamAllMessages(message -> {
+                try {
+                    generator.writeObject(message);
+                    if (ndjson) {
+                        generator.writeRaw('\n');
+                    }
+                    if (first[0]) {
+                        // get the first row out without waiting for the response buffer to fill
+                        generator.flush();
+                        first[0] = false;
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            if (!ndjson) {
+                generator.writeEndArray();
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    // Search message text; every word must match unless mode=or, best matches first
+    private void searchMessages(Context ctx) {
+        String query = ctx.queryParam("q");
+        String mode = ctx.queryParam("mode");
+        if (query == null || query.trim().isEmpty() || (mode != null && !mode.equals("and") && !mode.equals("or"))) {
+            ctx.status(400).result("");
+            return;
+        }
+        try {
+            List<Message> messages = messageService.searchMessages(query, !"or".equals(mode), pageLimit(ctx));
+            ctx.status(200).json(messages);
+        } catch (IllegalArgumentException e) {
+            ctx.status(400).result("");
+        } catch (ServiceException e) {
+            ctx.status(503).result("");
+        }
     }
 
     // Get message by id
@@ -128,6 +842,7 @@ public class SocialMediaController {
             int id = Integer.parseInt(ctx.pathParam("message_id"));
             Optional<Message> message = messageService.getMessageById(id);
             if (message.isPresent()) {
+                sendTag(ctx);
                 ctx.status(200).json(message.get());
             } else {
                 ctx.status(200).result("");
@@ -143,9 +858,12 @@ public class SocialMediaController {
     private void deleteMessageById(Context ctx) {
         try {
             int id = Integer.parseInt(ctx.pathParam("message_id"));
-            Optional<Message> message = messageService.getMessageById(id);
+            if (isOthersMessage(ctx, id)) {
+                ctx.status(401).result("");
+                return;
+            }
+            Optional<Message> message = messageService.deleteMessageById(id);
             if (message.isPresent()) {
-                messageService.deleteMessage(message.get());
                 ctx.status(200).json(message.get());
             } else {
                 ctx.status(200).result(""); // needs to emnty per instructions
@@ -159,8 +877,7 @@ public class SocialMediaController {
 
     // Update message by id
     private void updateMessageById(Context ctx) throws JsonProcessingException {
-        ObjectMapper mapper = new ObjectMapper();
-        Message mappedMessage = mapper.readValue(ctx.body(), Message.class);
+        Message mappedMessage = codec.readMessage(ctx.body());
 
         // Validation
         if (mappedMessage.getMessage_text() == null || mappedMessage.getMessage_text().trim().isEmpty()) {
@@ -175,14 +892,14 @@ public class SocialMediaController {
 
         try {
             int id = Integer.parseInt(ctx.pathParam("message_id"));
-            mappedMessage.setMessage_id(id);
-            Optional<Message> existingMessage = messageService.getMessageById(id);
-            if (existingMessage.isPresent()) {
-                Message messageUpdated = messageService.updateMessage(mappedMessage);
-                ctx.status(200).json(messageUpdated);
-            } else {
-                ctx.status(400).result("");
+            if (isOthersMessage(ctx, id)) {
+                ctx.status(401).result("");
+                return;
             }
+            mappedMessage.setMessage_id(id);
+            // a missing message comes back as a ServiceException
+            Message messageUpdated = messageService.updateMessage(mappedMessage);
+            ctx.status(200).json(messageUpdated);
         } catch (NumberFormatException e) {
             ctx.status(400).result("Invalid message ID");
         } catch (ServiceException e) {
@@ -190,11 +907,37 @@ public class SocialMediaController {
         }
     }
 
+    // An authenticated caller may only change their own messages. A message that does not
+    // exist is left to the handler, and since posted_by never changes and ids are never
+    // reused, the message cannot change hands between this check and the write.
+    private boolean isOthersMessage(Context ctx, int messageId) {
+        Integer authenticatedAccountId = ctx.attribute(AUTHENTICATED_ACCOUNT_ID);
+        if (authenticatedAccountId == null) {
+            return false;
+        }
+        try {
+            return messageService.getMessageById(messageId)
+                    .map(message -> authenticatedAccountId != message.getPosted_by())
+                    .orElse(false);
+        } catch (ServiceException e) {
+            return false;
+        }
+    }
+
     // Get messages by account id
     private void getMessagesByAccountId(Context ctx) {
         try {
             int accountId = Integer.parseInt(ctx.pathParam("account_id"));
+            if (isTimelineRequest(ctx)) {
+                getMessageTimeline(ctx, accountId);
+                return;
+            }
+            if (isPageRequest(ctx)) {
+                getMessagePageByAccountId(ctx, accountId);
+                return;
+            }
             List<Message> messages = messageService.getMessagesByAccountId(accountId);
+            sendTag(ctx);
             ctx.status(200).json(messages);
         } catch (NumberFormatException e) {
             ctx.status(200).result("Invalid account ID");
@@ -202,4 +945,62 @@ public class SocialMediaController {
             ctx.status(200).result("Error retrieving messages");
         }
     }
+
+    private void getMessagePageByAccountId(Context ctx, int accountId) {
+        try {
+            MessagePage page = messageService.getMessagePageByAccountId(accountId, ctx.queryParam("cursor"), pageLimit(ctx));
+            sendTag(ctx);
+            ctx.status(200).json(page);
+        } catch (IllegalArgumentException e) {
+            ctx.status(400).result("");
+        }
+    }
+
+    // Messages posted at since <= time_posted_epoch < until, oldest first unless order=desc,
+    // one page at a time; all messages, or only those of accountId when it is not null
+    private void getMessageTimeline(Context ctx, Integer accountId) {
+        try {
+            Long since = epochParam(ctx, "since");
+            Long until = epochParam(ctx, "until");
+            String order = ctx.queryParam("order");
+            if (order != null && !order.equals("asc") && !order.equals("desc")) {
+                throw new IllegalArgumentException("order must be asc or desc");
+            }
+            boolean newestFirst = "desc".equals(order);
+            String cursor = ctx.queryParam("cursor");
+            MessagePage page = accountId == null
+                    ? messageService.getMessageTimeline(since, until, newestFirst, cursor, pageLimit(ctx))
+                    : messageService.getMessageTimelineByAccountId(accountId, since, until, newestFirst, cursor, pageLimit(ctx));
+            sendTag(ctx);
+            ctx.status(200).json(page);
+        } catch (IllegalArgumentException e) {
+            ctx.status(400).result("");
+        }
+    }
+
+    private static Long epochParam(Context ctx, String name) {
+        String value = ctx.queryParam(name);
+        return value == null ? null : Long.valueOf(value);
+    }
+
+    private boolean isTimelineRequest(Context ctx) {
+        return ctx.queryParam("since") != null || ctx.queryParam("until") != null || ctx.queryParam("order") != null;
+    }
+
+    // Listings stay unpaginated unless the client asks for a page
+    private boolean isPageRequest(Context ctx) {
+        return ctx.queryParam("limit") != null || ctx.queryParam("cursor") != null;
+    }
+
+    private int pageLimit(Context ctx) {
+        String limit = ctx.queryParam("limit");
+        if (limit == null) {
+            return DEFAULT_PAGE_SIZE;
+        }
+        int parsed = Integer.parseInt(limit);
+        if (parsed < 1 || parsed > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        return parsed;
+    }
 }
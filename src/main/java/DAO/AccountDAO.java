@@ -5,80 +5,162 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
+
+import javax.sql.DataSource;
 
 import Model.Account;
+import Util.AsyncLogger;
 import Util.ConnectionUtil;
 
 public class AccountDAO {
 
+    private static final AsyncLogger LOGGER = AsyncLogger.getLogger(AccountDAO.class);
+    private static final DaoTimers TIMERS = new DaoTimers("AccountDAO");
+
+    private final DataSource dataSource;
+
+    // Use the shared connection pool
+    public AccountDAO() {
+        this(ConnectionUtil.getDataSource());
+    }
+
+    public AccountDAO(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
     public Optional<Account> getAccountByUsername(String username) throws DaoException {
-        String sql = "SELECT * FROM Account WHERE username = ?";
-        try (Connection connection = ConnectionUtil.getConnection(); PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setString(1, username);
-            try (ResultSet rs = stmt.executeQuery()) {
-                if (rs.next()) {
-                    return Optional.of(new Account(rs.getInt("account_id"), rs.getString("username"), rs.getString("password")));
+        return TIMERS.timed("getAccountByUsername", () -> {
+            String sql = "SELECT * FROM Account WHERE username = ?";
+            try (Connection connection = dataSource.getConnection(); PreparedStatement stmt = connection.prepareStatement(sql)) {
+                stmt.setString(1, username);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    if (rs.next()) {
+                        return Optional.of(new Account(rs.getInt("account_id"), rs.getString("username"), rs.getString("password")));
+                    }
                 }
+            } catch (SQLException e) {
+                handleSQLException(e, sql, "Error while fetching account by username");
             }
-        } catch (SQLException e) {
-            handleSQLException(e, sql, "Error while fetching account by username");
-        }
-        return Optional.empty();
+            return Optional.empty();
+        });
     }
 
     public Optional<Account> getAccountById(int accountId) throws DaoException {
-        String sql = "SELECT * FROM Account WHERE account_id = ?";
-        try (Connection connection = ConnectionUtil.getConnection(); PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setInt(1, accountId);
-            try (ResultSet rs = stmt.executeQuery()) {
-                if (rs.next()) {
-                    return Optional.of(new Account(rs.getInt("account_id"), rs.getString("username"), rs.getString("password")));
+        return TIMERS.timed("getAccountById", () -> {
+            String sql = "SELECT * FROM Account WHERE account_id = ?";
+            try (Connection connection = dataSource.getConnection(); PreparedStatement stmt = connection.prepareStatement(sql)) {
+                stmt.setInt(1, accountId);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    if (rs.next()) {
+                        return Optional.of(new Account(rs.getInt("account_id"), rs.getString("username"), rs.getString("password")));
+                    }
                 }
+            } catch (SQLException e) {
+                handleSQLException(e, sql, "Error while fetching account by ID");
             }
-        } catch (SQLException e) {
-            handleSQLException(e, sql, "Error while fetching account by ID");
-        }
-        return Optional.empty();
+            return Optional.empty();
+        });
+    }
+
+    // IDs with no account are left out
+    public List<Account> getAccountsByIds(List<Integer> accountIds) throws DaoException {
+        return TIMERS.timed("getAccountsByIds", () -> {
+            List<Account> accounts = new ArrayList<>(accountIds.size());
+            if (accountIds.isEmpty()) {
+                return accounts;
+            }
+            String sql = "SELECT * FROM Account WHERE account_id = ANY(?)";
+            try (Connection connection = dataSource.getConnection(); PreparedStatement stmt = connection.prepareStatement(sql)) {
+                stmt.setObject(1, accountIds.toArray(new Integer[0]));
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        accounts.add(new Account(rs.getInt("account_id"), rs.getString("username"), rs.getString("password")));
+                    }
+                }
+            } catch (SQLException e) {
+                handleSQLException(e, sql, "Error while fetching accounts by ID");
+            }
+            return accounts;
+        });
     }
 
     public boolean doesUsernameExist(String username) throws DaoException {
-        String sql = "SELECT COUNT(*) FROM Account WHERE username = ?";
-        try (Connection connection = ConnectionUtil.getConnection(); PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setString(1, username);
-            try (ResultSet rs = stmt.executeQuery()) {
-                if (rs.next()) {
-                    return rs.getInt(1) > 0;
+        return TIMERS.timed("doesUsernameExist", () -> {
+            String sql = "SELECT COUNT(*) FROM Account WHERE username = ?";
+            try (Connection connection = dataSource.getConnection(); PreparedStatement stmt = connection.prepareStatement(sql)) {
+                stmt.setString(1, username);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    if (rs.next()) {
+                        return rs.getInt(1) > 0;
+                    }
                 }
+            } catch (SQLException e) {
+                handleSQLException(e, sql, "Error while checking if username exists");
             }
-        } catch (SQLException e) {
-            handleSQLException(e, sql, "Error while checking if username exists");
-        }
-        return false;
+            return false;
+        });
+    }
+
+    public void forEachUsername(Consumer<String> consumer) throws DaoException {
+        TIMERS.timed("forEachUsername", () -> {
+            String sql = "SELECT username FROM Account";
+            try (Connection connection = dataSource.getConnection(); PreparedStatement stmt = connection.prepareStatement(sql); ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    consumer.accept(rs.getString(1));
+                }
+            } catch (SQLException e) {
+                handleSQLException(e, sql, "Error while reading usernames");
+            }
+        });
     }
 
     public Account createAccount(Account account) throws DaoException {
-        String sql = "INSERT INTO Account (username, password) VALUES (?, ?)";
-        try (Connection connection = ConnectionUtil.getConnection(); PreparedStatement stmt = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-            stmt.setString(1, account.getUsername());
-            stmt.setString(2, account.getPassword());
-            stmt.executeUpdate();
-            try (ResultSet rs = stmt.getGeneratedKeys()) {
-                if (rs.next()) {
-                    account.setAccount_id(rs.getInt(1));
-                    return account;
-                } else {
-                    throw new DaoException("Creating account failed, no ID obtained.");
+        return TIMERS.timed("createAccount", () -> {
+            String sql = "INSERT INTO Account (username, password) VALUES (?, ?)";
+            try (Connection connection = dataSource.getConnection(); PreparedStatement stmt = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                stmt.setString(1, account.getUsername());
+                stmt.setString(2, account.getPassword());
+                stmt.executeUpdate();
+                try (ResultSet rs = stmt.getGeneratedKeys()) {
+                    if (rs.next()) {
+                        account.setAccount_id(rs.getInt(1));
+                        return account;
+                    } else {
+                        throw new DaoException("Creating account failed, no ID obtained.");
+                    }
                 }
+            } catch (SQLException e) {
+                throw new DaoException("Creating account failed due to SQL error", e);
+            }
+        });
+    }
+
+    /**
+     * Replaces an account's stored password, but only if it still has the expected value,
+     * so two logins upgrading the same account at once cannot overwrite each other.
+     * @return true if the password was replaced
+     */
+    public boolean replacePassword(int accountId, String expectedPassword, String newPassword) throws DaoException {
+        return TIMERS.timed("replacePassword", () -> {
+            String sql = "UPDATE Account SET password = ? WHERE account_id = ? AND password = ?";
+            try (Connection connection = dataSource.getConnection(); PreparedStatement stmt = connection.prepareStatement(sql)) {
+                stmt.setString(1, newPassword);
+                stmt.setInt(2, accountId);
+                stmt.setString(3, expectedPassword);
+                return stmt.executeUpdate() == 1;
+            } catch (SQLException e) {
+                handleSQLException(e, sql, "Error while replacing password");
             }
-        } catch (SQLException e) {
-            throw new DaoException("Creating account failed due to SQL error", e);
-        }
+            return false;
+        });
     }
 
     private void handleSQLException(SQLException e, String sql, String message) throws DaoException {
-        System.err.println(message + " - SQL: " + sql);
-        e.printStackTrace();
+        LOGGER.error("{} - SQL: {}", message, sql, e);
         throw new DaoException(message, e);
     }
 }
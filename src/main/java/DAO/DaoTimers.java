@@ -0,0 +1,60 @@
+package DAO;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import Util.LatencyHistogram;
+import Util.Metrics;
+
+/**
+ * Times DAO methods into dao_operation_seconds{operation="<dao>.<method>"}.
+ *
+ * Each histogram is looked up in Metrics once, the first time its method runs,
+ * and kept here, so timing a call costs one map read and two System.nanoTime().
+ */
+final class DaoTimers {
+
+    interface Call<T> {
+        T call() throws DaoException;
+    }
+
+    interface VoidCall {
+        void call() throws DaoException;
+    }
+
+    private final String dao;
+    private final ConcurrentMap<String, LatencyHistogram> timers = new ConcurrentHashMap<>();
+
+    DaoTimers(String dao) {
+        this.dao = dao;
+    }
+
+    <T> T timed(String method, Call<T> call) throws DaoException {
+        LatencyHistogram timer = timer(method);
+        long start = System.nanoTime();
+        try {
+            return call.call();
+        } finally {
+            timer.recordSince(start);
+        }
+    }
+
+    void timed(String method, VoidCall call) throws DaoException {
+        LatencyHistogram timer = timer(method);
+        long start = System.nanoTime();
+        try {
+            call.call();
+        } finally {
+            timer.recordSince(start);
+        }
+    }
+
+    private LatencyHistogram timer(String method) {
+        LatencyHistogram timer = timers.get(method);
+        if (timer == null) {
+            timer = timers.computeIfAbsent(method, key -> Metrics.getDefault().histogram("dao_operation_seconds",
+                    "Time spent in each DAO method, including waiting for a connection", "operation", dao + "." + key));
+        }
+        return timer;
+    }
+}
@@ -8,115 +8,371 @@ import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
+
+import javax.sql.DataSource;
 
 import Model.Message;
+import Util.AsyncLogger;
 import Util.ConnectionUtil;
 
 public class MessageDAO {
 
+    private static final AsyncLogger LOGGER = AsyncLogger.getLogger(MessageDAO.class);
+    private static final DaoTimers TIMERS = new DaoTimers("MessageDAO");
+
+    private final DataSource dataSource;
+
+    // Use the shared connection pool
+    public MessageDAO() {
+        this(ConnectionUtil.getDataSource());
+    }
+
+    public MessageDAO(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
     // CREATE
     public Message createMessage(Message message) throws DaoException {
-        String sql = "INSERT INTO message (posted_by, message_text, time_posted_epoch) VALUES (?, ?, ?)";
-        try (Connection conn = ConnectionUtil.getConnection(); PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-            ps.setInt(1, message.getPosted_by());
-            ps.setString(2, message.getMessage_text());
-            ps.setLong(3, message.getTime_posted_epoch());
-            ps.executeUpdate();
-            try (ResultSet generatedKeys = ps.getGeneratedKeys()) {
-                if (generatedKeys.next()) {
-                    int generatedId = generatedKeys.getInt(1);
-                    return new Message(generatedId, message.getPosted_by(), message.getMessage_text(), message.getTime_posted_epoch());
-                } else {
-                    throw new DaoException("Failed to insert message, no ID obtained.");
+        return TIMERS.timed("createMessage", () -> {
+            String sql = "INSERT INTO message (posted_by, message_text, time_posted_epoch) VALUES (?, ?, ?)";
+            try (Connection conn = dataSource.getConnection(); PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                ps.setInt(1, message.getPosted_by());
+                ps.setString(2, message.getMessage_text());
+                ps.setLong(3, message.getTime_posted_epoch());
+                ps.executeUpdate();
+                try (ResultSet generatedKeys = ps.getGeneratedKeys()) {
+                    if (generatedKeys.next()) {
+                        int generatedId = generatedKeys.getInt(1);
+                        return new Message(generatedId, message.getPosted_by(), message.getMessage_text(), message.getTime_posted_epoch());
+                    } else {
+                        throw new DaoException("Failed to insert message, no ID obtained.");
+                    }
                 }
+            } catch (SQLException e) {
+                handleSQLException(e, sql, "Error while inserting a message");
             }
-        } catch (SQLException e) {
-            handleSQLException(e, sql, "Error while inserting a message");
-        }
-        throw new DaoException("Failed to insert message");
+            throw new DaoException("Failed to insert message");
+        });
+    }
+
+    // CREATE MANY
+    // One JDBC batch in one transaction; the returned messages carry their generated IDs in input order.
+    // If any row fails, nothing is inserted.
+    public List<Message> createMessages(List<Message> messages) throws DaoException {
+        return TIMERS.timed("createMessages", () -> {
+            String sql = "INSERT INTO message (posted_by, message_text, time_posted_epoch) VALUES (?, ?, ?)";
+            List<Message> created = new ArrayList<>(messages.size());
+            try (Connection conn = dataSource.getConnection()) {
+                conn.setAutoCommit(false);
+                try (PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                    for (Message message : messages) {
+                        ps.setInt(1, message.getPosted_by());
+                        ps.setString(2, message.getMessage_text());
+                        ps.setLong(3, message.getTime_posted_epoch());
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+                    try (ResultSet generatedKeys = ps.getGeneratedKeys()) {
+                        for (Message message : messages) {
+                            if (!generatedKeys.next()) {
+                                throw new DaoException("Failed to insert messages, not every ID was obtained.");
+                            }
+                            created.add(new Message(generatedKeys.getInt(1), message.getPosted_by(), message.getMessage_text(), message.getTime_posted_epoch()));
+                        }
+                    }
+                    conn.commit();
+                } catch (SQLException | DaoException e) {
+                    conn.rollback();
+                    throw e;
+                } finally {
+                    conn.setAutoCommit(true);
+                }
+            } catch (SQLException e) {
+                handleSQLException(e, sql, "Error while inserting a batch of messages");
+            }
+            return created;
+        });
     }
 
     // LIST
     public List<Message> getAllMessages() throws DaoException {
-        List<Message> messages = new ArrayList<>();
-        String sql = "SELECT * FROM Message";
-        try (Connection connection = ConnectionUtil.getConnection(); PreparedStatement stmt = connection.prepareStatement(sql); ResultSet rs = stmt.executeQuery()) {
-            while (rs.next()) {
-                messages.add(new Message(rs.getInt("message_id"), rs.getInt("posted_by"), rs.getString("message_text"), rs.getLong("time_posted_epoch")));
+        return TIMERS.timed("getAllMessages", () -> {
+            List<Message> messages = new ArrayList<>();
+            String sql = "SELECT * FROM Message";
+            try (Connection connection = dataSource.getConnection(); PreparedStatement stmt = connection.prepareStatement(sql); ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    messages.add(new Message(rs.getInt("message_id"), rs.getInt("posted_by"), rs.getString("message_text"), rs.getLong("time_posted_epoch")));
+                }
+            } catch (SQLException e) {
+                handleSQLException(e, sql, "Error while fetching all messages");
             }
-        } catch (SQLException e) {
-            handleSQLException(e, sql, "Error while fetching all messages");
+            return messages;
+        });
+    }
+
+    // STREAM ALL
+    // Rows are handed to the consumer as they are read, fetchSize at a time, so memory use
+    // does not grow with the table. H2 only streams a result lazily when the session asks for it.
+    public void streamAllMessages(int fetchSize, Consumer<Message> consumer) throws DaoException {
+        TIMERS.timed("streamAllMessages", () -> {
+            String sql = "SELECT * FROM Message ORDER BY message_id";
+            // the pool puts the session setting and the fetch size back when they are returned
+            try (Connection connection = dataSource.getConnection()) {
+                setLazyQueryExecution(connection);
+                try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+                    stmt.setFetchSize(fetchSize);
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        while (rs.next()) {
+                            consumer.accept(new Message(rs.getInt("message_id"), rs.getInt("posted_by"), rs.getString("message_text"), rs.getLong("time_posted_epoch")));
+                        }
+                    }
+                }
+            } catch (SQLException e) {
+                handleSQLException(e, sql, "Error while streaming messages");
+            }
+        });
+    }
+
+    private void setLazyQueryExecution(Connection connection) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("SET LAZY_QUERY_EXECUTION TRUE");
         }
-        return messages;
+    }
+
+    // LIST PAGE (keyset on message_id)
+    public List<Message> getMessagesAfter(int afterMessageId, int limit) throws DaoException {
+        return TIMERS.timed("getMessagesAfter", () -> {
+            List<Message> messages = new ArrayList<>(limit);
+            String sql = "SELECT * FROM Message WHERE message_id > ? ORDER BY message_id LIMIT ?";
+            try (Connection connection = dataSource.getConnection(); PreparedStatement stmt = connection.prepareStatement(sql)) {
+                stmt.setInt(1, afterMessageId);
+                stmt.setInt(2, limit);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        messages.add(new Message(rs.getInt("message_id"), rs.getInt("posted_by"), rs.getString("message_text"), rs.getLong("time_posted_epoch")));
+                    }
+                }
+            } catch (SQLException e) {
+                handleSQLException(e, sql, "Error while fetching a page of messages");
+            }
+            return messages;
+        });
     }
 
     // GET BY ID
     public Optional<Message> getMessageById(int messageId) throws DaoException {
-        String sql = "SELECT * FROM Message WHERE message_id = ?";
-        try (Connection connection = ConnectionUtil.getConnection(); PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setInt(1, messageId);
-            try (ResultSet rs = stmt.executeQuery()) {
-                if (rs.next()) {
-                    return Optional.of(new Message(rs.getInt("message_id"), rs.getInt("posted_by"), rs.getString("message_text"), rs.getLong("time_posted_epoch")));
+        return TIMERS.timed("getMessageById", () -> {
+            String sql = "SELECT * FROM Message WHERE message_id = ?";
+            try (Connection connection = dataSource.getConnection(); PreparedStatement stmt = connection.prepareStatement(sql)) {
+                stmt.setInt(1, messageId);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    if (rs.next()) {
+                        return Optional.of(new Message(rs.getInt("message_id"), rs.getInt("posted_by"), rs.getString("message_text"), rs.getLong("time_posted_epoch")));
+                    }
                 }
+            } catch (SQLException e) {
+                handleSQLException(e, sql, "Error while fetching message by ID");
             }
-        } catch (SQLException e) {
-            handleSQLException(e, sql, "Error while fetching message by ID");
-        }
-        return Optional.empty();
+            return Optional.empty();
+        });
     }
 
-    // DELETE
-    public boolean deleteMessage(int messageId) throws DaoException {
-        String sql = "DELETE FROM Message WHERE message_id = ?";
-        try (Connection connection = ConnectionUtil.getConnection(); PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setInt(1, messageId);
-            int rowsAffected = stmt.executeUpdate();
-            return rowsAffected > 0;
-        } catch (SQLException e) {
-            handleSQLException(e, sql, "Error while deleting message");
-        }
-        return false;
+    // GET BY IDS (one statement with an array parameter, so its plan is cached whatever the number of ids)
+    public List<Message> getMessagesByIds(List<Integer> messageIds) throws DaoException {
+        return TIMERS.timed("getMessagesByIds", () -> {
+            List<Message> messages = new ArrayList<>(messageIds.size());
+            if (messageIds.isEmpty()) {
+                return messages;
+            }
+            String sql = "SELECT * FROM Message WHERE message_id = ANY(?)";
+            try (Connection connection = dataSource.getConnection(); PreparedStatement stmt = connection.prepareStatement(sql)) {
+                stmt.setObject(1, messageIds.toArray(new Integer[0]));
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        messages.add(new Message(rs.getInt("message_id"), rs.getInt("posted_by"), rs.getString("message_text"), rs.getLong("time_posted_epoch")));
+                    }
+                }
+            } catch (SQLException e) {
+                handleSQLException(e, sql, "Error while fetching messages by ID");
+            }
+            return messages;
+        });
     }
 
-    public boolean delete(Message message) throws DaoException {
-        return deleteMessage(message.getMessage_id());
+    // DELETE, returning the deleted row in the same statement
+    public Optional<Message> deleteMessageReturning(int messageId) throws DaoException {
+        return TIMERS.timed("deleteMessageReturning", () -> {
+            String sql = "SELECT * FROM OLD TABLE (DELETE FROM Message WHERE message_id = ?)";
+            try (Connection connection = dataSource.getConnection(); PreparedStatement stmt = connection.prepareStatement(sql)) {
+                stmt.setInt(1, messageId);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    if (rs.next()) {
+                        return Optional.of(new Message(rs.getInt("message_id"), rs.getInt("posted_by"), rs.getString("message_text"), rs.getLong("time_posted_epoch")));
+                    }
+                }
+            } catch (SQLException e) {
+                handleSQLException(e, sql, "Error while deleting message");
+            }
+            return Optional.empty();
+        });
     }
 
-    // UDPATE
-    public boolean update(Message message) throws DaoException {
-        String sql = "UPDATE Message SET message_text = ? WHERE message_id = ?";
-        try (Connection connection = ConnectionUtil.getConnection(); PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setString(1, message.getMessage_text());
-            stmt.setInt(2, message.getMessage_id());
-            int rowsAffected = stmt.executeUpdate();
-            return rowsAffected > 0;
-        } catch (SQLException e) {
-            handleSQLException(e, sql, "Error while updating message");
-        }
-        return false;
+    // DELETE MANY (one statement, so all or none of the rows go; returns the rows that existed)
+    public List<Message> deleteMessagesReturning(List<Integer> messageIds) throws DaoException {
+        return TIMERS.timed("deleteMessagesReturning", () -> {
+            List<Message> messages = new ArrayList<>(messageIds.size());
+            if (messageIds.isEmpty()) {
+                return messages;
+            }
+            String sql = "SELECT * FROM OLD TABLE (DELETE FROM Message WHERE message_id = ANY(?))";
+            try (Connection connection = dataSource.getConnection(); PreparedStatement stmt = connection.prepareStatement(sql)) {
+                stmt.setObject(1, messageIds.toArray(new Integer[0]));
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        messages.add(new Message(rs.getInt("message_id"), rs.getInt("posted_by"), rs.getString("message_text"), rs.getLong("time_posted_epoch")));
+                    }
+                }
+            } catch (SQLException e) {
+                handleSQLException(e, sql, "Error while deleting messages");
+            }
+            return messages;
+        });
+    }
+
+    // UPDATE, returning the row as it was before in the same statement
+    public Optional<Message> replaceMessageText(int messageId, String messageText) throws DaoException {
+        return TIMERS.timed("replaceMessageText", () -> {
+            String sql = "SELECT * FROM OLD TABLE (UPDATE Message SET message_text = ? WHERE message_id = ?)";
+            try (Connection connection = dataSource.getConnection(); PreparedStatement stmt = connection.prepareStatement(sql)) {
+                stmt.setString(1, messageText);
+                stmt.setInt(2, messageId);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    if (rs.next()) {
+                        return Optional.of(new Message(rs.getInt("message_id"), rs.getInt("posted_by"), rs.getString("message_text"), rs.getLong("time_posted_epoch")));
+                    }
+                }
+            } catch (SQLException e) {
+                handleSQLException(e, sql, "Error while updating message");
+            }
+            return Optional.empty();
+        });
     }
 
     // GET BY ACCOUNT
     public List<Message> getMessagesByAccountId(int accountId) throws DaoException {
-        List<Message> messages = new ArrayList<>();
-        String sql = "SELECT * FROM Message WHERE posted_by = ?";
-        try (Connection connection = ConnectionUtil.getConnection(); PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setInt(1, accountId);
+        return TIMERS.timed("getMessagesByAccountId", () -> {
+            List<Message> messages = new ArrayList<>();
+            String sql = "SELECT * FROM Message WHERE posted_by = ?";
+            try (Connection connection = dataSource.getConnection(); PreparedStatement stmt = connection.prepareStatement(sql)) {
+                stmt.setInt(1, accountId);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        messages.add(new Message(rs.getInt("message_id"), rs.getInt("posted_by"), rs.getString("message_text"), rs.getLong("time_posted_epoch")));
+                    }
+                }
+            } catch (SQLException e) {
+                handleSQLException(e, sql, "Error while fetching messages by account ID");
+            }
+            return messages;
+        });
+    }
+
+    // GET PAGE BY ACCOUNT (keyset on message_id)
+    public List<Message> getMessagesByAccountIdAfter(int accountId, int afterMessageId, int limit) throws DaoException {
+        return TIMERS.timed("getMessagesByAccountIdAfter", () -> {
+            List<Message> messages = new ArrayList<>(limit);
+            String sql = "SELECT * FROM Message WHERE posted_by = ? AND message_id > ? ORDER BY message_id LIMIT ?";
+            try (Connection connection = dataSource.getConnection(); PreparedStatement stmt = connection.prepareStatement(sql)) {
+                stmt.setInt(1, accountId);
+                stmt.setInt(2, afterMessageId);
+                stmt.setInt(3, limit);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        messages.add(new Message(rs.getInt("message_id"), rs.getInt("posted_by"), rs.getString("message_text"), rs.getLong("time_posted_epoch")));
+                    }
+                }
+            } catch (SQLException e) {
+                handleSQLException(e, sql, "Error while fetching a page of messages by account ID");
+            }
+            return messages;
+        });
+    }
+
+    /**
+     * One page of a timeline: messages with since <= time_posted_epoch < until, ordered by
+     * (time_posted_epoch, message_id), oldest or newest first. Either bound may be null.
+     * When afterTime is given the page starts just past the row (afterTime, afterId) in
+     * that order, so pages stay stable while messages are added.
+     */
+    public List<Message> getMessagesInTimeRange(Long since, Long until, boolean newestFirst,
+            Long afterTime, int afterId, int limit) throws DaoException {
+        return TIMERS.timed("getMessagesInTimeRange", () -> getTimeline(null, since, until, newestFirst, afterTime, afterId, limit));
+    }
+
+    /**
+     * getMessagesInTimeRange for the messages of one account.
+     */
+    public List<Message> getMessagesByAccountIdInTimeRange(int accountId, Long since, Long until, boolean newestFirst,
+            Long afterTime, int afterId, int limit) throws DaoException {
+        return TIMERS.timed("getMessagesByAccountIdInTimeRange", () -> getTimeline(accountId, since, until, newestFirst, afterTime, afterId, limit));
+    }
+
+    // A single range scan over the (time_posted_epoch, message_id) index for the requested direction, or the
+    // (posted_by, time_posted_epoch, message_id) one for one account, that stops after limit rows. The cursor
+    // is a plain bound on time_posted_epoch, so it narrows the scanned range; the OR only skips the rows at
+    // exactly afterTime that the previous page already returned.
+    private List<Message> getTimeline(Integer accountId, Long since, Long until, boolean newestFirst,
+            Long afterTime, int afterId, int limit) throws DaoException {
+        List<Message> messages = new ArrayList<>(limit);
+        List<Object> params = new ArrayList<>();
+        // named explicitly: the planner otherwise rates the foreign key index on posted_by the same and sorts afterwards
+        String index = (accountId != null ? "message_posted_by_time_posted_epoch" : "message_time_posted_epoch")
+                + (newestFirst ? "_desc" : "_asc");
+        StringBuilder sql = new StringBuilder("SELECT * FROM Message USE INDEX (" + index + ") WHERE 1 = 1");
+        if (accountId != null) {
+            sql.append(" AND posted_by = ?");
+            params.add(accountId);
+        }
+        if (since != null) {
+            sql.append(" AND time_posted_epoch >= ?");
+            params.add(since);
+        }
+        if (until != null) {
+            sql.append(" AND time_posted_epoch < ?");
+            params.add(until);
+        }
+        if (afterTime != null) {
+            sql.append(newestFirst
+                    ? " AND time_posted_epoch <= ? AND (time_posted_epoch < ? OR message_id < ?)"
+                    : " AND time_posted_epoch >= ? AND (time_posted_epoch > ? OR message_id > ?)");
+            params.add(afterTime);
+            params.add(afterTime);
+            params.add(afterId);
+        }
+        // posted_by is constant here, but H2 only reads rows in index order when the ORDER BY starts with the index's first column
+        sql.append(accountId != null ? " ORDER BY posted_by," : " ORDER BY");
+        sql.append(newestFirst
+                ? " time_posted_epoch DESC, message_id DESC LIMIT ?"
+                : " time_posted_epoch, message_id LIMIT ?");
+        params.add(limit);
+        try (Connection connection = dataSource.getConnection(); PreparedStatement stmt = connection.prepareStatement(sql.toString())) {
+            for (int i = 0; i < params.size(); i++) {
+                stmt.setObject(i + 1, params.get(i));
+            }
             try (ResultSet rs = stmt.executeQuery()) {
                 while (rs.next()) {
                     messages.add(new Message(rs.getInt("message_id"), rs.getInt("posted_by"), rs.getString("message_text"), rs.getLong("time_posted_epoch")));
                 }
             }
         } catch (SQLException e) {
-            handleSQLException(e, sql, "Error while fetching messages by account ID");
+            handleSQLException(e, sql.toString(), "Error while fetching a timeline of messages");
         }
         return messages;
     }
 
     private void handleSQLException(SQLException e, String sql, String message) throws DaoException {
-        System.err.println(message + " - SQL: " + sql);
-        e.printStackTrace();
+        LOGGER.error("{} - SQL: {}", message, sql, e);
         throw new DaoException(message, e);
     }
 }
@@ -1,5 +1,8 @@
 
+import java.sql.SQLException;
+
 import Controller.SocialMediaController;
+import Util.ConnectionUtil;
 import io.javalin.Javalin;
 
 /**
@@ -9,7 +12,8 @@ import io.javalin.Javalin;
  */
 public class Main {
 
-    public static void main(String[] args) {
+    public static void main(String[] args) throws SQLException {
+        ConnectionUtil.migrateDatabase();
         SocialMediaController controller = new SocialMediaController();
         Javalin app = controller.startAPI();
         app.start(8080);
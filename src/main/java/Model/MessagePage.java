@@ -0,0 +1,67 @@
+package Model;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * One page of a message listing.
+ */
+public class MessagePage {
+    /**
+     * The messages on this page, in listing order.
+     */
+    public List<Message> items;
+    /**
+     * Opaque cursor to pass back as the cursor query parameter to fetch the next page, or null when this is
+     * the last page.
+     */
+    public String next;
+
+    /**
+     * A default, no-args constructor is needed for Jackson ObjectMapper to work.
+     */
+    public MessagePage() {
+    }
+
+    public MessagePage(List<Message> items, String next) {
+        this.items = items;
+        this.next = next;
+    }
+
+    public List<Message> getItems() {
+        return items;
+    }
+
+    public void setItems(List<Message> items) {
+        this.items = items;
+    }
+
+    public String getNext() {
+        return next;
+    }
+
+    public void setNext(String next) {
+        this.next = next;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        MessagePage page = (MessagePage) o;
+        return Objects.equals(items, page.items) && Objects.equals(next, page.next);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(items, next);
+    }
+
+    @Override
+    public String toString() {
+        return "MessagePage{" +
+                "items=" + items +
+                ", next='" + next + '\'' +
+                '}';
+    }
+}
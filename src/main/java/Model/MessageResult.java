@@ -0,0 +1,87 @@
+package Model;
+
+import java.util.Objects;
+
+/**
+ * The outcome for one item of a batch request, at the same position as the item in the request.
+ */
+public class MessageResult {
+    /**
+     * The HTTP status the item would have had on its own: 200, 400 for an invalid message, 404 for a missing one.
+     */
+    public int status;
+    /**
+     * The message created, found or deleted, or null when the item failed.
+     */
+    public Message message;
+    /**
+     * Why the item failed, or null when it succeeded.
+     */
+    public String error;
+
+    /**
+     * A default, no-args constructor is needed for Jackson ObjectMapper to work.
+     */
+    public MessageResult() {
+    }
+
+    public MessageResult(int status, Message message, String error) {
+        this.status = status;
+        this.message = message;
+        this.error = error;
+    }
+
+    public static MessageResult ok(Message message) {
+        return new MessageResult(200, message, null);
+    }
+
+    public static MessageResult failed(int status, String error) {
+        return new MessageResult(status, null, error);
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public void setStatus(int status) {
+        this.status = status;
+    }
+
+    public Message getMessage() {
+        return message;
+    }
+
+    public void setMessage(Message message) {
+        this.message = message;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        MessageResult result = (MessageResult) o;
+        return status == result.status && Objects.equals(message, result.message) && Objects.equals(error, result.error);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(status, message, error);
+    }
+
+    @Override
+    public String toString() {
+        return "MessageResult{" +
+                "status=" + status +
+                ", message=" + message +
+                ", error='" + error + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,52 @@
+package Service;
+
+import Model.Account;
+import Util.BoundedCache;
+
+/**
+ * Accounts indexed by both account_id and username.
+ *
+ * Accounts are never deleted, and only their stored password is ever updated
+ * (through replace), so entries do not expire; they only leave when the size
+ * bound pushes them out. Only accounts that exist are
+ * cached, since a missing account may be registered at any moment.
+ */
+public class AccountCache {
+
+    private final BoundedCache<Integer, Account> byId;
+    private final BoundedCache<String, Account> byUsername;
+
+    public AccountCache(int maximumSize) {
+        this.byId = new BoundedCache<>(maximumSize, 0);
+        this.byUsername = new BoundedCache<>(maximumSize, 0);
+    }
+
+    public Account getById(int accountId) {
+        return byId.get(accountId);
+    }
+
+    public Account getByUsername(String username) {
+        return username == null ? null : byUsername.get(username);
+    }
+
+    public void put(Account account) {
+        byId.putIfAbsent(account.getAccount_id(), account);
+        byUsername.putIfAbsent(account.getUsername(), account);
+    }
+
+    /**
+     * Overwrites any cached copy of the account, after it has been changed in the database.
+     */
+    public void replace(Account account) {
+        byId.put(account.getAccount_id(), account);
+        byUsername.put(account.getUsername(), account);
+    }
+
+    public BoundedCache<Integer, Account> getByIdCache() {
+        return byId;
+    }
+
+    public BoundedCache<String, Account> getByUsernameCache() {
+        return byUsername;
+    }
+}
@@ -1,66 +1,255 @@
 package Service;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 import DAO.AccountDAO;
 import DAO.DaoException;
 import Model.Account;
+import Util.AsyncLogger;
 
+/**
+ * Registration and login. Passwords are stored as PasswordHasher hashes, but
+ * the accounts returned to callers carry the password they supplied, as the
+ * API has always echoed it back.
+ *
+ * The async variants take the executor database work should run on; the
+ * hashing itself always runs on the PasswordHasher's own threads.
+ */
 public class AccountService {
 
+    private static final AsyncLogger LOGGER = AsyncLogger.getLogger(AccountService.class);
+
+    private static final int ACCOUNT_CACHE_SIZE = Integer.getInteger("cache.accounts.maxSize", 10_000);
+    private static final long EXPECTED_USERNAMES = Long.getLong("filter.usernames.expected", 1_000_000);
+    private static final double USERNAME_FILTER_FPP = 0.01;
+
     private final AccountDAO accountDao;
+    private final AccountCache accountCache;
+    private final UsernameFilter usernameFilter;
+    private final PasswordHasher passwordHasher;
 
     // Initialize the AccountDAO
     public AccountService() {
-        this.accountDao = new AccountDAO();
+        this(new AccountDAO());
     }
 
     public AccountService(AccountDAO accountDao) {
+        this(accountDao, new AccountCache(ACCOUNT_CACHE_SIZE));
+    }
+
+    public AccountService(AccountDAO accountDao, AccountCache accountCache) {
+        this(accountDao, accountCache, PasswordHasher.getDefault());
+    }
+
+    public AccountService(AccountDAO accountDao, AccountCache accountCache, PasswordHasher passwordHasher) {
         this.accountDao = accountDao;
+        this.accountCache = accountCache;
+        this.passwordHasher = passwordHasher;
+        this.usernameFilter = new UsernameFilter(EXPECTED_USERNAMES, USERNAME_FILTER_FPP);
+        loadUsernameFilter();
+    }
+
+    // Seed the username filter with every account already registered
+    private void loadUsernameFilter() {
+        try {
+            accountDao.forEachUsername(usernameFilter::add);
+        } catch (DaoException e) {
+            throw new ServiceException("Error loading registered usernames", e);
+        }
     }
 
     public Optional<Account> getAccountById(int id) {
+        Account cached = accountCache.getById(id);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
         try {
-            return accountDao.getAccountById(id);
+            Optional<Account> account = accountDao.getAccountById(id);
+            account.ifPresent(accountCache::put);
+            return account;
         } catch (DaoException e) {
             throw new ServiceException("Something went wrong while fetching account", e);
         }
     }
 
+    /**
+     * Looks up several accounts at once: from the cache where possible and one query for the rest.
+     * @return the accounts that exist, by account_id
+     */
+    public Map<Integer, Account> getAccountsByIds(Collection<Integer> ids) {
+        Map<Integer, Account> found = new HashMap<>();
+        Set<Integer> missing = new LinkedHashSet<>();
+        for (Integer id : ids) {
+            Account cached = accountCache.getById(id);
+            if (cached != null) {
+                found.put(id, cached);
+            } else {
+                missing.add(id);
+            }
+        }
+        try {
+            for (Account account : accountDao.getAccountsByIds(new ArrayList<>(missing))) {
+                accountCache.put(account);
+                found.put(account.getAccount_id(), account);
+            }
+            return found;
+        } catch (DaoException e) {
+            throw new ServiceException("Something went wrong while fetching accounts", e);
+        }
+    }
+
     public Account createAccount(Account account) throws ServiceException {
+        return join(createAccountAsync(account, Runnable::run));
+    }
+
+    /**
+     * Hashes the password, then inserts the account on the database executor.
+     * @return a future completed with the new account, or exceptionally with a
+     *         ServiceException, or RejectedExecutionException if either executor is full
+     */
+    public CompletableFuture<Account> createAccountAsync(Account account, Executor databaseExecutor) {
+        return passwordHasher.hash(account.getPassword())
+                .thenApplyAsync(passwordHash -> insertAccount(account, passwordHash), databaseExecutor);
+    }
+
+    private Account insertAccount(Account account, String passwordHash) {
         try {
             if (isUsernameTaken(account.getUsername())) {
                 throw new ServiceException("Username already taken");
             }
-            return accountDao.createAccount(account);
+            Account created = accountDao.createAccount(new Account(account.getUsername(), passwordHash));
+            usernameFilter.add(created.getUsername());
+            accountCache.put(created);
+            return new Account(created.getAccount_id(), created.getUsername(), account.getPassword());
         } catch (DaoException e) {
             throw new ServiceException("Error creating account", e);
         }
     }
 
     public Optional<Account> validateLogin(Account account) throws ServiceException, DaoException {
-        Optional<Account> storedAccount = getAccountByUsername(account.getUsername());
+        return join(validateLoginAsync(account, Runnable::run));
+    }
 
-        if (storedAccount.isPresent() && storedAccount.get().getPassword().equals(account.getPassword())) {
-            return storedAccount;
-        } else {
-            return Optional.empty();
+    /**
+     * Looks the account up on the database executor and checks the password on
+     * the hasher's threads. A password stored in plain text, or hashed at a lower
+     * cost, is replaced in the background once it has been verified.
+     * @return a future completed with the account, or empty if the username or password is wrong
+     */
+    public CompletableFuture<Optional<Account>> validateLoginAsync(Account attempt, Executor databaseExecutor) {
+        return CompletableFuture.supplyAsync(() -> getAccountByUsername(attempt.getUsername()), databaseExecutor)
+                .thenCompose(stored -> {
+                    if (stored.isEmpty()) {
+                        return CompletableFuture.completedFuture(Optional.<Account>empty());
+                    }
+                    Account account = stored.get();
+                    return passwordHasher.verify(attempt.getPassword(), account.getPassword()).thenApply(matches -> {
+                        if (!matches) {
+                            return Optional.<Account>empty();
+                        }
+                        if (passwordHasher.needsRehash(account.getPassword())) {
+                            upgradePassword(account, attempt.getPassword(), databaseExecutor);
+                        }
+                        return Optional.of(new Account(account.getAccount_id(), account.getUsername(), attempt.getPassword()));
+                    });
+                });
+    }
+
+    // Best effort: if it fails or the executors are busy, the next login tries again
+    private void upgradePassword(Account stored, String password, Executor databaseExecutor) {
+        try {
+            passwordHasher.hash(password)
+                    .thenAcceptAsync(passwordHash -> {
+                        try {
+                            if (accountDao.replacePassword(stored.getAccount_id(), stored.getPassword(), passwordHash)) {
+                                accountCache.replace(new Account(stored.getAccount_id(), stored.getUsername(), passwordHash));
+                            }
+                        } catch (DaoException e) {
+                            throw new ServiceException("Error upgrading password", e);
+                        }
+                    }, databaseExecutor)
+                    .whenComplete((ignored, e) -> {
+                        if (e != null) {
+                            LOGGER.warn("Could not upgrade the stored password of account {}", stored.getAccount_id(), e);
+                        }
+                    });
+        } catch (RejectedExecutionException e) {
+            LOGGER.debug("Password hasher busy, not upgrading account {}", stored.getAccount_id());
+        }
+    }
+
+    // Waits for an async result and rethrows what it failed with
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new ServiceException("Unexpected error", e.getCause());
         }
     }
 
     public boolean isUsernameTaken(String username) throws ServiceException {
+        if (accountCache.getByUsername(username) != null) {
+            return true;
+        }
+        if (username != null && !usernameFilter.mightExist(username)) {
+            return false;
+        }
         try {
-            return accountDao.doesUsernameExist(username);
+            boolean exists = accountDao.doesUsernameExist(username);
+            if (!exists && username != null) {
+                usernameFilter.recordFalsePositive();
+            }
+            return exists;
         } catch (DaoException e) {
             throw new ServiceException("Error checking if username exists", e);
         }
     }
 
     private Optional<Account> getAccountByUsername(String username) throws ServiceException {
+        Account cached = accountCache.getByUsername(username);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
         try {
-            return accountDao.getAccountByUsername(username);
+            Optional<Account> account = accountDao.getAccountByUsername(username);
+            account.ifPresent(accountCache::put);
+            return account;
         } catch (DaoException e) {
             throw new ServiceException("Could not find your account based on your username " + username, e);
         }
     }
+
+    /**
+     * @return the password hasher, for its queue and rejection counts
+     */
+    public PasswordHasher getPasswordHasher() {
+        return passwordHasher;
+    }
+
+    /**
+     * @return the username filter, for its false positive rate
+     */
+    public UsernameFilter getUsernameFilter() {
+        return usernameFilter;
+    }
+
+    /**
+     * @return the account cache, for its hit ratio and eviction counts
+     */
+    public AccountCache getAccountCache() {
+        return accountCache;
+    }
 }
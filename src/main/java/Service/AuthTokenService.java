@@ -0,0 +1,133 @@
+package Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Clock;
+import java.util.Base64;
+import java.util.OptionalInt;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Issues and checks stateless login tokens, so no server keeps per-user
+ * session state and any instance sharing the key can verify any token.
+ *
+ * A token is "accountId.expiresAt.signature", where expiresAt is in epoch
+ * seconds and signature is the base64url HMAC-SHA256 of the first two parts.
+ * Verifying one needs no database access: it is one HMAC over a few bytes
+ * with a key that is set up once.
+ *
+ * The key comes from -Dauth.tokenSecret (base64). Without it a random key is
+ * generated at startup, which is fine for one instance but makes tokens
+ * invalid after a restart and on other instances.
+ */
+public class AuthTokenService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AuthTokenService.class);
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final long DEFAULT_TTL_SECONDS = Long.getLong("auth.tokenTtlSeconds", 3600);
+
+    private final Mac prototype;
+    private final long ttlSeconds;
+    private final Clock clock;
+
+    /**
+     * @param key the HMAC key, at least 32 bytes
+     * @param ttlSeconds how long an issued token stays valid
+     */
+    public AuthTokenService(byte[] key, long ttlSeconds, Clock clock) {
+        if (key.length < 32 || ttlSeconds < 1) {
+            throw new IllegalArgumentException("Token key must be at least 32 bytes and the lifetime positive");
+        }
+        try {
+            this.prototype = Mac.getInstance(ALGORITHM);
+            this.prototype.init(new SecretKeySpec(key, ALGORITHM));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(ALGORITHM + " is not available", e);
+        }
+        this.ttlSeconds = ttlSeconds;
+        this.clock = clock;
+    }
+
+    /**
+     * @return the service used by controllers that are not given their own,
+     *         keyed by auth.tokenSecret and valid for auth.tokenTtlSeconds
+     */
+    public static AuthTokenService getDefault() {
+        return DefaultHolder.SERVICE;
+    }
+
+    // initialized by the class loader the first time getDefault() is called
+    private static final class DefaultHolder {
+
+        private static final AuthTokenService SERVICE = new AuthTokenService(defaultKey(), DEFAULT_TTL_SECONDS, Clock.systemUTC());
+
+        private static byte[] defaultKey() {
+            String secret = System.getProperty("auth.tokenSecret");
+            if (secret != null) {
+                return Base64.getDecoder().decode(secret);
+            }
+            LOGGER.warn("auth.tokenSecret is not set; using a random key, so tokens will not survive a restart "
+                    + "or be accepted by other instances");
+            byte[] key = new byte[32];
+            new SecureRandom().nextBytes(key);
+            return key;
+        }
+    }
+
+    /**
+     * @return a token for the account that expires after the configured lifetime
+     */
+    public String issue(int accountId) {
+        String payload = accountId + "." + (clock.instant().getEpochSecond() + ttlSeconds);
+        return payload + "." + sign(payload);
+    }
+
+    /**
+     * @return the account id the token was issued for, or empty if the token is
+     *         malformed, was not signed with this key, or has expired
+     */
+    public OptionalInt verify(String token) {
+        int signatureStart = token.lastIndexOf('.');
+        int expiryStart = signatureStart < 0 ? -1 : token.lastIndexOf('.', signatureStart - 1);
+        if (expiryStart <= 0) {
+            return OptionalInt.empty();
+        }
+        String payload = token.substring(0, signatureStart);
+        byte[] expected = sign(payload).getBytes(StandardCharsets.US_ASCII);
+        byte[] actual = token.substring(signatureStart + 1).getBytes(StandardCharsets.US_ASCII);
+        if (!MessageDigest.isEqual(expected, actual)) {
+            return OptionalInt.empty();
+        }
+        try {
+            long expiresAt = Long.parseLong(token.substring(expiryStart + 1, signatureStart));
+            if (clock.instant().getEpochSecond() >= expiresAt) {
+                return OptionalInt.empty();
+            }
+            return OptionalInt.of(Integer.parseInt(token.substring(0, expiryStart)));
+        } catch (NumberFormatException e) {
+            return OptionalInt.empty();
+        }
+    }
+
+    private String sign(String payload) {
+        byte[] signature = newMac().doFinal(payload.getBytes(StandardCharsets.US_ASCII));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(signature);
+    }
+
+    // a copy of the initialized prototype skips the key setup on every call
+    private Mac newMac() {
+        try {
+            return (Mac) prototype.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException(ALGORITHM + " provider does not support cloning", e);
+        }
+    }
+}
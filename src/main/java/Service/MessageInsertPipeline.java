@@ -0,0 +1,226 @@
+package Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import DAO.DaoException;
+import DAO.MessageDAO;
+import Model.Message;
+
+/**
+ * Group commit for new messages: callers enqueue a message and get a future,
+ * and a single writer thread inserts whatever has queued up as one JDBC batch
+ * in one transaction, then completes each future with its own row.
+ *
+ * The writer waits at most maxLingerMillis after the first queued message for
+ * more to arrive, and never puts more than maxBatchSize rows in one batch, so
+ * the latency a caller pays for batching is bounded. Under light load batches
+ * are small and the linger is the only cost; under heavy load one commit is
+ * shared by many requests. Even with no linger at all, the messages that arrive
+ * while one batch is committing make up the next batch.
+ *
+ * If a batch fails, its rows are retried one at a time so a single bad row
+ * only fails its own caller.
+ *
+ * Submitting never blocks: a full queue fails the future straight away, so
+ * callers can hand the future on instead of holding a thread until the batch
+ * commits. Futures are completed on the writer thread, so whatever callers
+ * chain onto them should be quick.
+ */
+public class MessageInsertPipeline implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MessageInsertPipeline.class);
+
+    private final MessageDAO messageDao;
+    private final int maxBatchSize;
+    private final long maxLingerNanos;
+    private final BlockingQueue<PendingInsert> queue;
+    private final Thread writer;
+    private volatile boolean closed;
+
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder rows = new LongAdder();
+    private final LongAdder fallbacks = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+
+    /**
+     * @param maxBatchSize the most messages inserted in one transaction
+     * @param maxLingerMillis how long the writer waits for a batch to fill once it has one message
+     * @param queueCapacity how many messages may wait before submit rejects new ones
+     */
+    public MessageInsertPipeline(MessageDAO messageDao, int maxBatchSize, long maxLingerMillis, int queueCapacity) {
+        if (maxBatchSize < 1 || maxLingerMillis < 0 || queueCapacity < 1) {
+            throw new IllegalArgumentException("Invalid insert pipeline sizing");
+        }
+        this.messageDao = messageDao;
+        this.maxBatchSize = maxBatchSize;
+        this.maxLingerNanos = TimeUnit.MILLISECONDS.toNanos(maxLingerMillis);
+        this.queue = new LinkedBlockingQueue<>(queueCapacity);
+        this.writer = new Thread(this::run, "message-insert-pipeline");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Queues a message for insertion without waiting for room.
+     * @return a future completed with the inserted message, or exceptionally with the DaoException that stopped it,
+     * or with a RejectedExecutionException if the queue was full
+     */
+    public CompletableFuture<Message> submit(Message message) {
+        PendingInsert pending = new PendingInsert(message);
+        if (closed) {
+            pending.future.completeExceptionally(new IllegalStateException("Insert pipeline is closed"));
+            return pending.future;
+        }
+        if (!queue.offer(pending)) {
+            rejections.increment();
+            pending.future.completeExceptionally(new RejectedExecutionException("Insert pipeline queue is full"));
+        }
+        return pending.future;
+    }
+
+    private void run() {
+        List<PendingInsert> batch = new ArrayList<>(maxBatchSize);
+        while (!closed || !queue.isEmpty()) {
+            try {
+                PendingInsert first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + maxLingerNanos;
+                while (batch.size() < maxBatchSize) {
+                    // take what is already queued without waiting, then linger for the rest
+                    if (queue.drainTo(batch, maxBatchSize - batch.size()) > 0) {
+                        continue;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    PendingInsert next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                write(batch);
+            } catch (InterruptedException e) {
+                if (!closed) {
+                    LOGGER.warn("Insert pipeline interrupted while open");
+                }
+            } catch (RuntimeException e) {
+                LOGGER.error("Insert pipeline failed a batch", e);
+                for (PendingInsert pending : batch) {
+                    pending.future.completeExceptionally(e);
+                }
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<PendingInsert> batch) {
+        List<Message> messages = new ArrayList<>(batch.size());
+        for (PendingInsert pending : batch) {
+            messages.add(pending.message);
+        }
+        try {
+            List<Message> created = messageDao.createMessages(messages);
+            batches.increment();
+            rows.add(created.size());
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).future.complete(created.get(i));
+            }
+        } catch (DaoException e) {
+            if (batch.size() == 1) {
+                batch.get(0).future.completeExceptionally(e);
+                return;
+            }
+            // find the row that failed without failing the rest with it
+            fallbacks.increment();
+            for (PendingInsert pending : batch) {
+                try {
+                    pending.future.complete(messageDao.createMessage(pending.message));
+                } catch (DaoException rowFailure) {
+                    pending.future.completeExceptionally(rowFailure);
+                }
+            }
+        }
+    }
+
+    /**
+     * Stops accepting messages and waits for the ones already queued to be written.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // anything that slipped in after the writer stopped is failed rather than left hanging
+        PendingInsert pending;
+        while ((pending = queue.poll()) != null) {
+            pending.future.completeExceptionally(new IllegalStateException("Insert pipeline is closed"));
+        }
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    public int getQueuedCount() {
+        return queue.size();
+    }
+
+    public long getBatchCount() {
+        return batches.sum();
+    }
+
+    /**
+     * @return rows inserted by successful batches
+     */
+    public long getRowCount() {
+        return rows.sum();
+    }
+
+    /**
+     * @return how many batches failed and were retried one row at a time
+     */
+    public long getFallbackCount() {
+        return fallbacks.sum();
+    }
+
+    /**
+     * @return how many messages were turned away because the queue was full
+     */
+    public long getRejectedCount() {
+        return rejections.sum();
+    }
+
+    /**
+     * @return rows per successful batch, or 0 before the first batch
+     */
+    public double getAverageBatchSize() {
+        long batchCount = batches.sum();
+        return batchCount == 0 ? 0 : (double) rows.sum() / batchCount;
+    }
+
+    private static final class PendingInsert {
+
+        private final Message message;
+        private final CompletableFuture<Message> future = new CompletableFuture<>();
+
+        private PendingInsert(Message message) {
+            this.message = message;
+        }
+    }
+}
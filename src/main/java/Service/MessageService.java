@@ -1,63 +1,389 @@
 package Service;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 import DAO.DaoException;
 import DAO.MessageDAO;
 import Model.Account;
 import Model.Message;
+import Model.MessagePage;
+import Model.MessageResult;
+import Util.AsyncLogger;
+import Util.BoundedCache;
+import Util.InvertedIndex;
+import Util.VersionCounters;
 
 public class MessageService {
 
     private final MessageDAO messageDao;
-    private static final Logger LOGGER = LoggerFactory.getLogger(MessageService.class);
+    private final BoundedCache<Integer, Message> messageCache;
+    private final MessageInsertPipeline insertPipeline;
+    private final InvertedIndex searchIndex;
+    // bumped after every committed change, for the ETags of single messages and of per-account listings
+    private final VersionCounters messageVersions = new VersionCounters(VERSION_STRIPES);
+    private final VersionCounters accountVersions = new VersionCounters(VERSION_STRIPES);
+    // bumped after every committed change to any message, for the cached body of the full listing
+    private final AtomicLong allMessagesVersion = new AtomicLong();
+    // per-request lines are sampled and written off the request thread
+    private static final AsyncLogger LOGGER = AsyncLogger.getLogger(MessageService.class);
     private static final String DB_ACCESS_ERROR_MSG = "Error accessing the database";
+    private static final String MESSAGE_NOT_FOUND_MSG = "Message not found";
+    private static final int STREAM_FETCH_SIZE = 256;
+    private static final int MESSAGE_CACHE_SIZE = Integer.getInteger("cache.messages.maxSize", 10_000);
+    private static final long MESSAGE_CACHE_TTL_MILLIS = Long.getLong("cache.messages.ttlMillis", 60_000);
+    private static final boolean GROUP_COMMIT = Boolean.getBoolean("messages.groupCommit");
+    private static final int GROUP_COMMIT_MAX_BATCH = Integer.getInteger("messages.groupCommit.maxBatchSize", 64);
+    private static final long GROUP_COMMIT_MAX_LINGER_MILLIS = Long.getLong("messages.groupCommit.maxLingerMillis", 0);
+    private static final int GROUP_COMMIT_QUEUE_CAPACITY = Integer.getInteger("messages.groupCommit.queueCapacity", 10_000);
+    private static final boolean SEARCH_INDEX = Boolean.parseBoolean(System.getProperty("search.index.enabled", "true"));
+    private static final int VERSION_STRIPES = Integer.getInteger("etag.versionStripes", 4096);
 
     public MessageService() {
-        this.messageDao = new MessageDAO();
+        this(new MessageDAO());
     }
 
     public MessageService(MessageDAO messageDao) {
+        this(messageDao, new BoundedCache<>(MESSAGE_CACHE_SIZE, MESSAGE_CACHE_TTL_MILLIS));
+    }
+
+    public MessageService(MessageDAO messageDao, BoundedCache<Integer, Message> messageCache) {
+        this(messageDao, messageCache, GROUP_COMMIT
+                ? new MessageInsertPipeline(messageDao, GROUP_COMMIT_MAX_BATCH, GROUP_COMMIT_MAX_LINGER_MILLIS, GROUP_COMMIT_QUEUE_CAPACITY)
+                : null);
+    }
+
+    /**
+     * @param insertPipeline batches concurrent createMessage calls into shared commits, or null to insert each message on its own
+     */
+    public MessageService(MessageDAO messageDao, BoundedCache<Integer, Message> messageCache, MessageInsertPipeline insertPipeline) {
+        this(messageDao, messageCache, insertPipeline, SEARCH_INDEX ? new InvertedIndex() : null);
+    }
+
+    /**
+     * @param searchIndex filled from the database here and kept up to date by every
+     *                    create, update and delete, or null to turn search off
+     */
+    public MessageService(MessageDAO messageDao, BoundedCache<Integer, Message> messageCache, MessageInsertPipeline insertPipeline,
+            InvertedIndex searchIndex) {
         this.messageDao = messageDao;
+        this.messageCache = messageCache;
+        this.insertPipeline = insertPipeline;
+        this.searchIndex = searchIndex;
+        loadSearchIndex();
     }
 
-    // GET BY ID
+    // Index every message already in the database
+    private void loadSearchIndex() {
+        if (searchIndex == null) {
+            return;
+        }
+        try {
+            messageDao.streamAllMessages(STREAM_FETCH_SIZE, message -> searchIndex.add(message.getMessage_id(), message.getMessage_text()));
+        } catch (DaoException e) {
+            throw new ServiceException("Error loading the search index", e);
+        }
+    }
+
+    // GET BY ID (read through the message cache)
     public Optional<Message> getMessageById(int id) {
-        LOGGER.info("Fetching message with ID: {}", id);
+        LOGGER.infoSampled("Fetching message with ID: {}", id);
+        Message cached = messageCache.get(id);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
         try {
+            long version = messageVersions.get(id);
             Optional<Message> message = messageDao.getMessageById(id);
             if (!message.isPresent()) {
-                throw new ServiceException("Message not found");
+                throw new ServiceException(MESSAGE_NOT_FOUND_MSG);
             }
-            LOGGER.info("Fetched message: {}", message.orElse(null));
+            cacheLoaded(message.get(), version);
+            LOGGER.infoSampled("Fetched message: {}", message.orElse(null));
             return message;
         } catch (DaoException e) {
             throw new ServiceException(DB_ACCESS_ERROR_MSG, e);
         }
     }
 
+    // SEARCH
+    /**
+     * @param matchAll true to return only messages containing every word of the query, false for any word
+     * @return up to limit messages, best match first
+     */
+    public List<Message> searchMessages(String query, boolean matchAll, int limit) {
+        LOGGER.infoSampled("Searching messages for: {}", query);
+        if (searchIndex == null) {
+            throw new ServiceException("Search is turned off");
+        }
+        List<Integer> ids = searchIndex.search(query, matchAll, limit);
+        try {
+            Map<Integer, Message> found = findMessagesByIds(ids);
+            List<Message> messages = new ArrayList<>(ids.size());
+            for (Integer id : ids) {
+                // a message deleted since the index was read is simply left out
+                Message message = found.get(id);
+                if (message != null) {
+                    messages.add(message);
+                }
+            }
+            return messages;
+        } catch (DaoException e) {
+            throw new ServiceException(DB_ACCESS_ERROR_MSG, e);
+        }
+    }
+
+    // GET MANY BY ID
+    /**
+     * @return one result per id, in the same order: the message, or 404 if there is none
+     */
+    public List<MessageResult> getMessagesByIds(List<Integer> ids) {
+        LOGGER.infoSampled("Fetching {} messages by ID", ids.size());
+        try {
+            Map<Integer, Message> found = findMessagesByIds(ids);
+            List<MessageResult> results = new ArrayList<>(ids.size());
+            for (Integer id : ids) {
+                Message message = found.get(id);
+                results.add(message != null ? MessageResult.ok(message) : MessageResult.failed(404, MESSAGE_NOT_FOUND_MSG));
+            }
+            return results;
+        } catch (DaoException e) {
+            throw new ServiceException(DB_ACCESS_ERROR_MSG, e);
+        }
+    }
+
+    // Messages by id, from the cache where possible and one query for the rest
+    private Map<Integer, Message> findMessagesByIds(List<Integer> ids) throws DaoException {
+        Map<Integer, Message> found = new HashMap<>();
+        Map<Integer, Long> missing = new LinkedHashMap<>();
+        for (Integer id : ids) {
+            Message cached = messageCache.get(id);
+            if (cached != null) {
+                found.put(id, cached);
+            } else {
+                missing.putIfAbsent(id, messageVersions.get(id));
+            }
+        }
+        for (Message message : messageDao.getMessagesByIds(new ArrayList<>(missing.keySet()))) {
+            cacheLoaded(message, missing.get(message.getMessage_id()));
+            found.put(message.getMessage_id(), message);
+        }
+        return found;
+    }
+
+    /**
+     * Caches a message read from the database while its version was version, unless
+     * it has been written since. Writers bump the version and then invalidate, so a
+     * write that lands after the check either removes the entry itself or is seen by
+     * the second check, and a deleted or replaced row never outlives its write in
+     * the cache.
+     */
+    private void cacheLoaded(Message message, long version) {
+        int id = message.getMessage_id();
+        if (messageVersions.get(id) != version) {
+            return;
+        }
+        messageCache.putIfAbsent(id, message);
+        if (messageVersions.get(id) != version) {
+            messageCache.invalidate(id);
+        }
+    }
+
+    /**
+     * @return a tag that changes whenever the message is created, updated or deleted;
+     *         read it before reading the message it is sent with
+     */
+    public String getMessageTag(int id) {
+        return messageVersions.tag(id);
+    }
+
+    /**
+     * @return a tag that changes whenever any message posted by the account is created, updated or deleted;
+     *         read it before reading the listing it is sent with
+     */
+    public String getAccountMessagesTag(int accountId) {
+        return accountVersions.tag(accountId);
+    }
+
+    /**
+     * @return a number that goes up whenever any message is created, updated or deleted;
+     *         read it before reading the listing it describes
+     */
+    public long getAllMessagesVersion() {
+        return allMessagesVersion.get();
+    }
+
+    // Called once a change to the message has been committed and cached
+    private void changed(Message message) {
+        messageVersions.bump(message.getMessage_id());
+        accountVersions.bump(message.getPosted_by());
+        allMessagesVersion.incrementAndGet();
+    }
+
+    // Called when changes to the messages may have been committed before an error. A message
+    // still in the cache tells whose listing changed; for any other, every account's might have.
+    private void mayHaveChanged(List<Integer> ids) {
+        boolean ownerUnknown = false;
+        for (Integer id : ids) {
+            Message known = messageCache.get(id);
+            messageCache.invalidate(id);
+            if (known != null) {
+                changed(known);
+            } else {
+                messageVersions.bump(id);
+                ownerUnknown = true;
+            }
+        }
+        if (ownerUnknown) {
+            accountVersions.bumpAll();
+        }
+        allMessagesVersion.incrementAndGet();
+        // again after the bumps (see cacheLoaded)
+        for (Integer id : ids) {
+            messageCache.invalidate(id);
+        }
+    }
+
+    /**
+     * @return the index behind searchMessages, for its size, or null when search is turned off
+     */
+    public InvertedIndex getSearchIndex() {
+        return searchIndex;
+    }
+
+    /**
+     * @return the cache in front of getMessageById, for its hit ratio and eviction counts
+     */
+    public BoundedCache<Integer, Message> getMessageCache() {
+        return messageCache;
+    }
+
     // GET ALL
     public List<Message> getAllMessages() {
-        LOGGER.info("Fetching all messages");
+        LOGGER.infoSampled("Fetching all messages");
         try {
             List<Message> messages = messageDao.getAllMessages();
-            LOGGER.info("Fetched {} messages", messages.size());
+            LOGGER.infoSampled("Fetched {} messages", messages.size());
             return messages;
         } catch (DaoException e) {
             throw new ServiceException(DB_ACCESS_ERROR_MSG, e);
         }
     }
 
+    // STREAM ALL
+    public void streamAllMessages(Consumer<Message> consumer) {
+        LOGGER.infoSampled("Streaming all messages");
+        try {
+            messageDao.streamAllMessages(STREAM_FETCH_SIZE, consumer);
+        } catch (DaoException e) {
+            throw new ServiceException(DB_ACCESS_ERROR_MSG, e);
+        }
+    }
+
+    // GET PAGE
+    public MessagePage getMessagePage(String cursor, int limit) {
+        LOGGER.infoSampled("Fetching a page of {} messages", limit);
+        int afterId = cursor == null ? 0 : PageCursor.decode(cursor).getLastMessageId();
+        try {
+            return toPage(messageDao.getMessagesAfter(afterId, limit + 1), limit);
+        } catch (DaoException e) {
+            throw new ServiceException(DB_ACCESS_ERROR_MSG, e);
+        }
+    }
+
+    // GET PAGE BY ACCOUNT ID
+    public MessagePage getMessagePageByAccountId(int accountId, String cursor, int limit) {
+        LOGGER.infoSampled("Fetching a page of {} messages posted by account ID: {}", limit, accountId);
+        int afterId = cursor == null ? 0 : PageCursor.decode(cursor).getLastMessageId();
+        try {
+            return toPage(messageDao.getMessagesByAccountIdAfter(accountId, afterId, limit + 1), limit);
+        } catch (DaoException e) {
+            throw new ServiceException(DB_ACCESS_ERROR_MSG, e);
+        }
+    }
+
+    /**
+     * One page of the messages posted at since <= time_posted_epoch < until, oldest or newest first.
+     * @param since the earliest time to include, or null for no lower bound
+     * @param until the first time to leave out, or null for no upper bound
+     * @param cursor the next cursor of the previous page of the same timeline, or null for the first page
+     * @throws IllegalArgumentException if the cursor is not a timeline cursor
+     */
+    public MessagePage getMessageTimeline(Long since, Long until, boolean newestFirst, String cursor, int limit) {
+        LOGGER.infoSampled("Fetching a timeline page of {} messages", limit);
+        PageCursor after = timelineCursor(cursor);
+        try {
+            return toTimelinePage(messageDao.getMessagesInTimeRange(since, until, newestFirst,
+                    after == null ? null : after.getLastTimePosted(), after == null ? 0 : after.getLastMessageId(),
+                    limit + 1), limit);
+        } catch (DaoException e) {
+            throw new ServiceException(DB_ACCESS_ERROR_MSG, e);
+        }
+    }
+
+    /**
+     * getMessageTimeline for the messages posted by one account.
+     */
+    public MessagePage getMessageTimelineByAccountId(int accountId, Long since, Long until, boolean newestFirst,
+            String cursor, int limit) {
+        LOGGER.infoSampled("Fetching a timeline page of {} messages posted by account ID: {}", limit, accountId);
+        PageCursor after = timelineCursor(cursor);
+        try {
+            return toTimelinePage(messageDao.getMessagesByAccountIdInTimeRange(accountId, since, until, newestFirst,
+                    after == null ? null : after.getLastTimePosted(), after == null ? 0 : after.getLastMessageId(),
+                    limit + 1), limit);
+        } catch (DaoException e) {
+            throw new ServiceException(DB_ACCESS_ERROR_MSG, e);
+        }
+    }
+
+    private static PageCursor timelineCursor(String cursor) {
+        if (cursor == null) {
+            return null;
+        }
+        PageCursor decoded = PageCursor.decode(cursor);
+        if (!decoded.hasTime()) {
+            throw new IllegalArgumentException("Not a timeline cursor: " + cursor);
+        }
+        return decoded;
+    }
+
+    // One extra row is fetched to find out whether there is a next page without a second query
+    private MessagePage toPage(List<Message> rows, int limit) {
+        if (rows.size() <= limit) {
+            return new MessagePage(rows, null);
+        }
+        List<Message> items = rows.subList(0, limit);
+        return new MessagePage(items, new PageCursor(items.get(limit - 1).getMessage_id()).encode());
+    }
+
+    private MessagePage toTimelinePage(List<Message> rows, int limit) {
+        if (rows.size() <= limit) {
+            return new MessagePage(rows, null);
+        }
+        List<Message> items = rows.subList(0, limit);
+        Message last = items.get(limit - 1);
+        return new MessagePage(items, new PageCursor(last.getTime_posted_epoch(), last.getMessage_id()).encode());
+    }
+
     // GET MESSAGE BY ACCOUNT ID
     public List<Message> getMessagesByAccountId(int accountId) {
-        LOGGER.info("Fetching messages posted by account ID: {}", accountId);
+        LOGGER.infoSampled("Fetching messages posted by account ID: {}", accountId);
         try {
             List<Message> messages = messageDao.getMessagesByAccountId(accountId);
-            LOGGER.info("Fetched {} messages", messages.size());
+            LOGGER.infoSampled("Fetched {} messages", messages.size());
             return messages;
         } catch (DaoException e) {
             throw new ServiceException(DB_ACCESS_ERROR_MSG, e);
@@ -66,71 +392,215 @@ public class MessageService {
 
     // CREATE MESSAGE
     public Message createMessage(Message message, Account account) {
-        LOGGER.info("Creating message: {}", message);
+        return join(createMessageAsync(message, account, Runnable::run));
+    }
 
-        // Validate the message
-        validateMessage(message);
+    /**
+     * Inserts the message on the database executor, or hands it to the group-commit
+     * pipeline when there is one, in which case no thread waits for the batch to commit.
+     * @return a future completed with the new message, or exceptionally with a
+     *         ServiceException, or RejectedExecutionException if the pipeline queue is full
+     */
+    public CompletableFuture<Message> createMessageAsync(Message message, Account account, Executor databaseExecutor) {
+        LOGGER.infoSampled("Creating message: {}", message);
+        try {
+            // Validate the message
+            validateMessage(message);
+        } catch (ServiceException e) {
+            return CompletableFuture.failedFuture(e);
+        }
 
         // Ensure that the account exists
         if (account == null) {
-            throw new ServiceException("Account must exist when posting a new message");
+            return CompletableFuture.failedFuture(new ServiceException("Account must exist when posting a new message"));
         }
 
-        try {
-            // Insert the message into the database
-            Message createdMessage = messageDao.createMessage(message);
-            LOGGER.info("Created message: {}", createdMessage);
+        // Insert the message into the database, sharing a commit with other posts when group commit is on
+        CompletableFuture<Message> inserted = insertPipeline == null
+                ? CompletableFuture.supplyAsync(() -> insertMessage(message), databaseExecutor)
+                : insertPipeline.submit(message).exceptionally(e -> {
+                    Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                    if (cause instanceof RejectedExecutionException) {
+                        throw (RejectedExecutionException) cause;
+                    }
+                    throw new ServiceException(DB_ACCESS_ERROR_MSG, cause);
+                });
+        return inserted.thenApply(createdMessage -> {
+            LOGGER.infoSampled("Created message: {}", createdMessage);
+            if (searchIndex != null) {
+                searchIndex.add(createdMessage.getMessage_id(), createdMessage.getMessage_text());
+            }
+            changed(createdMessage);
             return createdMessage;
+        });
+    }
+
+    private Message insertMessage(Message message) {
+        try {
+            return messageDao.createMessage(message);
         } catch (DaoException e) {
             throw new ServiceException(DB_ACCESS_ERROR_MSG, e);
         }
     }
 
-    // UPDATE 
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new ServiceException(DB_ACCESS_ERROR_MSG, e.getCause());
+        }
+    }
+
+    // CREATE MANY
+    /**
+     * Validates every message as createMessage would and inserts the valid ones
+     * together, in one JDBC batch and one transaction.
+     * @param accounts the accounts the messages are posted by, by account_id; a message whose account is missing is invalid
+     * @return one result per message, in the same order: the created message, or 400 and why it was not created
+     */
+    public List<MessageResult> createMessages(List<Message> messages, Map<Integer, Account> accounts) {
+        LOGGER.infoSampled("Creating {} messages", messages.size());
+        List<MessageResult> results = new ArrayList<>(messages.size());
+        List<Message> valid = new ArrayList<>(messages.size());
+        for (Message message : messages) {
+            try {
+                validateMessage(message);
+                if (!accounts.containsKey(message.getPosted_by())) {
+                    throw new ServiceException("Account must exist when posting a new message");
+                }
+                valid.add(message);
+                results.add(null);
+            } catch (ServiceException e) {
+                results.add(MessageResult.failed(400, e.getMessage()));
+            }
+        }
+        if (valid.isEmpty()) {
+            return results;
+        }
+        try {
+            List<Message> created = messageDao.createMessages(valid);
+            int next = 0;
+            for (int i = 0; i < results.size(); i++) {
+                if (results.get(i) == null) {
+                    Message message = created.get(next++);
+                    if (searchIndex != null) {
+                        searchIndex.add(message.getMessage_id(), message.getMessage_text());
+                    }
+                    changed(message);
+                    results.set(i, MessageResult.ok(message));
+                }
+            }
+            return results;
+        } catch (DaoException e) {
+            throw new ServiceException(DB_ACCESS_ERROR_MSG, e);
+        }
+    }
+
+    /**
+     * @return the group-commit pipeline behind createMessage, or null when messages are inserted one at a time
+     */
+    public MessageInsertPipeline getInsertPipeline() {
+        return insertPipeline;
+    }
+
+    // UPDATE (one statement that returns the row as it was, so the search index can drop the old words)
     public Message updateMessage(Message message) {
-        LOGGER.info("Updating message: {}", message.getMessage_id());
+        LOGGER.infoSampled("Updating message: {}", message.getMessage_id());
 
         // Validate the message
         validateMessage(message);
 
+        int id = message.getMessage_id();
         try {
-            Optional<Message> existingMessageOpt = messageDao.getMessageById(message.getMessage_id());
-            if (existingMessageOpt.isPresent()) {
-                Message existingMessage = existingMessageOpt.get();
-                message.setPosted_by(existingMessage.getPosted_by());
-                message.setTime_posted_epoch(existingMessage.getTime_posted_epoch());
+            Optional<Message> previous = messageDao.replaceMessageText(id, message.getMessage_text());
+            if (!previous.isPresent()) {
+                messageCache.invalidate(id);
+                throw new ServiceException(MESSAGE_NOT_FOUND_MSG);
+            }
+            Message updated = new Message(id, previous.get().getPosted_by(), message.getMessage_text(), previous.get().getTime_posted_epoch());
+            messageCache.put(id, updated);
+            if (searchIndex != null) {
+                searchIndex.update(id, previous.get().getMessage_text(), updated.getMessage_text());
+            }
+            changed(updated);
+            // again after the bump: admission may have turned the first put away, and a reader
+            // that loaded the old row before the bump may have cached it since (see cacheLoaded)
+            messageCache.put(id, updated);
+            return updated;
+        } catch (DaoException e) {
+            // the update may have been committed before the error
+            mayHaveChanged(List.of(id));
+            throw new ServiceException(DB_ACCESS_ERROR_MSG, e);
+        }
+    }
 
-                boolean isUpdated = messageDao.update(message);
-                if (isUpdated) {
-                    return message;
-                } else {
-                    throw new ServiceException("Failed to update message");
-                }
-            } else {
-                throw new ServiceException("Message not found");
+    // DELETE (one statement that returns the deleted row)
+    public Optional<Message> deleteMessageById(int id) {
+        LOGGER.infoSampled("Deleting message with ID: {}", id);
+        try {
+            Optional<Message> deleted = messageDao.deleteMessageReturning(id);
+            deleted.ifPresent(message -> LOGGER.infoSampled("Deleted message: {}", message));
+            if (searchIndex != null) {
+                deleted.ifPresent(message -> searchIndex.remove(message.getMessage_id(), message.getMessage_text()));
             }
+            messageCache.invalidate(id);
+            deleted.ifPresent(this::changed);
+            // again after the bump, for a reader that loaded the old row in between (see cacheLoaded)
+            messageCache.invalidate(id);
+            return deleted;
         } catch (DaoException e) {
+            // the delete may have been committed before the error
+            mayHaveChanged(List.of(id));
             throw new ServiceException(DB_ACCESS_ERROR_MSG, e);
         }
     }
 
-    public void deleteMessage(Message message) {
-        LOGGER.info("Deleting message: {}", message);
+    // DELETE MANY (one statement for all of them)
+    /**
+     * @return one result per id, in the same order: the deleted message, or 404 if there was none
+     */
+    public List<MessageResult> deleteMessagesByIds(List<Integer> ids) {
+        LOGGER.infoSampled("Deleting {} messages by ID", ids.size());
         try {
-            boolean hasDeletedMessage = messageDao.deleteMessage(message.getMessage_id());
-            if (hasDeletedMessage) {
-                LOGGER.info("Deleted message: {}", message);
-            } else {
-                throw new ServiceException("Message not found");
+            Map<Integer, Message> deleted = new HashMap<>();
+            for (Message message : messageDao.deleteMessagesReturning(new ArrayList<>(new LinkedHashSet<>(ids)))) {
+                deleted.put(message.getMessage_id(), message);
+                if (searchIndex != null) {
+                    searchIndex.remove(message.getMessage_id(), message.getMessage_text());
+                }
+                messageCache.invalidate(message.getMessage_id());
+                changed(message);
+                // again after the bump, for a reader that loaded the old row in between (see cacheLoaded)
+                messageCache.invalidate(message.getMessage_id());
+            }
+            List<MessageResult> results = new ArrayList<>(ids.size());
+            for (Integer id : ids) {
+                Message message = deleted.get(id);
+                if (message == null) {
+                    messageCache.invalidate(id);
+                }
+                results.add(message != null ? MessageResult.ok(message) : MessageResult.failed(404, MESSAGE_NOT_FOUND_MSG));
             }
+            return results;
         } catch (DaoException e) {
+            // the delete may have been committed before the error
+            mayHaveChanged(ids);
             throw new ServiceException(DB_ACCESS_ERROR_MSG, e);
         }
     }
 
+    public void deleteMessage(Message message) {
+        if (!deleteMessageById(message.getMessage_id()).isPresent()) {
+            throw new ServiceException(MESSAGE_NOT_FOUND_MSG);
+        }
+    }
+
     // VALIDATE MESSAGE
     private void validateMessage(Message message) {
-        LOGGER.info("Validating message: {}", message);
+        LOGGER.debug("Validating message: {}", message);
         if (message.getMessage_text() == null || message.getMessage_text().trim().isEmpty()) {
             throw new ServiceException("Message text cannot be null or empty");
         }
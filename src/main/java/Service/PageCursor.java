@@ -0,0 +1,76 @@
+package Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Position in a keyset-paginated listing. Clients only ever see the encoded
+ * form, so the layout can change without breaking them beyond invalidating
+ * cursors that are in flight.
+ *
+ * Listings ordered by message_id only need the id of the last row; timelines
+ * ordered by time_posted_epoch also carry its time, since ids alone do not
+ * say where a run of equal timestamps ends.
+ */
+public final class PageCursor {
+
+    private static final String ID_VERSION = "1";
+    private static final String TIME_VERSION = "2";
+
+    private final int lastMessageId;
+    private final Long lastTimePosted;
+
+    public PageCursor(int lastMessageId) {
+        this.lastMessageId = lastMessageId;
+        this.lastTimePosted = null;
+    }
+
+    public PageCursor(long lastTimePosted, int lastMessageId) {
+        this.lastMessageId = lastMessageId;
+        this.lastTimePosted = lastTimePosted;
+    }
+
+    /**
+     * @return the message_id of the last row on the previous page; the next page starts after it
+     */
+    public int getLastMessageId() {
+        return lastMessageId;
+    }
+
+    /**
+     * @return the time_posted_epoch of the last row on the previous page, or null for id-ordered listings
+     */
+    public Long getLastTimePosted() {
+        return lastTimePosted;
+    }
+
+    public boolean hasTime() {
+        return lastTimePosted != null;
+    }
+
+    public String encode() {
+        String raw = hasTime()
+                ? TIME_VERSION + ":" + lastTimePosted + ":" + lastMessageId
+                : ID_VERSION + ":" + lastMessageId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * @throws IllegalArgumentException if the cursor was not produced by encode()
+     */
+    public static PageCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII);
+            String[] parts = raw.split(":");
+            if (parts.length == 2 && ID_VERSION.equals(parts[0])) {
+                return new PageCursor(Integer.parseInt(parts[1]));
+            }
+            if (parts.length == 3 && TIME_VERSION.equals(parts[0])) {
+                return new PageCursor(Long.parseLong(parts[1]), Integer.parseInt(parts[2]));
+            }
+            throw new IllegalArgumentException("Unrecognized cursor");
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.security.spec.KeySpec;
+import java.util.Base64;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+import Util.LatencyHistogram;
+import Util.Metrics;
+
+/**
+ * Salted PBKDF2-HMAC-SHA256 password hashes, computed on a small pool of
+ * threads of their own.
+ *
+ * Hashing is deliberately slow, so it is kept off the request and database
+ * threads: hash and verify return futures completed on one of this hasher's
+ * threads, and when its bounded queue is full they fail right away with
+ * RejectedExecutionException. A burst of logins then queues here, or is turned
+ * away, without holding up message reads.
+ *
+ * Hashes are stored as "pbkdf2_sha256$iterations$salt$hash" (base64). Any
+ * other stored value is a password saved in plain text before hashing was
+ * introduced; it is still accepted, and needsRehash reports it, together with
+ * hashes made with fewer iterations than currently configured, so callers can
+ * replace it after a successful login.
+ */
+public class PasswordHasher implements AutoCloseable {
+
+    private static final String PREFIX = "pbkdf2_sha256$";
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 256;
+
+    private static final int DEFAULT_ITERATIONS = Integer.getInteger("auth.hash.iterations", 310_000);
+    // half the cores, so a login storm keeps every hash thread busy and still leaves the rest for message reads
+    private static final int DEFAULT_THREADS = Integer.getInteger("auth.hash.threads",
+            Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+    private static final int DEFAULT_QUEUE_CAPACITY = Integer.getInteger("auth.hash.queueCapacity", 64);
+
+    private final int iterations;
+    private final ThreadPoolExecutor executor;
+    private final SecureRandom random = new SecureRandom();
+    private final LongAdder rejected = new LongAdder();
+    private final LatencyHistogram hashTimer;
+    private final LatencyHistogram verifyTimer;
+
+    /**
+     * @param iterations the PBKDF2 cost for new hashes
+     * @param threads how many hashes may be computed at once
+     * @param queueCapacity how many may wait before further requests are rejected
+     */
+    public PasswordHasher(int iterations, int threads, int queueCapacity) {
+        this(iterations, threads, queueCapacity, new Metrics());
+    }
+
+    private PasswordHasher(int iterations, int threads, int queueCapacity, Metrics metrics) {
+        if (iterations < 1 || threads < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException("Invalid password hasher settings");
+        }
+        AtomicInteger threadCount = new AtomicInteger();
+        this.iterations = iterations;
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "password-hasher-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.hashTimer = metrics.histogram("password_hash_seconds", "Time spent computing password hashes", "operation", "hash");
+        this.verifyTimer = metrics.histogram("password_hash_seconds", "Time spent computing password hashes", "operation", "verify");
+    }
+
+    /**
+     * @return the hasher used by services that are not given their own, configured by
+     *         auth.hash.iterations, auth.hash.threads (half the available processors by
+     *         default, at least one) and auth.hash.queueCapacity
+     */
+    public static PasswordHasher getDefault() {
+        return DefaultHolder.HASHER;
+    }
+
+    // initialized by the class loader the first time getDefault() is called
+    private static final class DefaultHolder {
+
+        private static final PasswordHasher HASHER = createDefault();
+
+        private static PasswordHasher createDefault() {
+            Metrics metrics = Metrics.getDefault();
+            PasswordHasher hasher = new PasswordHasher(DEFAULT_ITERATIONS, DEFAULT_THREADS, DEFAULT_QUEUE_CAPACITY, metrics);
+            metrics.gauge("password_hash_active_threads", "Threads currently hashing", hasher::getActiveCount);
+            metrics.gauge("password_hash_queued_tasks", "Hashes waiting for a thread", hasher::getQueuedCount);
+            metrics.counter("password_hash_rejected_total", "Hashes turned away because the queue was full", hasher::getRejectedCount);
+            return hasher;
+        }
+    }
+
+    /**
+     * @return a future completed with the encoded hash of the password
+     * @throws RejectedExecutionException if the hasher's queue is full
+     */
+    public CompletableFuture<String> hash(String password) {
+        return run(() -> {
+            long start = System.nanoTime();
+            try {
+                byte[] salt = new byte[SALT_BYTES];
+                random.nextBytes(salt);
+                return encode(iterations, salt, pbkdf2(password, salt, iterations));
+            } finally {
+                hashTimer.recordSince(start);
+            }
+        });
+    }
+
+    /**
+     * Checks a password against a stored value. Plain text stored values are
+     * compared directly, without using the hasher's threads.
+     * @return a future completed with whether the password matches
+     * @throws RejectedExecutionException if the hasher's queue is full
+     */
+    public CompletableFuture<Boolean> verify(String password, String stored) {
+        if (password == null || stored == null) {
+            return CompletableFuture.completedFuture(false);
+        }
+        if (!isHashed(stored)) {
+            return CompletableFuture.completedFuture(MessageDigest.isEqual(
+                    password.getBytes(StandardCharsets.UTF_8), stored.getBytes(StandardCharsets.UTF_8)));
+        }
+        String[] parts = stored.split("\\$");
+        if (parts.length != 4) {
+            return CompletableFuture.completedFuture(false);
+        }
+        return run(() -> {
+            long start = System.nanoTime();
+            try {
+                byte[] salt = Base64.getDecoder().decode(parts[2]);
+                byte[] expected = Base64.getDecoder().decode(parts[3]);
+                return MessageDigest.isEqual(expected, pbkdf2(password, salt, Integer.parseInt(parts[1])));
+            } catch (IllegalArgumentException e) {
+                // a damaged stored hash never matches
+                return false;
+            } finally {
+                verifyTimer.recordSince(start);
+            }
+        });
+    }
+
+    /**
+     * @return true if the stored value is plain text or was hashed with fewer
+     *         iterations than this hasher uses
+     */
+    public boolean needsRehash(String stored) {
+        if (!isHashed(stored)) {
+            return true;
+        }
+        int end = stored.indexOf('$', PREFIX.length());
+        try {
+            return end < 0 || Integer.parseInt(stored.substring(PREFIX.length(), end)) < iterations;
+        } catch (NumberFormatException e) {
+            return true;
+        }
+    }
+
+    public static boolean isHashed(String stored) {
+        return stored != null && stored.startsWith(PREFIX);
+    }
+
+    private <T> CompletableFuture<T> run(Supplier<T> task) {
+        try {
+            return CompletableFuture.supplyAsync(task, executor);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw e;
+        }
+    }
+
+    private static byte[] pbkdf2(String password, byte[] salt, int iterations) {
+        KeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, HASH_BITS);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(ALGORITHM + " is not available", e);
+        }
+    }
+
+    private static String encode(int iterations, byte[] salt, byte[] hash) {
+        Base64.Encoder encoder = Base64.getEncoder().withoutPadding();
+        return PREFIX + iterations + "$" + encoder.encodeToString(salt) + "$" + encoder.encodeToString(hash);
+    }
+
+    /**
+     * Stops taking work and waits briefly for hashes in progress.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    public int getQueuedCount() {
+        return executor.getQueue().size();
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+}
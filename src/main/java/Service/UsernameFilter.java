@@ -0,0 +1,72 @@
+package Service;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import Util.BloomFilter;
+
+/**
+ * Answers "could this username already be registered?" from memory.
+ *
+ * A no is definite and lets registration skip the COUNT(*) lookup; a maybe
+ * still has to be confirmed against the database. The unique constraint on
+ * account.username stays the final authority, so an account inserted by
+ * another instance that this filter has not seen only costs a failed insert.
+ */
+public class UsernameFilter {
+
+    private final BloomFilter bloomFilter;
+    private final LongAdder checks = new LongAdder();
+    private final LongAdder definiteMisses = new LongAdder();
+    private final LongAdder falsePositives = new LongAdder();
+
+    public UsernameFilter(long expectedUsernames, double falsePositiveProbability) {
+        this.bloomFilter = new BloomFilter(expectedUsernames, falsePositiveProbability);
+    }
+
+    public void add(String username) {
+        bloomFilter.put(username);
+    }
+
+    /**
+     * @return false only if the username has definitely never been added
+     */
+    public boolean mightExist(String username) {
+        checks.increment();
+        if (bloomFilter.mightContain(username)) {
+            return true;
+        }
+        definiteMisses.increment();
+        return false;
+    }
+
+    /**
+     * Called when mightExist said maybe and the database said no.
+     */
+    public void recordFalsePositive() {
+        falsePositives.increment();
+    }
+
+    public long getCheckCount() {
+        return checks.sum();
+    }
+
+    public long getDefiniteMissCount() {
+        return definiteMisses.sum();
+    }
+
+    public long getFalsePositiveCount() {
+        return falsePositives.sum();
+    }
+
+    /**
+     * @return the share of checks for unregistered usernames that still went to the database
+     */
+    public double getObservedFalsePositiveRate() {
+        long negatives = definiteMisses.sum() + falsePositives.sum();
+        return negatives == 0 ? 0 : (double) falsePositives.sum() / negatives;
+    }
+
+    public double getExpectedFalsePositiveRate() {
+        return bloomFilter.expectedFalsePositiveProbability();
+    }
+}
@@ -0,0 +1,182 @@
+package Util;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.helpers.FormattingTuple;
+import org.slf4j.helpers.MessageFormatter;
+
+/**
+ * Moves log formatting and output off the calling thread.
+ *
+ * Callers put events into a bounded queue without ever waiting; one daemon
+ * thread formats them (including any toString() on the arguments) and hands the
+ * result to the underlying slf4j logger, which does the actual I/O. When the
+ * queue is full the event is dropped and counted instead, so a slow console or
+ * disk can cost us log lines but never request latency.
+ */
+public class AsyncLogSink implements AutoCloseable {
+
+    private static final int DEFAULT_CAPACITY = Integer.getInteger("log.async.capacity", 8192);
+
+    private final BlockingQueue<Event> queue;
+    private final Thread writer;
+    private volatile boolean closed;
+
+    private final LongAdder written = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    /**
+     * Creates a sink whose writer is not yet running; events queue up until start() is called.
+     */
+    public AsyncLogSink(int capacity) {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.writer = new Thread(this::run, "async-log-writer");
+        this.writer.setDaemon(true);
+    }
+
+    /**
+     * @return the sink shared by every AsyncLogger, started on first use and
+     *         flushed when the JVM shuts down
+     */
+    public static AsyncLogSink getDefault() {
+        return DefaultHolder.SINK;
+    }
+
+    // initialized by the class loader the first time getDefault() is called
+    private static final class DefaultHolder {
+
+        private static final AsyncLogSink SINK = createDefault();
+
+        private static AsyncLogSink createDefault() {
+            AsyncLogSink sink = new AsyncLogSink(DEFAULT_CAPACITY);
+            sink.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(sink::close, "async-log-flush"));
+            Metrics.getDefault().counter("log_events_dropped_total", "Log events dropped because the log queue was full", sink::getDroppedCount);
+            Metrics.getDefault().counter("log_events_written_total", "Log events written by the async log writer", sink::getWrittenCount);
+            Metrics.getDefault().gauge("log_events_queued", "Log events waiting to be written", sink::getQueuedCount);
+            return sink;
+        }
+    }
+
+    public void start() {
+        writer.start();
+    }
+
+    /**
+     * Queues an event without blocking.
+     * @return false if the queue was full and the event was dropped
+     */
+    boolean offer(Logger target, Level level, String threadName, String format, Object[] args) {
+        if (closed || !queue.offer(new Event(target, level, threadName, format, args))) {
+            dropped.increment();
+            return false;
+        }
+        return true;
+    }
+
+    private void run() {
+        while (!closed || !queue.isEmpty()) {
+            try {
+                Event event = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (event != null) {
+                    write(event);
+                }
+            } catch (InterruptedException e) {
+                // closing; drain what is left
+            } catch (RuntimeException e) {
+                // a failing toString() must not stop the writer
+                dropped.increment();
+            }
+        }
+    }
+
+    private void write(Event event) {
+        FormattingTuple formatted = MessageFormatter.arrayFormat(event.format, event.args);
+        String message = "[" + event.threadName + "] " + formatted.getMessage();
+        Throwable throwable = formatted.getThrowable();
+        switch (event.level) {
+            case ERROR:
+                event.target.error(message, throwable);
+                break;
+            case WARN:
+                event.target.warn(message, throwable);
+                break;
+            case INFO:
+                event.target.info(message, throwable);
+                break;
+            default:
+                event.target.debug(message, throwable);
+                break;
+        }
+        written.increment();
+    }
+
+    /**
+     * Waits until every event queued so far has been written, or the timeout passes.
+     * @return true if the queue was emptied
+     */
+    public boolean flush(long timeout, TimeUnit unit) throws InterruptedException {
+        long target = written.sum() + dropped.sum() + queue.size();
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (written.sum() + dropped.sum() < target || !queue.isEmpty()) {
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+            Thread.sleep(1);
+        }
+        return true;
+    }
+
+    /**
+     * Stops taking events and writes out the ones already queued.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        if (writer.isAlive()) {
+            writer.interrupt();
+            try {
+                writer.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public long getWrittenCount() {
+        return written.sum();
+    }
+
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    public int getQueuedCount() {
+        return queue.size();
+    }
+
+    enum Level {
+        ERROR, WARN, INFO, DEBUG
+    }
+
+    private static final class Event {
+
+        private final Logger target;
+        private final Level level;
+        private final String threadName;
+        private final String format;
+        private final Object[] args;
+
+        private Event(Logger target, Level level, String threadName, String format, Object[] args) {
+            this.target = target;
+            this.level = level;
+            this.threadName = threadName;
+            this.format = format;
+            this.args = args;
+        }
+    }
+}
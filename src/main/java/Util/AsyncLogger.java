@@ -0,0 +1,82 @@
+package Util;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import Util.AsyncLogSink.Level;
+
+/**
+ * An slf4j logger for the request path whose output is written by an
+ * AsyncLogSink instead of the calling thread.
+ *
+ * Levels are still the underlying slf4j logger's, so they are configured per
+ * class in simplelogger.properties; a disabled level costs one boolean check
+ * and nothing is queued. Arguments are formatted on the writer thread, so they
+ * should not be changed after they are logged.
+ *
+ * Lines logged for every request can use infoSampled, which writes only about
+ * one call in log.sampleRate (100 by default).
+ */
+public class AsyncLogger {
+
+    private static final int SAMPLE_RATE = Math.max(1, Integer.getInteger("log.sampleRate", 100));
+
+    private final Logger delegate;
+    private final AsyncLogSink sink;
+
+    public AsyncLogger(Logger delegate, AsyncLogSink sink) {
+        this.delegate = delegate;
+        this.sink = sink;
+    }
+
+    public static AsyncLogger getLogger(Class<?> type) {
+        return new AsyncLogger(LoggerFactory.getLogger(type), AsyncLogSink.getDefault());
+    }
+
+    public boolean isDebugEnabled() {
+        return delegate.isDebugEnabled();
+    }
+
+    public boolean isInfoEnabled() {
+        return delegate.isInfoEnabled();
+    }
+
+    public void debug(String format, Object... args) {
+        if (delegate.isDebugEnabled()) {
+            enqueue(Level.DEBUG, format, args);
+        }
+    }
+
+    public void info(String format, Object... args) {
+        if (delegate.isInfoEnabled()) {
+            enqueue(Level.INFO, format, args);
+        }
+    }
+
+    /**
+     * Logs at INFO for roughly one call in log.sampleRate and drops the rest.
+     */
+    public void infoSampled(String format, Object... args) {
+        if (delegate.isInfoEnabled() && (SAMPLE_RATE == 1 || ThreadLocalRandom.current().nextInt(SAMPLE_RATE) == 0)) {
+            enqueue(Level.INFO, format, args);
+        }
+    }
+
+    public void warn(String format, Object... args) {
+        if (delegate.isWarnEnabled()) {
+            enqueue(Level.WARN, format, args);
+        }
+    }
+
+    public void error(String format, Object... args) {
+        if (delegate.isErrorEnabled()) {
+            enqueue(Level.ERROR, format, args);
+        }
+    }
+
+    private void enqueue(Level level, String format, Object[] args) {
+        sink.offer(delegate, level, Thread.currentThread().getName(), format, args);
+    }
+}
@@ -0,0 +1,225 @@
+package Util;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A concurrent in-process cache bounded by size and, optionally, by time since write.
+ *
+ * When the cache is full, a new key is only admitted if it has been asked for
+ * more often than the entry that would make room for it (TinyLFU admission,
+ * using a FrequencySketch). That keeps a burst of one-off lookups from flushing
+ * the entries that are read over and over. Eviction candidates are taken in
+ * insertion order; a candidate that survives goes to the back of the line.
+ *
+ * The size bound is approximate under concurrent inserts and is restored by the
+ * next insert.
+ */
+public class BoundedCache<K, V> {
+
+    private final int maximumSize;
+    private final long ttlNanos;
+    private final ConcurrentHashMap<K, Node<K, V>> map = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Node<K, V>> insertionOrder = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger deadNodes = new AtomicInteger();
+    private final FrequencySketch sketch;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+
+    /**
+     * @param maximumSize the most entries the cache holds
+     * @param ttlMillis how long an entry stays valid after it was written, or 0 to keep entries until evicted
+     */
+    public BoundedCache(int maximumSize, long ttlMillis) {
+        if (maximumSize < 1) {
+            throw new IllegalArgumentException("maximumSize must be positive");
+        }
+        this.maximumSize = maximumSize;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.sketch = new FrequencySketch(maximumSize);
+    }
+
+    /**
+     * @return the cached value, or null if there is none or it has expired
+     */
+    public V get(K key) {
+        sketch.increment(key);
+        Node<K, V> node = map.get(key);
+        if (node == null) {
+            misses.increment();
+            return null;
+        }
+        if (isExpired(node, System.nanoTime())) {
+            if (map.remove(key, node)) {
+                kill(node);
+                expirations.increment();
+            }
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return node.value;
+    }
+
+    /**
+     * Stores a value that is known to be current, replacing whatever was cached for the key.
+     */
+    public void put(K key, V value) {
+        Node<K, V> node = new Node<>(key, value, System.nanoTime());
+        Node<K, V> previous = map.get(key);
+        if (previous == null && !makeRoomFor(key)) {
+            return;
+        }
+        previous = map.put(key, node);
+        if (previous != null) {
+            kill(previous);
+        }
+        insertionOrder.add(node);
+    }
+
+    /**
+     * Stores a value that was just loaded, unless another value was cached for the key
+     * in the meantime. Use this when filling the cache on a miss, so a slow read cannot
+     * overwrite a newer value written by put().
+     */
+    public void putIfAbsent(K key, V value) {
+        if (map.containsKey(key) || !makeRoomFor(key)) {
+            return;
+        }
+        Node<K, V> node = new Node<>(key, value, System.nanoTime());
+        if (map.putIfAbsent(key, node) == null) {
+            insertionOrder.add(node);
+        }
+    }
+
+    public void invalidate(K key) {
+        Node<K, V> node = map.remove(key);
+        if (node != null) {
+            kill(node);
+        }
+    }
+
+    public void invalidateAll() {
+        for (K key : map.keySet()) {
+            invalidate(key);
+        }
+    }
+
+    /**
+     * Evicts until there is room for one more entry.
+     * @return false if the candidate lost to every entry it was compared with
+     */
+    private boolean makeRoomFor(K candidate) {
+        long now = System.nanoTime();
+        int candidateFrequency = sketch.frequency(candidate);
+        int attempts = 0;
+        while (map.size() >= maximumSize) {
+            Node<K, V> victim = insertionOrder.poll();
+            if (victim == null) {
+                return true;
+            }
+            if (victim.dead) {
+                deadNodes.decrementAndGet();
+                continue;
+            }
+            if (isExpired(victim, now)) {
+                if (map.remove(victim.key, victim)) {
+                    victim.dead = true;
+                    expirations.increment();
+                }
+                continue;
+            }
+            if (candidateFrequency > sketch.frequency(victim.key)) {
+                if (map.remove(victim.key, victim)) {
+                    victim.dead = true;
+                    evictions.increment();
+                }
+                continue;
+            }
+            // the victim is worth more than the candidate; give it another turn
+            insertionOrder.add(victim);
+            if (++attempts >= 3) {
+                rejections.increment();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isExpired(Node<K, V> node, long now) {
+        return ttlNanos > 0 && now - node.writtenNanos > ttlNanos;
+    }
+
+    /**
+     * Marks a node that has left the map. Its slot in insertionOrder is skipped when
+     * reached, and dead slots are swept out if too many pile up between evictions.
+     */
+    private void kill(Node<K, V> node) {
+        node.dead = true;
+        if (deadNodes.incrementAndGet() > maximumSize) {
+            deadNodes.set(0);
+            insertionOrder.removeIf(n -> n.dead);
+        }
+    }
+
+    public int size() {
+        return map.size();
+    }
+
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * @return hits over lookups, or 0 before the first lookup
+     */
+    public double getHitRatio() {
+        long hitCount = hits.sum();
+        long lookups = hitCount + misses.sum();
+        return lookups == 0 ? 0 : (double) hitCount / lookups;
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    public long getExpirationCount() {
+        return expirations.sum();
+    }
+
+    /**
+     * @return how many new entries were turned away because they were less popular than what was cached
+     */
+    public long getRejectionCount() {
+        return rejections.sum();
+    }
+
+    private static final class Node<K, V> {
+
+        private final K key;
+        private final V value;
+        private final long writtenNanos;
+        private volatile boolean dead;
+
+        private Node(K key, V value, long writtenNanos) {
+            this.key = key;
+            this.value = value;
+            this.writtenNanos = writtenNanos;
+        }
+    }
+}
@@ -0,0 +1,445 @@
+package Util;
+
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTransientConnectionException;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+import javax.sql.DataSource;
+
+import org.slf4j.LoggerFactory;
+
+/**
+ * A bounded pool of physical connections opened from another DataSource.
+ *
+ * At most maxSize connections are ever open. Borrowers wait up to maxWaitMillis
+ * for one to be returned. The pool opens minIdle connections up front and tops
+ * the idle set back up to minIdle on every housekeeping pass; idle connections
+ * above minIdle are closed after idleTimeoutMillis. Connections that have been idle for a while are validated
+ * before being handed out, and connections held longer than
+ * leakThresholdMillis are reported as probable leaks. Each connection keeps
+ * up to statementCacheSize prepared statements around for reuse.
+ *
+ * Closing a connection obtained from this pool returns it to the pool.
+ */
+public class ConnectionPool implements DataSource, AutoCloseable {
+
+    private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(ConnectionPool.class);
+
+    /**
+     * Connections used more recently than this are handed out without a validation round trip.
+     */
+    private static final long VALIDATION_BYPASS_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+    private static final int VALIDATION_TIMEOUT_SECONDS = 1;
+
+    private final DataSource source;
+    private final int maxSize;
+    private final int minIdle;
+    private final long maxWaitMillis;
+    private final long idleTimeoutNanos;
+    private final long leakThresholdNanos;
+    private final int statementCacheSize;
+
+    private final Semaphore permits;
+    private final LinkedBlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+    private final Set<PooledConnection> borrowed = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService housekeeper;
+    private volatile boolean closed;
+
+    private final AtomicInteger open = new AtomicInteger();
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final LongAdder borrows = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder created = new LongAdder();
+    private final LongAdder destroyed = new LongAdder();
+    private final LongAdder validationFailures = new LongAdder();
+    private final LongAdder leaks = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final LongAdder statementCacheHits = new LongAdder();
+    private final LongAdder statementCacheMisses = new LongAdder();
+    private final LongAdder statementCacheEvictions = new LongAdder();
+
+    public ConnectionPool(DataSource source, int maxSize, int minIdle, long maxWaitMillis, long idleTimeoutMillis,
+            long leakThresholdMillis, int statementCacheSize) {
+        if (maxSize < 1 || minIdle < 0 || minIdle > maxSize) {
+            throw new IllegalArgumentException("Invalid pool bounds: maxSize=" + maxSize + ", minIdle=" + minIdle);
+        }
+        this.source = source;
+        this.maxSize = maxSize;
+        this.minIdle = minIdle;
+        this.maxWaitMillis = maxWaitMillis;
+        this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeoutMillis);
+        this.leakThresholdNanos = TimeUnit.MILLISECONDS.toNanos(leakThresholdMillis);
+        this.statementCacheSize = statementCacheSize;
+        this.permits = new Semaphore(maxSize, true);
+
+        long period = Math.max(1000, Math.min(idleTimeoutMillis, leakThresholdMillis > 0 ? leakThresholdMillis : Long.MAX_VALUE) / 2);
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "connection-pool-housekeeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.housekeeper.execute(this::fillIdle);
+        this.housekeeper.scheduleWithFixedDelay(this::houseKeep, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+        long start = System.nanoTime();
+        boolean acquired;
+        waiting.incrementAndGet();
+        try {
+            acquired = permits.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a connection", e);
+        } finally {
+            waiting.decrementAndGet();
+        }
+        recordWait(System.nanoTime() - start);
+        if (!acquired) {
+            timeouts.increment();
+            throw new SQLTransientConnectionException("Timed out after " + maxWaitMillis + "ms waiting for a connection - " + this);
+        }
+
+        try {
+            PooledConnection pooled = takeValidIdle();
+            if (pooled == null) {
+                pooled = openConnection();
+            }
+            pooled.markBorrowed();
+            borrowed.add(pooled);
+            borrows.increment();
+            return pooled.newHandle();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("Pooled connections all share the configured credentials");
+    }
+
+    /**
+     * Called by a connection handle when the borrower closes it.
+     */
+    void release(PooledConnection pooled) {
+        borrowed.remove(pooled);
+        try {
+            pooled.reset();
+            if (closed) {
+                destroy(pooled);
+            } else {
+                pooled.markReturned();
+                idle.offerFirst(pooled);
+            }
+        } catch (SQLException e) {
+            LOGGER.warn("Discarding connection that could not be reset", e);
+            destroy(pooled);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private PooledConnection takeValidIdle() {
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            if (System.nanoTime() - pooled.getLastUsedNanos() < VALIDATION_BYPASS_NANOS || isValid(pooled)) {
+                return pooled;
+            }
+            validationFailures.increment();
+            destroy(pooled);
+        }
+        return null;
+    }
+
+    private boolean isValid(PooledConnection pooled) {
+        try {
+            return pooled.getPhysical().isValid(VALIDATION_TIMEOUT_SECONDS);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private PooledConnection openConnection() throws SQLException {
+        // counted before connecting, so fillIdle never sees room that a borrower is already using
+        open.incrementAndGet();
+        try {
+            return connect();
+        } catch (SQLException | RuntimeException e) {
+            open.decrementAndGet();
+            throw e;
+        }
+    }
+
+    private PooledConnection connect() throws SQLException {
+        Connection physical = source.getConnection();
+        if (physical == null) {
+            throw new SQLException("Underlying data source returned no connection");
+        }
+        created.increment();
+        return new PooledConnection(this, physical, statementCacheSize);
+    }
+
+    /**
+     * Opens connections until minIdle are idle. Each one is opened under a borrower's
+     * permit and only while fewer than maxSize are open, so filling never pushes the
+     * pool past maxSize or makes a borrower wait.
+     */
+    private void fillIdle() {
+        while (!closed && idle.size() < minIdle && permits.tryAcquire()) {
+            try {
+                int count = open.get();
+                if (count >= maxSize) {
+                    return;
+                }
+                if (!open.compareAndSet(count, count + 1)) {
+                    continue;
+                }
+                PooledConnection pooled;
+                try {
+                    pooled = connect();
+                } catch (SQLException | RuntimeException e) {
+                    open.decrementAndGet();
+                    LOGGER.warn("Could not open a connection to keep idle", e);
+                    return;
+                }
+                idle.offerLast(pooled);
+                if (closed && idle.remove(pooled)) {
+                    destroy(pooled);
+                }
+            } finally {
+                permits.release();
+            }
+        }
+    }
+
+    private void destroy(PooledConnection pooled) {
+        open.decrementAndGet();
+        destroyed.increment();
+        try {
+            pooled.getPhysical().close();
+        } catch (SQLException e) {
+            LOGGER.debug("Error while closing a pooled connection", e);
+        }
+    }
+
+    void recordStatementCacheHit() {
+        statementCacheHits.increment();
+    }
+
+    void recordStatementCacheMiss() {
+        statementCacheMisses.increment();
+    }
+
+    void recordStatementCacheEviction() {
+        statementCacheEvictions.increment();
+    }
+
+    private void recordWait(long nanos) {
+        waitNanos.add(nanos);
+        long max;
+        while (nanos > (max = maxWaitNanos.get()) && !maxWaitNanos.compareAndSet(max, nanos)) {
+            // retry until the larger value sticks
+        }
+    }
+
+    /**
+     * Evicts connections that have sat idle past the idle timeout, tops the idle
+     * connections back up to minIdle and reports connections that have been
+     * borrowed for longer than the leak threshold.
+     */
+    private void houseKeep() {
+        long now = System.nanoTime();
+        Iterator<PooledConnection> oldestFirst = idle.descendingIterator();
+        while (oldestFirst.hasNext() && idle.size() > minIdle) {
+            PooledConnection pooled = oldestFirst.next();
+            if (now - pooled.getLastUsedNanos() > idleTimeoutNanos && idle.remove(pooled)) {
+                destroy(pooled);
+            }
+        }
+        fillIdle();
+
+        if (leakThresholdNanos > 0) {
+            for (PooledConnection pooled : borrowed) {
+                if (!pooled.isLeakReported() && now - pooled.getBorrowedNanos() > leakThresholdNanos) {
+                    pooled.setLeakReported(true);
+                    leaks.increment();
+                    LOGGER.warn("Connection borrowed by thread '{}' has not been returned after {}ms, possible leak",
+                            pooled.getBorrower(), TimeUnit.NANOSECONDS.toMillis(now - pooled.getBorrowedNanos()));
+                }
+            }
+        }
+    }
+
+    /**
+     * Publishes the pool's size, wait and statement cache statistics,
+     * labelled with the given pool name. The values are read at scrape time.
+     */
+    public void registerMetrics(Metrics metrics, String name) {
+        metrics.gauge("db_pool_max_connections", "Most connections the pool will open", this::getMaxSize, "pool", name);
+        metrics.gauge("db_pool_active_connections", "Connections currently borrowed", this::getActiveConnections, "pool", name);
+        metrics.gauge("db_pool_idle_connections", "Open connections waiting to be borrowed", this::getIdleConnections, "pool", name);
+        metrics.gauge("db_pool_utilization", "Fraction of the pool's connections currently borrowed", this::getUtilization, "pool", name);
+        metrics.gauge("db_pool_pending_threads", "Threads waiting for a connection", this::getThreadsAwaitingConnection, "pool", name);
+        metrics.counter("db_pool_borrows_total", "Connections handed out", this::getBorrowCount, "pool", name);
+        metrics.counter("db_pool_timeouts_total", "Borrows that gave up waiting for a connection", this::getTimeoutCount, "pool", name);
+        metrics.counter("db_pool_wait_seconds_total", "Time spent waiting for connections", () -> getTotalWaitNanos() / 1e9, "pool", name);
+        metrics.counter("db_pool_leaks_total", "Connections reported as possibly leaked", this::getLeakCount, "pool", name);
+        metrics.counter("db_statement_cache_hits_total", "Prepared statements served from the statement cache", this::getStatementCacheHits, "pool", name);
+        metrics.counter("db_statement_cache_misses_total", "Prepared statements that had to be prepared", this::getStatementCacheMisses, "pool", name);
+    }
+
+    /**
+     * Closes every idle connection and stops handing out new ones. Borrowed
+     * connections are closed as they are returned.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        housekeeper.shutdownNow();
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            destroy(pooled);
+        }
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public int getActiveConnections() {
+        return borrowed.size();
+    }
+
+    public int getIdleConnections() {
+        return idle.size();
+    }
+
+    public int getTotalConnections() {
+        return open.get();
+    }
+
+    public int getThreadsAwaitingConnection() {
+        return waiting.get();
+    }
+
+    /**
+     * @return the fraction of the pool's capacity that is currently borrowed, between 0 and 1
+     */
+    public double getUtilization() {
+        return (double) getActiveConnections() / maxSize;
+    }
+
+    public long getBorrowCount() {
+        return borrows.sum();
+    }
+
+    public long getTimeoutCount() {
+        return timeouts.sum();
+    }
+
+    public long getCreatedCount() {
+        return created.sum();
+    }
+
+    public long getDestroyedCount() {
+        return destroyed.sum();
+    }
+
+    public long getValidationFailureCount() {
+        return validationFailures.sum();
+    }
+
+    public long getLeakCount() {
+        return leaks.sum();
+    }
+
+    public long getTotalWaitNanos() {
+        return waitNanos.sum();
+    }
+
+    public long getMaxWaitNanos() {
+        return maxWaitNanos.get();
+    }
+
+    public long getStatementCacheHits() {
+        return statementCacheHits.sum();
+    }
+
+    public long getStatementCacheMisses() {
+        return statementCacheMisses.sum();
+    }
+
+    public long getStatementCacheEvictions() {
+        return statementCacheEvictions.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "ConnectionPool{" +
+                "active=" + getActiveConnections() +
+                ", idle=" + getIdleConnections() +
+                ", max=" + maxSize +
+                ", waiting=" + getThreadsAwaitingConnection() +
+                ", timeouts=" + getTimeoutCount() +
+                '}';
+    }
+
+    @Override
+    public PrintWriter getLogWriter() throws SQLException {
+        return source.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) throws SQLException {
+        source.setLogWriter(out);
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) throws SQLException {
+        source.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() throws SQLException {
+        return source.getLoginTimeout();
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        return source.unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this) || source.isWrapperFor(iface);
+    }
+}
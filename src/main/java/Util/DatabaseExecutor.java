@@ -0,0 +1,200 @@
+package Util;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import io.javalin.util.LoomUtil;
+
+/**
+ * A fixed set of threads for work that holds a database connection, with a
+ * bounded queue in front of them.
+ *
+ * There are as many threads as the connection pool has connections, so the
+ * threads never wait on the pool and at most queueCapacity tasks wait for a
+ * thread. When the queue is full, submit throws RejectedExecutionException
+ * right away, so callers can turn overload into a quick error response instead
+ * of waiting for a connection until the pool times out. As an Executor it can
+ * also run the database steps of a CompletableFuture chain.
+ *
+ * With virtualThreads (JDK 21+), each task runs on a virtual thread of its own
+ * instead, and a semaphore with one permit per thread takes the place of the
+ * fixed threads: at most threads tasks run at once and the rest wait for a
+ * permit. Waiting costs a parked virtual thread rather than a queue slot, but
+ * the same limit of queueCapacity waiting tasks applies, with the same
+ * RejectedExecutionException past it.
+ */
+public class DatabaseExecutor implements Executor, AutoCloseable {
+
+    private static final int DEFAULT_QUEUE_CAPACITY = Integer.getInteger("db.executor.queueCapacity", 200);
+    // the switch SocialMediaController uses for request threads
+    private static final String VIRTUAL_THREADS_PROPERTY = "server.virtualThreads";
+
+    // platform threads, or null when tasks run on virtual threads
+    private final ThreadPoolExecutor executor;
+    // a virtual thread per task, or null when tasks run on platform threads
+    private final ExecutorService virtualExecutor;
+    private final Semaphore running;
+    // tasks accepted on virtual threads that have not finished, running or waiting for a permit
+    private final AtomicInteger pending = new AtomicInteger();
+    private final int threads;
+    private final int queueCapacity;
+    private final LongAdder rejected = new LongAdder();
+
+    public DatabaseExecutor(int threads, int queueCapacity) {
+        this(threads, queueCapacity, false);
+    }
+
+    /**
+     * @param virtualThreads run each task on its own virtual thread, at most threads of
+     *                       them at once; ignored before JDK 21
+     */
+    public DatabaseExecutor(int threads, int queueCapacity, boolean virtualThreads) {
+        if (threads < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException("Invalid database executor sizing");
+        }
+        this.threads = threads;
+        this.queueCapacity = queueCapacity;
+        this.running = new Semaphore(threads);
+        if (virtualThreads && LoomUtil.INSTANCE.getLoomAvailable()) {
+            this.executor = null;
+            this.virtualExecutor = LoomUtil.INSTANCE.getExecutorService("db-executor-");
+            return;
+        }
+        AtomicInteger threadCount = new AtomicInteger();
+        this.virtualExecutor = null;
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "db-executor-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * @return the executor shared by controllers that are not given their own,
+     *         sized by db.executor.threads (the connection pool size by default)
+     *         and db.executor.queueCapacity, on virtual threads when server.virtualThreads is true
+     */
+    public static DatabaseExecutor getDefault() {
+        return DefaultHolder.EXECUTOR;
+    }
+
+    // initialized by the class loader the first time getDefault() is called
+    private static final class DefaultHolder {
+
+        private static final DatabaseExecutor EXECUTOR = createDefault();
+
+        private static DatabaseExecutor createDefault() {
+            // one thread per pooled connection, however the pool was sized
+            int threads = Integer.getInteger("db.executor.threads", ConnectionUtil.getPool().getMaxSize());
+            DatabaseExecutor executor = new DatabaseExecutor(threads, DEFAULT_QUEUE_CAPACITY,
+                    Boolean.getBoolean(VIRTUAL_THREADS_PROPERTY));
+            executor.registerMetrics(Metrics.getDefault(), "main");
+            return executor;
+        }
+    }
+
+    /**
+     * Runs a task on one of the database threads.
+     * @return a future completed when the task has run, or exceptionally with what it threw
+     * @throws RejectedExecutionException if the queue is full or the executor is closed
+     */
+    public CompletableFuture<Void> submit(Runnable task) {
+        return CompletableFuture.runAsync(task, this);
+    }
+
+    /**
+     * @throws RejectedExecutionException if the queue is full or the executor is closed
+     */
+    @Override
+    public void execute(Runnable task) {
+        try {
+            if (virtualExecutor != null) {
+                executeOnVirtualThread(task);
+            } else {
+                executor.execute(task);
+            }
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw e;
+        }
+    }
+
+    private void executeOnVirtualThread(Runnable task) {
+        if (pending.incrementAndGet() > threads + queueCapacity) {
+            pending.decrementAndGet();
+            throw new RejectedExecutionException("Database executor queue is full");
+        }
+        try {
+            virtualExecutor.execute(() -> {
+                running.acquireUninterruptibly();
+                try {
+                    task.run();
+                } finally {
+                    running.release();
+                    pending.decrementAndGet();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            pending.decrementAndGet();
+            throw e;
+        }
+    }
+
+    /**
+     * Publishes the queue length, busy threads and rejections, labelled with the given executor name.
+     */
+    public void registerMetrics(Metrics metrics, String name) {
+        metrics.gauge("db_executor_threads", "Database tasks that may run at once", this::getThreads, "executor", name);
+        metrics.gauge("db_executor_active_threads", "Threads currently running a task", this::getActiveCount, "executor", name);
+        metrics.gauge("db_executor_queued_tasks", "Tasks waiting for a thread", this::getQueuedCount, "executor", name);
+        metrics.counter("db_executor_rejected_total", "Tasks turned away because the queue was full", this::getRejectedCount, "executor", name);
+    }
+
+    /**
+     * Stops taking tasks and waits briefly for the running ones to finish.
+     */
+    @Override
+    public void close() {
+        ExecutorService service = virtualExecutor != null ? virtualExecutor : executor;
+        service.shutdown();
+        try {
+            service.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public boolean isVirtualThreads() {
+        return virtualExecutor != null;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public int getActiveCount() {
+        return virtualExecutor != null ? threads - running.availablePermits() : executor.getActiveCount();
+    }
+
+    public int getQueuedCount() {
+        return virtualExecutor != null ? Math.max(0, pending.get() - getActiveCount()) : executor.getQueue().size();
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+}
@@ -0,0 +1,73 @@
+package Util;
+
+/**
+ * Approximate access counts for an unbounded set of keys in fixed memory: a
+ * count-min sketch with four rows of one-byte counters that saturate at 15.
+ *
+ * Once the number of recorded accesses reaches ten times the cache size every
+ * counter is halved, so keys that were popular a long time ago gradually lose
+ * their standing to keys that are popular now.
+ *
+ * Updates are deliberately not synchronized. A lost increment under contention
+ * only makes an estimate slightly low, which an admission policy can tolerate.
+ */
+class FrequencySketch {
+
+    private static final long[] SEEDS = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L };
+    private static final int MAX_COUNT = 15;
+
+    private final byte[] table;
+    private final int mask;
+    private final int sampleSize;
+    private int additions;
+
+    FrequencySketch(int maximumSize) {
+        // eight counters per row for every cache entry keeps collisions between keys rare
+        int width = Integer.highestOneBit(Math.max(16, maximumSize) * 8 - 1) << 1;
+        this.table = new byte[width * SEEDS.length];
+        this.mask = width - 1;
+        this.sampleSize = 10 * Math.max(16, maximumSize);
+    }
+
+    void increment(Object key) {
+        int hash = spread(key.hashCode());
+        for (int row = 0; row < SEEDS.length; row++) {
+            int index = indexOf(hash, row);
+            if (table[index] < MAX_COUNT) {
+                table[index]++;
+            }
+        }
+        if (++additions >= sampleSize) {
+            age();
+        }
+    }
+
+    int frequency(Object key) {
+        int hash = spread(key.hashCode());
+        int frequency = MAX_COUNT;
+        for (int row = 0; row < SEEDS.length; row++) {
+            frequency = Math.min(frequency, table[indexOf(hash, row)]);
+        }
+        return frequency;
+    }
+
+    private void age() {
+        additions = 0;
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (byte) (table[i] >>> 1);
+        }
+    }
+
+    private int indexOf(int hash, int row) {
+        long h = (hash + SEEDS[row]) * SEEDS[row];
+        h += h >>> 32;
+        return row * (mask + 1) + ((int) h & mask);
+    }
+
+    private static int spread(int x) {
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        return (x >>> 16) ^ x;
+    }
+}
@@ -0,0 +1,70 @@
+package Util;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Request counts by status code and latency histograms for each route, kept in
+ * a Metrics registry.
+ *
+ * Routes are identified by method and path template ("GET /messages/{message_id}"),
+ * never by the concrete path, so the number of series stays fixed. The registry
+ * lookups happen once per route and status; after that recording a request costs
+ * four map reads, a histogram update and a counter increment.
+ */
+public class HttpMetrics {
+
+    private final Metrics metrics;
+    // path template -> method -> route, so a lookup does not have to build a key string
+    private final ConcurrentHashMap<String, ConcurrentHashMap<String, Route>> routes = new ConcurrentHashMap<>();
+
+    public HttpMetrics(Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * @param path the route's path template, or null for requests that matched no route
+     */
+    public void record(String method, String path, int status, long nanos) {
+        String template = path == null || path.isEmpty() ? "unmatched" : path;
+        ConcurrentHashMap<String, Route> byMethod = routes.get(template);
+        if (byMethod == null) {
+            byMethod = routes.computeIfAbsent(template, key -> new ConcurrentHashMap<>());
+        }
+        Route route = byMethod.get(method);
+        if (route == null) {
+            route = byMethod.computeIfAbsent(method, key -> new Route(method, template));
+        }
+        route.latency.record(nanos);
+        route.status(status).increment();
+    }
+
+    private final class Route {
+
+        private final String method;
+        private final String path;
+        private final LatencyHistogram latency;
+        // indexed by status code, so counting a response does not box it
+        private final AtomicReferenceArray<LongAdder> statuses = new AtomicReferenceArray<>(600);
+
+        private Route(String method, String path) {
+            this.method = method;
+            this.path = path;
+            this.latency = metrics.histogram("http_request_duration_seconds", "Time to handle a request, by route",
+                    "method", method, "route", path);
+        }
+
+        private LongAdder status(int status) {
+            int index = status >= 0 && status < statuses.length() ? status : 0;
+            LongAdder counter = statuses.get(index);
+            if (counter == null) {
+                // the registry hands every caller the same counter, so losing this race is harmless
+                counter = metrics.counter("http_requests_total", "Requests handled, by route and status code",
+                        "method", method, "route", path, "status", index == status ? Integer.toString(status) : "other");
+                statuses.compareAndSet(index, null, counter);
+            }
+            return counter;
+        }
+    }
+}
@@ -0,0 +1,331 @@
+package Util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An in-memory inverted index from words to the ids of the documents that
+ * contain them, kept up to date one document at a time.
+ *
+ * Each word's posting list is a sorted int array. Adding a document whose id
+ * is larger than every id already in a list (the usual case, since ids come
+ * from an auto-increment column) appends in place; anything else copies the
+ * list. Readers always see a consistent snapshot of a list and never block:
+ * a list is published as an immutable (array, size) pair, and appends only
+ * ever write past the size of every published snapshot.
+ *
+ * Queries are ranked by the summed inverse document frequency of the query
+ * words a document contains, so rare words count for more than common ones;
+ * ties go to the newer (larger) id. AND queries return only documents that
+ * contain every word, OR queries any document that contains at least one.
+ */
+public class InvertedIndex {
+
+    private static final int MIN_TOKEN_LENGTH = 2;
+    private static final int MAX_TOKEN_LENGTH = 64;
+    private static final int INITIAL_CAPACITY = 4;
+    // scores are sums of doubles added in different orders; closer than this counts as equal
+    private static final double SCORE_EPSILON = 1e-9;
+
+    // rough per-entry costs used by estimateBytes()
+    private static final int ENTRY_OVERHEAD_BYTES = 32 + 16 + 24 + 16;
+    private static final int STRING_OVERHEAD_BYTES = 24 + 16;
+
+    private final ConcurrentHashMap<String, PostingList> postings = new ConcurrentHashMap<>();
+    private final AtomicInteger documents = new AtomicInteger();
+    private final LongAdder postingCount = new LongAdder();
+
+    /**
+     * Splits text into lower-case runs of letters and digits. Runs shorter than two
+     * characters are dropped, longer than 64 are cut, and repeats are returned once.
+     */
+    public static Set<String> tokenize(String text) {
+        Set<String> tokens = new LinkedHashSet<>();
+        if (text == null) {
+            return tokens;
+        }
+        int length = text.length();
+        int start = -1;
+        for (int i = 0; i <= length; i++) {
+            boolean wordChar = i < length && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                if (i - start >= MIN_TOKEN_LENGTH) {
+                    tokens.add(text.substring(start, Math.min(i, start + MAX_TOKEN_LENGTH)).toLowerCase());
+                }
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    // Lists are only changed inside compute, which holds the map's lock for that word,
+    // so a list emptied and dropped by remove can never take a concurrent add with it
+    public void add(int id, String text) {
+        boolean[] added = new boolean[1];
+        for (String token : tokenize(text)) {
+            postings.compute(token, (t, list) -> {
+                PostingList target = list == null ? new PostingList() : list;
+                added[0] = target.add(id);
+                return target;
+            });
+            if (added[0]) {
+                postingCount.increment();
+            }
+        }
+        documents.incrementAndGet();
+    }
+
+    public void remove(int id, String text) {
+        boolean[] removed = new boolean[1];
+        for (String token : tokenize(text)) {
+            removed[0] = false;
+            postings.computeIfPresent(token, (t, list) -> {
+                removed[0] = list.remove(id);
+                return list.snapshot.size == 0 ? null : list;
+            });
+            if (removed[0]) {
+                postingCount.decrement();
+            }
+        }
+        documents.decrementAndGet();
+    }
+
+    public void update(int id, String oldText, String newText) {
+        remove(id, oldText);
+        add(id, newText);
+    }
+
+    /**
+     * @param matchAll true for AND (every query word), false for OR (any query word)
+     * @return up to limit ids, best match first
+     */
+    public List<Integer> search(String query, boolean matchAll, int limit) {
+        Set<String> tokens = tokenize(query);
+        if (tokens.isEmpty() || limit < 1) {
+            return new ArrayList<>();
+        }
+        List<Snapshot> lists = new ArrayList<>(tokens.size());
+        for (String token : tokens) {
+            PostingList list = postings.get(token);
+            Snapshot snapshot = list == null ? Snapshot.EMPTY : list.snapshot;
+            if (matchAll && snapshot.size == 0) {
+                return new ArrayList<>();
+            }
+            if (snapshot.size > 0) {
+                lists.add(snapshot);
+            }
+        }
+        int total = Math.max(1, documents.get());
+        return matchAll ? searchAll(lists, limit) : searchAny(lists, total, limit);
+    }
+
+    // Every result holds every word, so they all have the same score and the newest win
+    private List<Integer> searchAll(List<Snapshot> lists, int limit) {
+        lists.sort(Comparator.comparingInt(snapshot -> snapshot.size));
+        Snapshot smallest = lists.get(0);
+        List<Integer> ids = new ArrayList<>(Math.min(limit, smallest.size));
+        int[] cursors = new int[lists.size()];
+        Arrays.fill(cursors, Integer.MAX_VALUE);
+        for (int i = smallest.size - 1; i >= 0 && ids.size() < limit; i--) {
+            int id = smallest.ids[i];
+            boolean inAll = true;
+            for (int l = 1; l < lists.size() && inAll; l++) {
+                Snapshot other = lists.get(l);
+                // candidates arrive in descending order, so each search can start below the previous hit
+                int position = Arrays.binarySearch(other.ids, 0, Math.min(other.size, cursors[l]), id);
+                if (position >= 0) {
+                    cursors[l] = position;
+                } else {
+                    cursors[l] = -position - 1;
+                    inAll = false;
+                }
+            }
+            if (inAll) {
+                ids.add(id);
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * MaxScore: lists are ordered from most to least common, and once the top
+     * results all score above what the most common lists could add up to on their
+     * own, documents found only in those lists cannot make it in. From then on only
+     * the remaining ("essential") lists are walked, and the common ones are probed
+     * with binary searches for the candidates they produce. Ids are walked newest
+     * first, so among equal scores the first found wins.
+     */
+    private List<Integer> searchAny(List<Snapshot> lists, int total, int limit) {
+        lists.sort(Comparator.comparingInt((Snapshot snapshot) -> snapshot.size).reversed());
+        int count = lists.size();
+        double[] idf = new double[count];
+        double[] upToAndIncluding = new double[count];
+        int[] cursors = new int[count];
+        for (int l = 0; l < count; l++) {
+            idf[l] = Math.log(1 + (double) total / lists.get(l).size);
+            upToAndIncluding[l] = idf[l] + (l == 0 ? 0 : upToAndIncluding[l - 1]);
+            cursors[l] = lists.get(l).size - 1;
+        }
+
+        PriorityQueue<ScoredId> best = new PriorityQueue<>(limit + 1);
+        double threshold = -1;
+        int firstEssential = 0;
+        while (true) {
+            // the newest id not yet visited in any essential list
+            int id = -1;
+            for (int l = firstEssential; l < count; l++) {
+                if (cursors[l] >= 0) {
+                    id = Math.max(id, lists.get(l).ids[cursors[l]]);
+                }
+            }
+            if (id < 0) {
+                break;
+            }
+            double score = 0;
+            for (int l = firstEssential; l < count; l++) {
+                if (cursors[l] >= 0 && lists.get(l).ids[cursors[l]] == id) {
+                    score += idf[l];
+                    cursors[l]--;
+                }
+            }
+            for (int l = firstEssential - 1; l >= 0 && score + upToAndIncluding[l] > threshold + SCORE_EPSILON; l--) {
+                Snapshot other = lists.get(l);
+                int position = Arrays.binarySearch(other.ids, 0, cursors[l] + 1, id);
+                if (position >= 0) {
+                    score += idf[l];
+                }
+                // ids only get smaller, so the rest of the walk stays below this point
+                cursors[l] = position >= 0 ? position - 1 : -position - 2;
+            }
+            if (best.size() < limit || score > threshold + SCORE_EPSILON) {
+                best.add(new ScoredId(id, score));
+                if (best.size() > limit) {
+                    best.poll();
+                }
+                if (best.size() == limit) {
+                    threshold = best.peek().score;
+                    while (firstEssential < count && upToAndIncluding[firstEssential] <= threshold + SCORE_EPSILON) {
+                        firstEssential++;
+                    }
+                }
+            }
+        }
+        Integer[] ids = new Integer[best.size()];
+        for (int i = ids.length - 1; i >= 0; i--) {
+            ids[i] = best.poll().id;
+        }
+        return new ArrayList<>(Arrays.asList(ids));
+    }
+
+    // Ordered worst first: lower score, then among equal scores the later (older) find
+    private static final class ScoredId implements Comparable<ScoredId> {
+
+        private final int id;
+        private final double score;
+
+        private ScoredId(int id, double score) {
+            this.id = id;
+            this.score = score;
+        }
+
+        @Override
+        public int compareTo(ScoredId other) {
+            int byScore = Double.compare(score, other.score);
+            return byScore != 0 ? byScore : Integer.compare(id, other.id);
+        }
+    }
+
+    public int getDocumentCount() {
+        return documents.get();
+    }
+
+    public int getTermCount() {
+        return postings.size();
+    }
+
+    public long getPostingCount() {
+        return postingCount.sum();
+    }
+
+    /**
+     * @return an estimate of the heap taken by the index: terms, map entries and posting arrays
+     */
+    public long estimateBytes() {
+        long bytes = 0;
+        for (Map.Entry<String, PostingList> entry : postings.entrySet()) {
+            bytes += ENTRY_OVERHEAD_BYTES + STRING_OVERHEAD_BYTES + entry.getKey().length()
+                    + 16 + 4L * entry.getValue().snapshot.ids.length;
+        }
+        return bytes;
+    }
+
+    // An immutable view of a posting list: the first size entries of ids, in ascending order
+    private static final class Snapshot {
+
+        private static final Snapshot EMPTY = new Snapshot(new int[0], 0);
+
+        private final int[] ids;
+        private final int size;
+
+        private Snapshot(int[] ids, int size) {
+            this.ids = ids;
+            this.size = size;
+        }
+    }
+
+    // Written only inside the index map's compute; readers just read the volatile snapshot
+    private static final class PostingList {
+
+        private volatile Snapshot snapshot = new Snapshot(new int[INITIAL_CAPACITY], 0);
+
+        boolean add(int id) {
+            Snapshot current = snapshot;
+            int[] ids = current.ids;
+            int size = current.size;
+            if (size > 0 && ids[size - 1] >= id) {
+                int position = Arrays.binarySearch(ids, 0, size, id);
+                if (position >= 0) {
+                    return false;
+                }
+                int insertAt = -position - 1;
+                int[] copy = new int[Math.max(ids.length, size + 1)];
+                System.arraycopy(ids, 0, copy, 0, insertAt);
+                copy[insertAt] = id;
+                System.arraycopy(ids, insertAt, copy, insertAt + 1, size - insertAt);
+                snapshot = new Snapshot(copy, size + 1);
+                return true;
+            }
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size + (size >> 1) + 1);
+            }
+            // past the end of every published snapshot, so no reader can see this write early
+            ids[size] = id;
+            snapshot = new Snapshot(ids, size + 1);
+            return true;
+        }
+
+        boolean remove(int id) {
+            Snapshot current = snapshot;
+            int position = Arrays.binarySearch(current.ids, 0, current.size, id);
+            if (position < 0) {
+                return false;
+            }
+            int[] copy = new int[current.size - 1 < INITIAL_CAPACITY ? INITIAL_CAPACITY : current.size - 1];
+            System.arraycopy(current.ids, 0, copy, 0, position);
+            System.arraycopy(current.ids, position + 1, copy, position, current.size - position - 1);
+            snapshot = new Snapshot(copy, current.size - 1);
+            return true;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package Util;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import Model.Account;
+import Model.Message;
+import io.javalin.json.JsonMapper;
+
+/**
+ * Shared JSON codec for request bodies and responses.
+ *
+ * ObjectMapper does its class introspection and builds its serializers the
+ * first time it sees a type and caches them from then on, so there is one
+ * mapper for the whole application. ObjectReader and ObjectWriter instances are
+ * immutable and thread safe; readers for the request models are built up front
+ * and writers are built once per response type and kept.
+ *
+ * Registered as Javalin's JsonMapper, so ctx.json() goes through it too.
+ */
+public class JsonCodec implements JsonMapper {
+
+    private static final JsonCodec INSTANCE = new JsonCodec();
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final ObjectReader accountReader = mapper.readerFor(Account.class);
+    private final ObjectReader messageReader = mapper.readerFor(Message.class);
+    private final ObjectReader messageListReader = mapper.readerForListOf(Message.class);
+    private final ObjectReader idListReader = mapper.readerForListOf(Integer.class);
+    private final Map<Type, ObjectReader> readers = new ConcurrentHashMap<>();
+    private final Map<Type, ObjectWriter> writers = new ConcurrentHashMap<>();
+
+    /**
+     * @return the codec shared by the whole application
+     */
+    public static JsonCodec getInstance() {
+        return INSTANCE;
+    }
+
+    public Account readAccount(String json) throws JsonProcessingException {
+        return accountReader.readValue(json);
+    }
+
+    public Message readMessage(String json) throws JsonProcessingException {
+        return messageReader.readValue(json);
+    }
+
+    public List<Message> readMessages(String json) throws JsonProcessingException {
+        return messageListReader.readValue(json);
+    }
+
+    public List<Integer> readIds(String json) throws JsonProcessingException {
+        return idListReader.readValue(json);
+    }
+
+    public JsonGenerator createGenerator(OutputStream out) throws IOException {
+        return mapper.getFactory().createGenerator(out);
+    }
+
+    @Override
+    public String toJsonString(Object obj, Type type) {
+        try {
+            return writerFor(type).writeValueAsString(obj);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public InputStream toJsonStream(Object obj, Type type) {
+        return new ByteArrayInputStream(toJsonBytes(obj, type));
+    }
+
+    public byte[] toJsonBytes(Object obj, Type type) {
+        try {
+            return writerFor(type).writeValueAsBytes(obj);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public <T> T fromJsonString(String json, Type type) {
+        try {
+            return readerFor(type).readValue(json);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public <T> T fromJsonStream(InputStream json, Type type) {
+        try {
+            return readerFor(type).readValue(json);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private ObjectWriter writerFor(Type type) {
+        return writers.computeIfAbsent(type, t -> mapper.writerFor(javaType(t)));
+    }
+
+    private ObjectReader readerFor(Type type) {
+        if (type == Account.class) {
+            return accountReader;
+        }
+        if (type == Message.class) {
+            return messageReader;
+        }
+        return readers.computeIfAbsent(type, t -> mapper.readerFor(javaType(t)));
+    }
+
+    private JavaType javaType(Type type) {
+        return mapper.getTypeFactory().constructType(type);
+    }
+}
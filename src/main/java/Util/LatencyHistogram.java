@@ -0,0 +1,87 @@
+package Util;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fixed-bucket latency histogram, in the shape Prometheus expects: a count per
+ * bucket upper bound, plus the total count and sum.
+ *
+ * Recording is one binary search over the bounds and two LongAdder increments,
+ * so it never blocks and its memory does not grow with the number of samples.
+ */
+public class LatencyHistogram {
+
+    /**
+     * Bucket upper bounds in seconds, from half a millisecond to ten seconds.
+     */
+    static final double[] DEFAULT_BOUNDS_SECONDS = {
+            0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10 };
+
+    private final double[] boundsSeconds;
+    private final long[] boundsNanos;
+    // one more bucket than bounds, for samples above the largest bound (+Inf)
+    private final LongAdder[] buckets;
+    private final LongAdder sumNanos = new LongAdder();
+
+    public LatencyHistogram() {
+        this(DEFAULT_BOUNDS_SECONDS);
+    }
+
+    public LatencyHistogram(double[] boundsSeconds) {
+        this.boundsSeconds = boundsSeconds.clone();
+        this.boundsNanos = new long[boundsSeconds.length];
+        for (int i = 0; i < boundsSeconds.length; i++) {
+            boundsNanos[i] = (long) (boundsSeconds[i] * TimeUnit.SECONDS.toNanos(1));
+            if (i > 0 && boundsNanos[i] <= boundsNanos[i - 1]) {
+                throw new IllegalArgumentException("Bucket bounds must be increasing");
+            }
+        }
+        this.buckets = new LongAdder[boundsSeconds.length + 1];
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    public void record(long nanos) {
+        int index = Arrays.binarySearch(boundsNanos, nanos);
+        // a sample equal to a bound belongs to that bound's bucket (le = less or equal)
+        buckets[index >= 0 ? index : -index - 1].increment();
+        sumNanos.add(nanos);
+    }
+
+    /**
+     * Records the time elapsed since start, a value from System.nanoTime().
+     */
+    public void recordSince(long start) {
+        record(System.nanoTime() - start);
+    }
+
+    public long getCount() {
+        long count = 0;
+        for (LongAdder bucket : buckets) {
+            count += bucket.sum();
+        }
+        return count;
+    }
+
+    public double getSumSeconds() {
+        return sumNanos.sum() / 1e9;
+    }
+
+    double[] getBoundsSeconds() {
+        return boundsSeconds;
+    }
+
+    /**
+     * @return the number of samples in each bucket, not cumulative; the last entry is the +Inf bucket
+     */
+    long[] getBucketCounts() {
+        long[] counts = new long[buckets.length];
+        for (int i = 0; i < buckets.length; i++) {
+            counts[i] = buckets[i].sum();
+        }
+        return counts;
+    }
+}
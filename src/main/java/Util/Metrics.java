@@ -0,0 +1,147 @@
+package Util;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+/**
+ * A registry of counters, gauges and latency histograms that renders them in the
+ * Prometheus text exposition format.
+ *
+ * Metrics are looked up by name and label values; callers on a hot path should
+ * look theirs up once and keep the returned LongAdder or LatencyHistogram, so
+ * recording is a plain increment. Registering a gauge again under the same name
+ * and labels replaces the earlier one.
+ *
+ * Label values are expected to come from a small, fixed set (route templates,
+ * status codes, DAO method names), never from request data.
+ */
+public class Metrics {
+
+    private static final Metrics DEFAULT = new Metrics();
+
+    private final Map<String, Family> families = new ConcurrentSkipListMap<>();
+
+    /**
+     * @return the registry shared by the DAOs, the connection pool and the /metrics endpoint
+     */
+    public static Metrics getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * @param labels alternating label names and values
+     */
+    public LongAdder counter(String name, String help, String... labels) {
+        return (LongAdder) family(name, help, "counter").series.computeIfAbsent(renderLabels(labels), key -> new LongAdder());
+    }
+
+    /**
+     * Registers a counter whose value is kept elsewhere and read at scrape time.
+     */
+    public void counter(String name, String help, DoubleSupplier value, String... labels) {
+        family(name, help, "counter").series.put(renderLabels(labels), value);
+    }
+
+    public LatencyHistogram histogram(String name, String help, String... labels) {
+        return (LatencyHistogram) family(name, help, "histogram").series.computeIfAbsent(renderLabels(labels), key -> new LatencyHistogram());
+    }
+
+    public void gauge(String name, String help, DoubleSupplier value, String... labels) {
+        family(name, help, "gauge").series.put(renderLabels(labels), value);
+    }
+
+    private Family family(String name, String help, String type) {
+        Family family = families.computeIfAbsent(name, key -> new Family(help, type));
+        if (!family.type.equals(type)) {
+            throw new IllegalArgumentException(name + " is already registered as a " + family.type);
+        }
+        return family;
+    }
+
+    /**
+     * @return every metric in the Prometheus text format, version 0.0.4
+     */
+    public String scrape() {
+        StringBuilder out = new StringBuilder(4096);
+        for (Map.Entry<String, Family> entry : families.entrySet()) {
+            String name = entry.getKey();
+            Family family = entry.getValue();
+            out.append("# HELP ").append(name).append(' ').append(family.help).append('\n');
+            out.append("# TYPE ").append(name).append(' ').append(family.type).append('\n');
+            for (Map.Entry<String, Object> series : family.series.entrySet()) {
+                String labels = series.getKey();
+                Object metric = series.getValue();
+                if (metric instanceof LongAdder) {
+                    sample(out, name, labels, ((LongAdder) metric).sum());
+                } else if (metric instanceof DoubleSupplier) {
+                    sample(out, name, labels, ((DoubleSupplier) metric).getAsDouble());
+                } else {
+                    writeHistogram(out, name, labels, (LatencyHistogram) metric);
+                }
+            }
+        }
+        return out.toString();
+    }
+
+    private static void writeHistogram(StringBuilder out, String name, String labels, LatencyHistogram histogram) {
+        double[] bounds = histogram.getBoundsSeconds();
+        long[] counts = histogram.getBucketCounts();
+        String prefix = labels.isEmpty() ? "" : labels + ",";
+        long cumulative = 0;
+        for (int i = 0; i < bounds.length; i++) {
+            cumulative += counts[i];
+            sample(out, name + "_bucket", prefix + "le=\"" + bounds[i] + "\"", cumulative);
+        }
+        cumulative += counts[bounds.length];
+        sample(out, name + "_bucket", prefix + "le=\"+Inf\"", cumulative);
+        sample(out, name + "_sum", labels, histogram.getSumSeconds());
+        sample(out, name + "_count", labels, cumulative);
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, double value) {
+        out.append(name);
+        if (!labels.isEmpty()) {
+            out.append('{').append(labels).append('}');
+        }
+        out.append(' ');
+        if (value == (long) value) {
+            out.append((long) value);
+        } else {
+            out.append(value);
+        }
+        out.append('\n');
+    }
+
+    private static String renderLabels(String... labels) {
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("Labels must be name/value pairs");
+        }
+        StringBuilder rendered = new StringBuilder();
+        for (int i = 0; i < labels.length; i += 2) {
+            if (i > 0) {
+                rendered.append(',');
+            }
+            rendered.append(labels[i]).append("=\"").append(escape(labels[i + 1])).append('"');
+        }
+        return rendered.toString();
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static final class Family {
+
+        private final String help;
+        private final String type;
+        // sorted so each scrape lists series in the same order
+        private final Map<String, Object> series = new ConcurrentSkipListMap<>();
+
+        private Family(String help, String type) {
+            this.help = help;
+            this.type = type;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package Util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * A physical connection owned by a ConnectionPool, together with the
+ * bookkeeping the pool needs for idle eviction and leak detection.
+ *
+ * Each borrow hands out a fresh proxy handle, so a handle that has been closed
+ * can never be used to reach a connection that has since been lent to someone else.
+ * Prepared statements are served from a per-connection StatementCache when one is configured.
+ */
+class PooledConnection {
+
+    /**
+     * Puts back the session settings a borrower may change, namely the lazy result streaming
+     * MessageDAO turns on for long scans.
+     */
+    private static final String SESSION_RESET_SQL = "SET LAZY_QUERY_EXECUTION FALSE";
+
+    private final ConnectionPool pool;
+    private final Connection physical;
+    private final StatementCache statementCache;
+    private volatile long lastUsedNanos = System.nanoTime();
+    private volatile long borrowedNanos;
+    private volatile String borrower;
+    private volatile boolean leakReported;
+    // set when the borrower ran SQL that may have changed session settings
+    private volatile boolean sessionChanged;
+
+    PooledConnection(ConnectionPool pool, Connection physical, int statementCacheSize) {
+        this.pool = pool;
+        this.physical = physical;
+        this.statementCache = statementCacheSize > 0 ? new StatementCache(physical, statementCacheSize, pool) : null;
+    }
+
+    Connection getPhysical() {
+        return physical;
+    }
+
+    long getLastUsedNanos() {
+        return lastUsedNanos;
+    }
+
+    long getBorrowedNanos() {
+        return borrowedNanos;
+    }
+
+    String getBorrower() {
+        return borrower;
+    }
+
+    boolean isLeakReported() {
+        return leakReported;
+    }
+
+    void setLeakReported(boolean leakReported) {
+        this.leakReported = leakReported;
+    }
+
+    void markBorrowed() {
+        borrowedNanos = System.nanoTime();
+        borrower = Thread.currentThread().getName();
+        leakReported = false;
+    }
+
+    void markReturned() {
+        lastUsedNanos = System.nanoTime();
+        borrower = null;
+    }
+
+    /**
+     * Undo anything a borrower may have left behind so the next borrower sees a clean connection.
+     */
+    void reset() throws SQLException {
+        if (statementCache != null) {
+            statementCache.reset();
+        }
+        if (!physical.getAutoCommit()) {
+            physical.rollback();
+            physical.setAutoCommit(true);
+        }
+        if (sessionChanged) {
+            try (Statement stmt = physical.createStatement()) {
+                stmt.execute(SESSION_RESET_SQL);
+            }
+            sessionChanged = false;
+        }
+        physical.clearWarnings();
+    }
+
+    Connection newHandle() {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[] { Connection.class }, new Handle());
+    }
+
+    private class Handle implements InvocationHandler {
+
+        private boolean closed;
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        pool.release(PooledConnection.this);
+                    }
+                    return null;
+                case "isClosed":
+                    return closed || physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PooledConnection[" + physical + (closed ? ", closed]" : "]");
+                default:
+                    break;
+            }
+            if (closed) {
+                throw new SQLException("Connection is closed");
+            }
+            // settings are changed with SET through a plain statement; prepared queries never do,
+            // so only connections that handed one out pay for the reset
+            if (method.getName().equals("createStatement") || (args != null && args.length > 0 && args[0] instanceof String
+                    && ((String) args[0]).trim().regionMatches(true, 0, "SET ", 0, 4))) {
+                sessionChanged = true;
+            }
+            if (statementCache != null && method.getName().equals("prepareStatement") && StatementCache.isCacheable(method)) {
+                return statementCache.prepare((String) args[0], StatementCache.autoGeneratedKeys(args), (Connection) proxy);
+            }
+            try {
+                return method.invoke(physical, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
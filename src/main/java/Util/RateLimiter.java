@@ -0,0 +1,187 @@
+package Util;
+
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Token buckets, one per key, in a fixed-size table that needs no locks and no
+ * cleanup thread.
+ *
+ * Each key earns permitsPerSecond tokens up to burst, and each permit costs one.
+ * A bucket is held as a single long: the time at which it will be full again
+ * (the "theoretical arrival time" of GCRA, which behaves exactly like a token
+ * bucket). Taking permits is one compare-and-set on that long. Taking more
+ * permits than burst at once needs a full bucket and leaves the key in debt,
+ * so it waits as long as the permits would have taken to earn.
+ *
+ * A key may live in any of the PROBES slots after the one its hash picks. A key
+ * that is not there takes an empty slot, or a slot whose bucket is full again
+ * (forgetting it loses nothing), or failing those the bucket closest to full,
+ * which is counted as an eviction; an evicted key starts again with a full
+ * bucket. Memory therefore stays at tableSize buckets however many keys come
+ * and go. Two threads adding the same key at once may each claim a slot; the
+ * spare one only lets that key through a little more and soon fills up and is
+ * reused.
+ */
+public class RateLimiter {
+
+    private static final int PROBES = 4;
+    private static final double DEFAULT_PERMITS_PER_SECOND = Double.parseDouble(System.getProperty("ratelimit.writes.perSecond", "0"));
+    private static final int DEFAULT_BURST = Integer.getInteger("ratelimit.writes.burst", 100);
+    private static final int DEFAULT_TABLE_SIZE = Integer.getInteger("ratelimit.tableSize", 65_536);
+
+    private final AtomicReferenceArray<Bucket> slots;
+    private final int mask;
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final LongAdder allowed = new LongAdder();
+    private final LongAdder limited = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param permitsPerSecond how fast a key earns permits back
+     * @param burst how many permits a key can save up and spend at once
+     * @param tableSize how many keys are tracked at a time, rounded up to a power of two
+     */
+    public RateLimiter(double permitsPerSecond, int burst, int tableSize) {
+        if (!(permitsPerSecond > 0) || burst < 1 || tableSize < PROBES || tableSize > 1 << 30) {
+            throw new IllegalArgumentException("Invalid rate limiter settings");
+        }
+        int size = Integer.highestOneBit(tableSize - 1) << 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+        this.intervalNanos = Math.max(1, (long) (1_000_000_000 / permitsPerSecond));
+        this.burstNanos = intervalNanos * burst;
+    }
+
+    /**
+     * @return the limiter for message writes, configured by ratelimit.writes.perSecond,
+     *         ratelimit.writes.burst and ratelimit.tableSize, or null when ratelimit.writes.perSecond
+     *         is 0, as it is unless set
+     */
+    public static RateLimiter getDefault() {
+        return DefaultHolder.LIMITER;
+    }
+
+    // initialized by the class loader the first time getDefault() is called
+    private static final class DefaultHolder {
+
+        private static final RateLimiter LIMITER = DEFAULT_PERMITS_PER_SECOND > 0
+                ? new RateLimiter(DEFAULT_PERMITS_PER_SECOND, DEFAULT_BURST, DEFAULT_TABLE_SIZE)
+                : null;
+    }
+
+    /**
+     * Takes a permit for key if it has one.
+     * @return 0 if a permit was taken, otherwise how many nanoseconds until the key has one
+     */
+    public long tryAcquire(long key) {
+        return tryAcquire(key, 1, System.nanoTime());
+    }
+
+    /**
+     * Takes permits for key if it has them, or a full bucket when permits is more than burst.
+     * @return 0 if the permits were taken, otherwise how many nanoseconds until the key has them
+     */
+    public long tryAcquire(long key, int permits) {
+        return tryAcquire(key, permits, System.nanoTime());
+    }
+
+    /**
+     * @param now the current System.nanoTime()
+     */
+    public long tryAcquire(long key, int permits, long now) {
+        if (permits < 1) {
+            throw new IllegalArgumentException("Invalid permit count: " + permits);
+        }
+        long cost = intervalNanos * permits;
+        long needed = Math.min(cost, burstNanos);
+        Bucket bucket = bucketFor(key, now);
+        while (true) {
+            long full = bucket.full;
+            // a bucket full since before now has saved up exactly burst permits, no more
+            long start = full - now < 0 ? now : full;
+            long wait = start + needed - now - burstNanos;
+            if (wait > 0) {
+                limited.increment();
+                return wait;
+            }
+            if (Bucket.FULL.compareAndSet(bucket, full, start + cost)) {
+                allowed.increment();
+                return 0;
+            }
+        }
+    }
+
+    private Bucket bucketFor(long key, long now) {
+        int start = index(key);
+        while (true) {
+            int free = -1;
+            int closestToFull = -1;
+            Bucket victim = null;
+            for (int i = 0; i < PROBES; i++) {
+                int slot = (start + i) & mask;
+                Bucket bucket = slots.get(slot);
+                if (bucket != null && bucket.key == key) {
+                    return bucket;
+                }
+                if (bucket == null || bucket.full - now <= 0) {
+                    if (free < 0) {
+                        free = slot;
+                        victim = bucket;
+                    }
+                } else if (free < 0 && (closestToFull < 0 || bucket.full - victim.full < 0)) {
+                    closestToFull = slot;
+                    victim = bucket;
+                }
+            }
+            Bucket added = new Bucket(key, now);
+            if (slots.compareAndSet(free >= 0 ? free : closestToFull, victim, added)) {
+                if (free < 0) {
+                    evictions.increment();
+                }
+                return added;
+            }
+        }
+    }
+
+    // keys are often small consecutive ids; mixing spreads them over the table
+    private int index(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ h >>> 32) & mask;
+    }
+
+    public long getAllowedCount() {
+        return allowed.sum();
+    }
+
+    public long getLimitedCount() {
+        return limited.sum();
+    }
+
+    /**
+     * @return keys forgotten while their bucket was still refilling, to make room for another key
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    public int getTableSize() {
+        return mask + 1;
+    }
+
+    private static final class Bucket {
+
+        private static final AtomicLongFieldUpdater<Bucket> FULL = AtomicLongFieldUpdater.newUpdater(Bucket.class, "full");
+
+        private final long key;
+        // the System.nanoTime() at which the bucket is full again; at or before now means full
+        private volatile long full;
+
+        private Bucket(long key, long full) {
+            this.key = key;
+            this.full = full;
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package Util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * gzip and deflate content codings for response bodies, chosen from the
+ * request's Accept-Encoding.
+ *
+ * Bodies shorter than minSize are sent as they are: below a kilobyte or so
+ * the codec headers and the CPU time cost more than the bytes saved. The
+ * bytes before and after compression and the time spent are counted, so the
+ * trade can be watched in production.
+ */
+public class ResponseCompressor {
+
+    /**
+     * A content coding, by its Accept-Encoding / Content-Encoding token.
+     */
+    public enum Encoding {
+        IDENTITY("identity"), GZIP("gzip"), DEFLATE("deflate");
+
+        private final String token;
+
+        Encoding(String token) {
+            this.token = token;
+        }
+
+        public String getToken() {
+            return token;
+        }
+    }
+
+    private static final int DEFAULT_MIN_SIZE = Integer.getInteger("http.compression.minSize", 1024);
+    private static final int DEFAULT_LEVEL = Integer.getInteger("http.compression.level", 6);
+    private static final int BUFFER_SIZE = 8192;
+
+    private final int minSize;
+    private final int level;
+    private final LatencyHistogram[] timers = new LatencyHistogram[Encoding.values().length];
+    private final LongAdder[] bytesIn = new LongAdder[Encoding.values().length];
+    private final LongAdder[] bytesOut = new LongAdder[Encoding.values().length];
+
+    /**
+     * @param minSize the smallest body, in bytes, worth compressing
+     * @param level the Deflater level, 1 (fastest) to 9 (smallest)
+     */
+    public ResponseCompressor(int minSize, int level) {
+        this(minSize, level, new Metrics());
+    }
+
+    private ResponseCompressor(int minSize, int level, Metrics metrics) {
+        if (minSize < 0 || level < Deflater.BEST_SPEED || level > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("Invalid response compression settings");
+        }
+        this.minSize = minSize;
+        this.level = level;
+        for (Encoding encoding : Encoding.values()) {
+            if (encoding == Encoding.IDENTITY) {
+                continue;
+            }
+            String token = encoding.getToken();
+            timers[encoding.ordinal()] = metrics.histogram("http_compression_seconds", "Time spent compressing response bodies",
+                    "encoding", token);
+            bytesIn[encoding.ordinal()] = metrics.counter("http_compression_input_bytes_total", "Response bytes before compression",
+                    "encoding", token);
+            bytesOut[encoding.ordinal()] = metrics.counter("http_compression_output_bytes_total", "Response bytes after compression",
+                    "encoding", token);
+        }
+    }
+
+    /**
+     * @return the compressor used by controllers that are not given their own, configured by
+     *         http.compression.minSize and http.compression.level
+     */
+    public static ResponseCompressor getDefault() {
+        return DefaultHolder.COMPRESSOR;
+    }
+
+    // initialized by the class loader the first time getDefault() is called
+    private static final class DefaultHolder {
+
+        private static final ResponseCompressor COMPRESSOR = new ResponseCompressor(DEFAULT_MIN_SIZE, DEFAULT_LEVEL, Metrics.getDefault());
+    }
+
+    /**
+     * Picks the coding with the highest quality value the client accepts, gzip on a tie.
+     * "*" stands for any coding not listed, and q=0 rules a coding out.
+     * @param acceptEncoding the Accept-Encoding header, or null
+     */
+    public Encoding negotiate(String acceptEncoding) {
+        if (acceptEncoding == null || acceptEncoding.isEmpty()) {
+            return Encoding.IDENTITY;
+        }
+        double gzip = -1;
+        double deflate = -1;
+        double any = -1;
+        for (String part : acceptEncoding.split(",")) {
+            String[] fields = part.split(";");
+            String coding = fields[0].trim().toLowerCase();
+            double quality = 1;
+            for (int i = 1; i < fields.length; i++) {
+                String parameter = fields[i].trim();
+                if (parameter.startsWith("q=")) {
+                    try {
+                        quality = Double.parseDouble(parameter.substring(2));
+                    } catch (NumberFormatException e) {
+                        quality = 0;
+                    }
+                }
+            }
+            if (coding.equals("gzip") || coding.equals("x-gzip")) {
+                gzip = quality;
+            } else if (coding.equals("deflate")) {
+                deflate = quality;
+            } else if (coding.equals("*")) {
+                any = quality;
+            }
+        }
+        gzip = gzip < 0 ? any : gzip;
+        deflate = deflate < 0 ? any : deflate;
+        if (gzip <= 0 && deflate <= 0) {
+            return Encoding.IDENTITY;
+        }
+        return gzip >= deflate ? Encoding.GZIP : Encoding.DEFLATE;
+    }
+
+    /**
+     * @return true if a body of this many bytes is big enough to compress
+     */
+    public boolean shouldCompress(int length) {
+        return length >= minSize;
+    }
+
+    /**
+     * @return the body in the given coding; the body itself for IDENTITY
+     */
+    public byte[] compress(byte[] body, Encoding encoding) {
+        if (encoding == Encoding.IDENTITY) {
+            return body;
+        }
+        long start = System.nanoTime();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, body.length / 4));
+        try (OutputStream compressing = compressing(out, encoding)) {
+            compressing.write(body);
+        } catch (IOException e) {
+            // a ByteArrayOutputStream does not throw
+            throw new UncheckedIOException(e);
+        }
+        byte[] compressed = out.toByteArray();
+        timers[encoding.ordinal()].recordSince(start);
+        bytesIn[encoding.ordinal()].add(body.length);
+        bytesOut[encoding.ordinal()].add(compressed.length);
+        return compressed;
+    }
+
+    /**
+     * Wraps a stream so that what is written to it reaches out in the given coding.
+     * Flushing it pushes out everything written so far, and closing it finishes
+     * the coding and closes out.
+     */
+    public OutputStream compressing(OutputStream out, Encoding encoding) throws IOException {
+        switch (encoding) {
+            case GZIP:
+                return new GZIPOutputStream(out, BUFFER_SIZE, true) {
+                    {
+                        def.setLevel(level);
+                    }
+                };
+            case DEFLATE:
+                // HTTP's "deflate" is the zlib format, which is what Deflater writes by default
+                Deflater deflater = new Deflater(level);
+                return new DeflaterOutputStream(out, deflater, BUFFER_SIZE, true) {
+                    @Override
+                    public void close() throws IOException {
+                        try {
+                            super.close();
+                        } finally {
+                            deflater.end();
+                        }
+                    }
+                };
+            default:
+                return out;
+        }
+    }
+
+    public int getMinSize() {
+        return minSize;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+}
@@ -0,0 +1,118 @@
+package Util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import javax.sql.DataSource;
+
+import org.h2.tools.RunScript;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Applies the versioned scripts under db/migration on the classpath, in order,
+ * and records each one in the schema_version table so it only ever runs once.
+ *
+ * Script names follow V{version}__{description}.sql. H2 commits DDL as it goes,
+ * so a script cannot be rolled back halfway; every script is written to be safe
+ * to run again (IF NOT EXISTS) in case a previous attempt died before it was recorded.
+ */
+public class SchemaMigrator {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SchemaMigrator.class);
+
+    /**
+     * Every migration, oldest first. New scripts are added to the end of this list.
+     */
+    private static final String[] MIGRATIONS = {
+            "V1__create_tables.sql",
+            "V2__message_indexes.sql",
+            "V3__message_time_indexes.sql",
+    };
+
+    private final DataSource dataSource;
+
+    public SchemaMigrator(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    /**
+     * Brings the schema up to the latest version.
+     * @return the number of scripts that were applied
+     */
+    public int migrate() throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            try (Statement stmt = connection.createStatement()) {
+                stmt.execute("CREATE TABLE IF NOT EXISTS schema_version ("
+                        + "version int PRIMARY KEY, "
+                        + "description varchar(255), "
+                        + "applied_on timestamp DEFAULT CURRENT_TIMESTAMP)");
+            }
+
+            int current = currentVersion(connection);
+            int applied = 0;
+            for (String script : MIGRATIONS) {
+                int version = versionOf(script);
+                if (version <= current) {
+                    continue;
+                }
+                LOGGER.info("Applying schema migration {}", script);
+                apply(connection, script);
+                record(connection, version, descriptionOf(script));
+                applied++;
+            }
+            return applied;
+        }
+    }
+
+    public int currentVersion() throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            return currentVersion(connection);
+        }
+    }
+
+    private int currentVersion(Connection connection) throws SQLException {
+        try (Statement stmt = connection.createStatement();
+                ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(version), 0) FROM schema_version")) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    private void apply(Connection connection, String script) throws SQLException {
+        InputStream in = SchemaMigrator.class.getResourceAsStream("/db/migration/" + script);
+        if (in == null) {
+            throw new SQLException("Missing migration script " + script);
+        }
+        try (Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+            RunScript.execute(connection, reader);
+        } catch (IOException e) {
+            throw new SQLException("Could not read migration script " + script, e);
+        }
+    }
+
+    private void record(Connection connection, int version, String description) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement(
+                "INSERT INTO schema_version (version, description) VALUES (?, ?)")) {
+            stmt.setInt(1, version);
+            stmt.setString(2, description);
+            stmt.executeUpdate();
+        }
+    }
+
+    private static int versionOf(String script) {
+        return Integer.parseInt(script.substring(1, script.indexOf("__")));
+    }
+
+    private static String descriptionOf(String script) {
+        return script.substring(script.indexOf("__") + 2, script.lastIndexOf('.')).replace('_', ' ');
+    }
+}
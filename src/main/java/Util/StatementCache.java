@@ -0,0 +1,218 @@
+package Util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Objects;
+
+/**
+ * LRU cache of prepared statements belonging to one physical connection, keyed
+ * by SQL text and generated-keys mode.
+ *
+ * A connection is only ever used by its current borrower, so the cache is not
+ * thread safe. Statements handed out from the cache are proxies whose close()
+ * clears their parameters and puts them back instead of closing them; if the
+ * same SQL is prepared again while its cached statement is still open, the
+ * second caller gets an ordinary uncached statement. Checking a statement back
+ * in also restores its fetch size, max rows and query timeout, so one borrower's
+ * settings never carry over to the next.
+ */
+class StatementCache {
+
+    private final Connection physical;
+    private final int capacity;
+    private final ConnectionPool pool;
+    private final LinkedHashMap<Key, Entry> entries;
+
+    StatementCache(Connection physical, int capacity, ConnectionPool pool) {
+        this.physical = physical;
+        this.capacity = capacity;
+        this.pool = pool;
+        this.entries = new LinkedHashMap<>(capacity * 2, 0.75f, true);
+    }
+
+    PreparedStatement prepare(String sql, int autoGeneratedKeys, Connection handle) throws SQLException {
+        Key key = new Key(sql, autoGeneratedKeys);
+        Entry entry = entries.get(key);
+        if (entry != null && !entry.inUse) {
+            pool.recordStatementCacheHit();
+            return entry.checkOut(handle);
+        }
+        pool.recordStatementCacheMiss();
+        PreparedStatement statement = physical.prepareStatement(sql, autoGeneratedKeys);
+        if (entry != null) {
+            return statement;
+        }
+        entry = new Entry(statement);
+        entries.put(key, entry);
+        // checked out first, so that eviction cannot pick the entry being handed back
+        PreparedStatement checkedOut = entry.checkOut(handle);
+        evictIfFull();
+        return checkedOut;
+    }
+
+    /**
+     * Called when the connection goes back to the pool: any statement its borrower
+     * forgot to close becomes available to the next borrower.
+     */
+    void reset() throws SQLException {
+        for (Entry entry : entries.values()) {
+            if (entry.inUse) {
+                entry.checkIn();
+            }
+        }
+    }
+
+    private void evictIfFull() {
+        Iterator<Entry> eldestFirst = entries.values().iterator();
+        while (entries.size() > capacity && eldestFirst.hasNext()) {
+            Entry eldest = eldestFirst.next();
+            if (eldest.inUse) {
+                continue;
+            }
+            eldestFirst.remove();
+            pool.recordStatementCacheEviction();
+            try {
+                eldest.statement.close();
+            } catch (SQLException e) {
+                // the statement is being thrown away either way
+            }
+        }
+    }
+
+    private static final class Key {
+
+        private final String sql;
+        private final int autoGeneratedKeys;
+
+        private Key(String sql, int autoGeneratedKeys) {
+            this.sql = sql;
+            this.autoGeneratedKeys = autoGeneratedKeys;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return autoGeneratedKeys == key.autoGeneratedKeys && sql.equals(key.sql);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(sql, autoGeneratedKeys);
+        }
+    }
+
+    private static final class Entry {
+
+        private final PreparedStatement statement;
+        // what the statement was prepared with, put back on check-in
+        private final int fetchSize;
+        private final int maxRows;
+        private final int queryTimeout;
+        private boolean inUse;
+        private int generation;
+
+        private Entry(PreparedStatement statement) throws SQLException {
+            this.statement = statement;
+            this.fetchSize = statement.getFetchSize();
+            this.maxRows = statement.getMaxRows();
+            this.queryTimeout = statement.getQueryTimeout();
+        }
+
+        private PreparedStatement checkOut(Connection handle) {
+            inUse = true;
+            return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                    new Class<?>[] { PreparedStatement.class }, new Handle(this, handle));
+        }
+
+        private void checkIn() throws SQLException {
+            inUse = false;
+            generation++;
+            statement.clearParameters();
+            statement.clearBatch();
+            // only when changed: some drivers make setting the timeout a round trip
+            if (statement.getFetchSize() != fetchSize) {
+                statement.setFetchSize(fetchSize);
+            }
+            if (statement.getMaxRows() != maxRows) {
+                statement.setMaxRows(maxRows);
+            }
+            if (statement.getQueryTimeout() != queryTimeout) {
+                statement.setQueryTimeout(queryTimeout);
+            }
+        }
+    }
+
+    /**
+     * The borrower's view of a cached statement. Once closed, or once its
+     * connection has gone back to the pool, it rejects further use, so it cannot
+     * interfere with the statement's next borrower.
+     */
+    private static final class Handle implements InvocationHandler {
+
+        private final Entry entry;
+        private final Connection connection;
+        private final int generation;
+        private boolean closed;
+
+        private Handle(Entry entry, Connection connection) {
+            this.entry = entry;
+            this.connection = connection;
+            this.generation = entry.generation;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (!closed && generation != entry.generation) {
+                closed = true;
+            }
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        entry.checkIn();
+                    }
+                    return null;
+                case "isClosed":
+                    return closed || entry.statement.isClosed();
+                case "getConnection":
+                    return connection;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "CachedStatement[" + entry.statement + (closed ? ", closed]" : "]");
+                default:
+                    break;
+            }
+            if (closed) {
+                throw new SQLException("Statement is closed");
+            }
+            try {
+                return method.invoke(entry.statement, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    static boolean isCacheable(Method method) {
+        Class<?>[] parameters = method.getParameterTypes();
+        return parameters.length == 1
+                || (parameters.length == 2 && parameters[1] == int.class);
+    }
+
+    static int autoGeneratedKeys(Object[] args) {
+        return args.length == 2 ? (Integer) args[1] : Statement.NO_GENERATED_KEYS;
+    }
+}
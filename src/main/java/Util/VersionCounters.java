@@ -0,0 +1,74 @@
+package Util;
+
+import java.security.SecureRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Version numbers for entities identified by an int, for building ETags.
+ *
+ * Ids share a fixed number of counters (stripes) instead of each having its
+ * own, so memory stays constant however many entities there are. Bumping an id
+ * also changes the version of every other id on the same stripe; that only
+ * costs those ids a full response the next time they are polled, never a
+ * wrong "not modified", because a counter only ever goes up.
+ *
+ * Counters start at zero in every instance, so tags also carry a random
+ * per-instance epoch: a tag handed out before a restart never matches one
+ * handed out after it.
+ *
+ * Callers must bump an id after the change to it is committed, and read its
+ * tag before reading the data the tag will describe.
+ */
+public class VersionCounters {
+
+    private final AtomicLongArray versions;
+    private final int mask;
+    private final String epoch;
+
+    /**
+     * @param stripes how many counters to share out, rounded up to a power of two
+     */
+    public VersionCounters(int stripes) {
+        if (stripes < 1 || stripes > 1 << 30) {
+            throw new IllegalArgumentException("Invalid stripe count: " + stripes);
+        }
+        int size = stripes == 1 ? 1 : Integer.highestOneBit(stripes - 1) << 1;
+        this.versions = new AtomicLongArray(size);
+        this.mask = size - 1;
+        this.epoch = Long.toString(new SecureRandom().nextLong() >>> 1, 36);
+    }
+
+    public void bump(int id) {
+        versions.incrementAndGet(index(id));
+    }
+
+    /**
+     * Bumps every counter, for a change whose id is not known.
+     */
+    public void bumpAll() {
+        for (int i = 0; i < versions.length(); i++) {
+            versions.incrementAndGet(i);
+        }
+    }
+
+    public long get(int id) {
+        return versions.get(index(id));
+    }
+
+    /**
+     * @return an opaque string that changes whenever id is bumped
+     */
+    public String tag(int id) {
+        return epoch + "." + Long.toString(get(id), 36);
+    }
+
+    public int getStripes() {
+        return mask + 1;
+    }
+
+    // ids are often consecutive; mixing spreads neighbours over the stripes
+    private int index(int id) {
+        int h = id * 0x9E3779B9;
+        return (h ^ h >>> 16) & mask;
+    }
+}
@@ -0,0 +1,143 @@
+package Util;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import Util.ResponseCompressor.Encoding;
+
+/**
+ * Holds the latest serialized body of one response, and its compressed forms,
+ * under the version of the data it was built from.
+ *
+ * A read at the cached version is served without serializing or compressing
+ * anything; a read at any other version rebuilds the body and replaces the
+ * entry, unless a newer one got there first. Each coding is compressed at most
+ * once per version (twice if two readers race for it), the first time a client
+ * asks for it.
+ *
+ * Callers must read the version before the data the body is built from, so a
+ * body is never cached under a version newer than its data.
+ */
+public class VersionedBodyCache {
+
+    /**
+     * A body and the coding it is in.
+     */
+    public static final class Body {
+
+        private final byte[] bytes;
+        private final Encoding encoding;
+
+        private Body(byte[] bytes, Encoding encoding) {
+            this.bytes = bytes;
+            this.encoding = encoding;
+        }
+
+        public byte[] getBytes() {
+            return bytes;
+        }
+
+        public Encoding getEncoding() {
+            return encoding;
+        }
+    }
+
+    private final ResponseCompressor compressor;
+    private final long maxBytes;
+    private final AtomicReference<Entry> entry = new AtomicReference<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param compressor decides which bodies are worth compressing and compresses them
+     * @param maxBytes bodies larger than this are built for every read instead of being kept
+     */
+    public VersionedBodyCache(ResponseCompressor compressor, long maxBytes) {
+        this.compressor = compressor;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @param version the version of the data, read before loader reads it
+     * @param accepted the coding the client would like, from ResponseCompressor.negotiate
+     * @param loader serializes the data when there is no body for version yet
+     * @return the body, compressed with accepted when it is large enough to be worth it
+     */
+    public Body get(long version, Encoding accepted, Supplier<byte[]> loader) {
+        Entry current = entry.get();
+        boolean hit = current != null && current.version == version;
+        if (!hit) {
+            current = new Entry(version, loader.get());
+            if (current.identity.length <= maxBytes) {
+                Entry fresh = current;
+                entry.accumulateAndGet(fresh, (old, candidate) -> old == null || candidate.version >= old.version ? candidate : old);
+            }
+        }
+        Encoding encoding = compressor.shouldCompress(current.identity.length) ? accepted : Encoding.IDENTITY;
+        if (encoding == Encoding.IDENTITY) {
+            count(hit);
+            return new Body(current.identity, Encoding.IDENTITY);
+        }
+        byte[] compressed = current.compressed.get(encoding.ordinal());
+        if (compressed == null) {
+            hit = false;
+            current.compressed.compareAndSet(encoding.ordinal(), null, compressor.compress(current.identity, encoding));
+            compressed = current.compressed.get(encoding.ordinal());
+        }
+        count(hit);
+        return new Body(compressed, encoding);
+    }
+
+    private void count(boolean hit) {
+        (hit ? hits : misses).increment();
+    }
+
+    /**
+     * Drops the cached body, so the next read rebuilds it whatever its version.
+     */
+    public void clear() {
+        entry.set(null);
+    }
+
+    /**
+     * @return reads served without serializing or compressing
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * @return the bytes held for the cached version, in every coding built so far
+     */
+    public long getCachedBytes() {
+        Entry current = entry.get();
+        if (current == null) {
+            return 0;
+        }
+        long bytes = current.identity.length;
+        for (int i = 0; i < current.compressed.length(); i++) {
+            byte[] compressed = current.compressed.get(i);
+            bytes += compressed == null ? 0 : compressed.length;
+        }
+        return bytes;
+    }
+
+    // The uncompressed body, and each compressed form once someone has asked for it, indexed by Encoding.ordinal()
+    private static final class Entry {
+
+        private final long version;
+        private final byte[] identity;
+        private final AtomicReferenceArray<byte[]> compressed = new AtomicReferenceArray<>(Encoding.values().length);
+
+        private Entry(long version, byte[] identity) {
+            this.version = version;
+            this.identity = identity;
+        }
+    }
+}
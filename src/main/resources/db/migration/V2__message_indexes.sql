@@ -0,0 +1,4 @@
+-- per-account listings: WHERE posted_by = ? ORDER BY message_id
+create index if not exists message_posted_by_message_id on message (posted_by, message_id);
+-- time-ordered listings and time ranges
+create index if not exists message_time_posted_epoch on message (time_posted_epoch);
@@ -0,0 +1,9 @@
+-- timelines: WHERE time_posted_epoch >= ? AND time_posted_epoch < ? ORDER BY time_posted_epoch, message_id.
+-- H2 only reads an index in its declared direction, so newest-first timelines need descending copies.
+create index if not exists message_time_posted_epoch_asc on message (time_posted_epoch, message_id);
+create index if not exists message_time_posted_epoch_desc on message (time_posted_epoch desc, message_id desc);
+-- per-account timelines: the same, after posted_by = ?
+create index if not exists message_posted_by_time_posted_epoch_asc on message (posted_by, time_posted_epoch, message_id);
+create index if not exists message_posted_by_time_posted_epoch_desc on message (posted_by, time_posted_epoch desc, message_id desc);
+-- a prefix of message_time_posted_epoch_asc
+drop index if exists message_time_posted_epoch;
@@ -0,0 +1,146 @@
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Optional;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import DAO.AccountDAO;
+import Model.Account;
+import Service.AccountCache;
+import Service.AccountService;
+import Service.PasswordHasher;
+
+public class AccountServiceTest {
+    AccountDAO accountDao;
+    AccountCache accountCache;
+    PasswordHasher passwordHasher;
+    AccountService accountService;
+
+    /**
+     * Before every test, build the service on a mocked AccountDAO, so each test can count
+     * the lookups that reach the database.
+     */
+    @Before
+    public void setUp() {
+        accountDao = mock(AccountDAO.class);
+        accountCache = new AccountCache(16);
+        passwordHasher = new PasswordHasher(1000, 1, 4);
+        accountService = new AccountService(accountDao, accountCache, passwordHasher);
+    }
+
+    @After
+    public void tearDown() {
+        passwordHasher.close();
+    }
+
+    /**
+     * Looking the same account up twice reads it from the database once.
+     */
+    @Test
+    public void repeatedGetAccountByIdSkipsDao() throws Exception {
+        Account stored = new Account(1, "testuser1", passwordHasher.hash("password").join());
+        when(accountDao.getAccountById(1)).thenReturn(Optional.of(stored));
+
+        Assert.assertEquals(stored, accountService.getAccountById(1).orElse(null));
+        Assert.assertEquals(stored, accountService.getAccountById(1).orElse(null));
+
+        verify(accountDao, times(1)).getAccountById(1);
+    }
+
+    /**
+     * Logging in twice reads the account from the database once, and a wrong password
+     * is still refused from the cached copy.
+     */
+    @Test
+    public void repeatedLoginSkipsDao() throws Exception {
+        Account stored = new Account(1, "testuser1", passwordHasher.hash("password").join());
+        when(accountDao.getAccountByUsername("testuser1")).thenReturn(Optional.of(stored));
+
+        Assert.assertTrue(accountService.validateLogin(new Account("testuser1", "password")).isPresent());
+        Assert.assertTrue(accountService.validateLogin(new Account("testuser1", "password")).isPresent());
+        Assert.assertFalse(accountService.validateLogin(new Account("testuser1", "wrong")).isPresent());
+
+        verify(accountDao, times(1)).getAccountByUsername("testuser1");
+    }
+
+    /**
+     * A new account is cached under both its ID and its username, so neither lookup
+     * goes to the database afterwards.
+     */
+    @Test
+    public void createAccountFillsBothIndexes() throws Exception {
+        when(accountDao.createAccount(any(Account.class)))
+                .thenAnswer(invocation -> {
+                    Account account = invocation.getArgument(0);
+                    return new Account(7, account.getUsername(), account.getPassword());
+                });
+
+        Account created = accountService.createAccount(new Account("newuser", "password"));
+        Assert.assertEquals(7, created.getAccount_id());
+
+        Assert.assertEquals("newuser", accountService.getAccountById(7).get().getUsername());
+        Assert.assertTrue(accountService.validateLogin(new Account("newuser", "password")).isPresent());
+        Assert.assertTrue(accountService.isUsernameTaken("newuser"));
+
+        verify(accountDao, never()).getAccountById(anyInt());
+        verify(accountDao, never()).getAccountByUsername(anyString());
+        verify(accountDao, never()).doesUsernameExist(anyString());
+    }
+
+    /**
+     * An account that is not found is looked up again next time, since it may have been
+     * registered in between.
+     */
+    @Test
+    public void missIsNotCached() throws Exception {
+        Account registered = new Account(2, "lateuser", passwordHasher.hash("password").join());
+        when(accountDao.getAccountById(2)).thenReturn(Optional.empty(), Optional.of(registered));
+
+        Assert.assertFalse(accountService.getAccountById(2).isPresent());
+        Assert.assertNull(accountCache.getById(2));
+        Assert.assertEquals(registered, accountService.getAccountById(2).orElse(null));
+
+        verify(accountDao, times(2)).getAccountById(2);
+    }
+
+    /**
+     * A password stored in plain text is upgraded after a login, and the cache then only
+     * holds the new hash: both indexes serve it, and the next login does not upgrade again.
+     */
+    @Test
+    public void passwordUpgradeReplacesCachedAccount() throws Exception {
+        Account stored = new Account(1, "testuser1", "password");
+        when(accountDao.getAccountByUsername("testuser1")).thenReturn(Optional.of(stored));
+        when(accountDao.replacePassword(eq(1), eq("password"), anyString())).thenReturn(true);
+
+        Assert.assertTrue(accountService.validateLogin(new Account("testuser1", "password")).isPresent());
+        verify(accountDao, timeout(5000)).replacePassword(eq(1), eq("password"), anyString());
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!PasswordHasher.isHashed(accountCache.getByUsername("testuser1").getPassword())
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        String upgraded = accountCache.getByUsername("testuser1").getPassword();
+        Assert.assertTrue(PasswordHasher.isHashed(upgraded));
+        Assert.assertEquals(upgraded, accountCache.getById(1).getPassword());
+
+        Assert.assertTrue(accountService.validateLogin(new Account("testuser1", "password")).isPresent());
+        Assert.assertFalse(accountService.validateLogin(new Account("testuser1", "wrong")).isPresent());
+        Assert.assertEquals(upgraded, accountCache.getByUsername("testuser1").getPassword());
+        verify(accountDao, times(1)).replacePassword(anyInt(), anyString(), anyString());
+        verify(accountDao, times(1)).getAccountByUsername("testuser1");
+    }
+}
@@ -0,0 +1,59 @@
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.LoggerFactory;
+
+import Util.AsyncLogSink;
+import Util.AsyncLogger;
+
+public class AsyncLogSinkTest {
+
+    AsyncLogSink sink;
+    AsyncLogger logger;
+
+    /**
+     * Before every test, create a sink with room for four events whose writer has not started yet.
+     */
+    @Before
+    public void setUp() {
+        sink = new AsyncLogSink(4);
+        logger = new AsyncLogger(LoggerFactory.getLogger(AsyncLogSinkTest.class), sink);
+    }
+
+    @After
+    public void tearDown() {
+        sink.close();
+    }
+
+    /**
+     * Logging never waits for the writer: once the queue is full, events are dropped
+     * and counted, and the queued ones are written once the writer runs.
+     */
+    @Test
+    public void fullQueueDropsInsteadOfBlocking() throws InterruptedException {
+        for (int i = 0; i < 10; i++) {
+            logger.info("event {}", i);
+        }
+        Assert.assertEquals(4, sink.getQueuedCount());
+        Assert.assertEquals(6, sink.getDroppedCount());
+
+        sink.start();
+        Assert.assertTrue(sink.flush(5, TimeUnit.SECONDS));
+        Assert.assertEquals(4, sink.getWrittenCount());
+        Assert.assertEquals(0, sink.getQueuedCount());
+    }
+
+    /**
+     * A level that is switched off for the logger queues nothing.
+     */
+    @Test
+    public void disabledLevelQueuesNothing() {
+        Assert.assertFalse(logger.isDebugEnabled());
+        logger.debug("not logged {}", new Object());
+        Assert.assertEquals(0, sink.getQueuedCount());
+        Assert.assertEquals(0, sink.getDroppedCount());
+    }
+}
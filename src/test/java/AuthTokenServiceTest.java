@@ -0,0 +1,47 @@
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.OptionalInt;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import Service.AuthTokenService;
+
+public class AuthTokenServiceTest {
+
+    private static final byte[] KEY = "0123456789abcdef0123456789abcdef".getBytes();
+
+    private static Clock at(long epochSecond) {
+        return Clock.fixed(Instant.ofEpochSecond(epochSecond), ZoneOffset.UTC);
+    }
+
+    /**
+     * A token verifies to the account it was issued for until it expires, and
+     * another instance with the same key accepts it too.
+     */
+    @Test
+    public void issuedTokenVerifiesUntilExpiry() {
+        String token = new AuthTokenService(KEY, 60, at(1_000)).issue(42);
+
+        Assert.assertEquals(OptionalInt.of(42), new AuthTokenService(KEY, 60, at(1_059)).verify(token));
+        Assert.assertEquals(OptionalInt.empty(), new AuthTokenService(KEY, 60, at(1_060)).verify(token));
+    }
+
+    /**
+     * Changing any part of the token, or checking it with another key, fails verification.
+     */
+    @Test
+    public void tamperedTokensAreRejected() {
+        AuthTokenService service = new AuthTokenService(KEY, 60, at(1_000));
+        String token = service.issue(42);
+
+        Assert.assertEquals(OptionalInt.empty(), service.verify("43" + token.substring(2)));
+        Assert.assertEquals(OptionalInt.empty(), service.verify(token.replace(".1060.", ".9999.")));
+        Assert.assertEquals(OptionalInt.empty(), service.verify(token + "x"));
+        Assert.assertEquals(OptionalInt.empty(), service.verify("garbage"));
+        Assert.assertEquals(OptionalInt.empty(), service.verify(".."));
+        Assert.assertEquals(OptionalInt.empty(),
+                new AuthTokenService("fedcba9876543210fedcba9876543210".getBytes(), 60, at(1_000)).verify(token));
+    }
+}
@@ -0,0 +1,153 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaController;
+import Model.Message;
+import Model.MessageResult;
+import Service.AuthTokenService;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class BatchMessagesTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, and create a new webClient and ObjectMapper
+     * for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    private HttpResponse<String> post(String path, String body) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080" + path))
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .header("Content-Type", "application/json")
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpResponse<String> get(String path) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080" + path))
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private List<MessageResult> results(HttpResponse<String> response) throws IOException {
+        Assert.assertEquals(200, response.statusCode());
+        return objectMapper.readValue(response.body(), new TypeReference<List<MessageResult>>() {});
+    }
+
+    /**
+     * Sending an http request to POST localhost:8080/messages/batch with two valid messages, one with blank text
+     * and one from an account that does not exist
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: one result per message in request order; only the valid messages are created
+     */
+    @Test
+    public void createMessagesReportsEachItem() throws IOException, InterruptedException {
+        List<MessageResult> results = results(post("/messages/batch", "[" +
+                "{\"posted_by\":1,\"message_text\":\"batch message 1\",\"time_posted_epoch\":1669947793}," +
+                "{\"posted_by\":1,\"message_text\":\" \",\"time_posted_epoch\":1669947794}," +
+                "{\"posted_by\":99,\"message_text\":\"no such account\",\"time_posted_epoch\":1669947795}," +
+                "{\"posted_by\":1,\"message_text\":\"batch message 2\",\"time_posted_epoch\":1669947796}]"));
+
+        Assert.assertEquals(4, results.size());
+        Assert.assertEquals(MessageResult.ok(new Message(2, 1, "batch message 1", 1669947793)), results.get(0));
+        Assert.assertEquals(400, results.get(1).getStatus());
+        Assert.assertNotNull(results.get(1).getError());
+        Assert.assertEquals(400, results.get(2).getStatus());
+        Assert.assertEquals(MessageResult.ok(new Message(3, 1, "batch message 2", 1669947796)), results.get(3));
+
+        List<Message> all = objectMapper.readValue(get("/messages").body(), new TypeReference<List<Message>>() {});
+        Assert.assertEquals(3, all.size());
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages?ids=1,5,1
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: one result per id in request order, 404 for the missing one
+     */
+    @Test
+    public void getMessagesByIds() throws IOException, InterruptedException {
+        Message seeded = new Message(1, 1, "test message 1", 1669947792);
+        List<MessageResult> results = results(get("/messages?ids=1,5,1"));
+
+        Assert.assertEquals(Arrays.asList(MessageResult.ok(seeded), MessageResult.failed(404, "Message not found"),
+                MessageResult.ok(seeded)), results);
+        Assert.assertEquals(400, get("/messages?ids=1,two").statusCode());
+    }
+
+    /**
+     * Sending an http request to POST localhost:8080/messages/batch-delete with [1, 5]
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the deleted message, then 404 for the missing one; the message is gone afterwards
+     */
+    @Test
+    public void deleteMessagesByIds() throws IOException, InterruptedException {
+        List<MessageResult> results = results(post("/messages/batch-delete", "[1, 5]"));
+
+        Assert.assertEquals(Arrays.asList(MessageResult.ok(new Message(1, 1, "test message 1", 1669947792)),
+                MessageResult.failed(404, "Message not found")), results);
+        Assert.assertEquals(404, results(get("/messages?ids=1")).get(0).getStatus());
+        Assert.assertEquals(400, post("/messages/batch-delete", "{\"ids\":[1]}").statusCode());
+    }
+
+    /**
+     * Sending an http request to POST localhost:8080/messages/batch-delete with [5, 1] and a token for
+     * account 2, which did not post message 1
+     *
+     * Expected Response:
+     *  Status Code: 401, and nothing is deleted
+     */
+    @Test
+    public void deleteMessagesOfAnotherAccount() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/batch-delete"))
+                .POST(HttpRequest.BodyPublishers.ofString("[5, 1]"))
+                .header("Content-Type", "application/json")
+                .header("Authorization", "Bearer " + AuthTokenService.getDefault().issue(2))
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+
+        Assert.assertEquals(401, response.statusCode());
+        Assert.assertEquals(200, results(get("/messages?ids=1")).get(0).getStatus());
+    }
+}
@@ -0,0 +1,78 @@
+import org.junit.Assert;
+import org.junit.Test;
+
+import Util.BoundedCache;
+
+public class BoundedCacheTest {
+
+    /**
+     * Values are returned until they are invalidated, and hits and misses are counted.
+     */
+    @Test
+    public void getReturnsCachedValueUntilInvalidated() {
+        BoundedCache<Integer, String> cache = new BoundedCache<>(10, 0);
+        Assert.assertNull(cache.get(1));
+        cache.putIfAbsent(1, "one");
+        Assert.assertEquals("one", cache.get(1));
+
+        cache.put(1, "uno");
+        Assert.assertEquals("uno", cache.get(1));
+
+        cache.invalidate(1);
+        Assert.assertNull(cache.get(1));
+        Assert.assertEquals(2, cache.getHitCount());
+        Assert.assertEquals(2, cache.getMissCount());
+        Assert.assertEquals(0.5, cache.getHitRatio(), 0.0);
+    }
+
+    /**
+     * putIfAbsent never overwrites a value that was put in the meantime.
+     */
+    @Test
+    public void putIfAbsentKeepsNewerValue() {
+        BoundedCache<Integer, String> cache = new BoundedCache<>(10, 0);
+        cache.put(1, "new");
+        cache.putIfAbsent(1, "stale");
+        Assert.assertEquals("new", cache.get(1));
+    }
+
+    /**
+     * Entries stop being returned once their time to live has passed.
+     */
+    @Test
+    public void entriesExpire() throws InterruptedException {
+        BoundedCache<Integer, String> cache = new BoundedCache<>(10, 20);
+        cache.put(1, "one");
+        Thread.sleep(50);
+        Assert.assertNull(cache.get(1));
+        Assert.assertEquals(1, cache.getExpirationCount());
+    }
+
+    /**
+     * A full cache keeps (nearly all of) its frequently read entries when a stream of one-off keys
+     * goes through it. Frequencies are estimates, so an unlucky hash collision may cost a hot entry.
+     */
+    @Test
+    public void frequentEntriesSurviveScan() {
+        BoundedCache<Integer, String> cache = new BoundedCache<>(16, 0);
+        for (int key = 0; key < 16; key++) {
+            for (int read = 0; read < 5; read++) {
+                cache.get(key);
+            }
+            cache.putIfAbsent(key, "hot " + key);
+        }
+        for (int key = 1000; key < 1100; key++) {
+            cache.get(key);
+            cache.putIfAbsent(key, "cold " + key);
+        }
+        Assert.assertTrue(cache.size() <= 16);
+        int survivors = 0;
+        for (int key = 0; key < 16; key++) {
+            if (("hot " + key).equals(cache.get(key))) {
+                survivors++;
+            }
+        }
+        Assert.assertTrue("only " + survivors + " hot entries survived", survivors >= 14);
+        Assert.assertTrue(cache.getRejectionCount() > 0);
+    }
+}
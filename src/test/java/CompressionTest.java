@@ -0,0 +1,187 @@
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaController;
+import Model.Message;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class CompressionTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, and create a new webClient and ObjectMapper
+     * for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    private HttpResponse<byte[]> get(String path, String acceptEncoding) throws IOException, InterruptedException {
+        HttpRequest.Builder request = HttpRequest.newBuilder().uri(URI.create("http://localhost:8080" + path));
+        if (acceptEncoding != null) {
+            request.header("Accept-Encoding", acceptEncoding);
+        }
+        return webClient.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    private void postMessages(int count) throws IOException, InterruptedException {
+        StringBuilder body = new StringBuilder("[");
+        for (int i = 0; i < count; i++) {
+            body.append(i == 0 ? "" : ",").append("{\"posted_by\":1,\"message_text\":\"compressible message ")
+                    .append(i).append("\",\"time_posted_epoch\":").append(1669947793 + i).append('}');
+        }
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/batch"))
+                .POST(HttpRequest.BodyPublishers.ofString(body.append(']').toString()))
+                .build();
+        Assert.assertEquals(200, webClient.send(request, HttpResponse.BodyHandlers.ofString()).statusCode());
+    }
+
+    private static String decode(HttpResponse<byte[]> response) throws IOException {
+        String encoding = response.headers().firstValue("Content-Encoding").orElse("identity");
+        InputStream in = new ByteArrayInputStream(response.body());
+        if (encoding.equals("gzip")) {
+            in = new GZIPInputStream(in);
+        } else if (encoding.equals("deflate")) {
+            in = new InflaterInputStream(in);
+        }
+        return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+    }
+
+    private long listBodyCacheHits() throws IOException, InterruptedException {
+        String metrics = new String(get("/metrics", null).body(), StandardCharsets.UTF_8);
+        Matcher hits = Pattern.compile("cache_hits_total\\{cache=\"message_list_body\"\\} (\\d+)").matcher(metrics);
+        Assert.assertTrue(hits.find());
+        return Long.parseLong(hits.group(1));
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages with Accept-Encoding gzip, then deflate, then none
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the same JSON array each time, compressed with the coding asked for
+     */
+    @Test
+    public void getAllMessagesNegotiatesEncoding() throws IOException, InterruptedException {
+        postMessages(40);
+
+        HttpResponse<byte[]> identity = get("/messages", null);
+        HttpResponse<byte[]> gzip = get("/messages", "gzip, deflate");
+        HttpResponse<byte[]> deflate = get("/messages", "gzip;q=0.5, deflate");
+
+        Assert.assertFalse(identity.headers().firstValue("Content-Encoding").isPresent());
+        Assert.assertEquals("gzip", gzip.headers().firstValue("Content-Encoding").orElse(null));
+        Assert.assertEquals("deflate", deflate.headers().firstValue("Content-Encoding").orElse(null));
+        Assert.assertEquals("Accept-Encoding", gzip.headers().firstValue("Vary").orElse(null));
+        Assert.assertTrue(gzip.body().length < identity.body().length / 2);
+
+        String json = decode(identity);
+        Assert.assertEquals(json, decode(gzip));
+        Assert.assertEquals(json, decode(deflate));
+        List<Message> messages = objectMapper.readValue(json, new TypeReference<List<Message>>() {});
+        Assert.assertEquals(41, messages.size());
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages/1 with Accept-Encoding gzip
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the message, uncompressed because it is below the size threshold
+     */
+    @Test
+    public void smallResponsesAreNotCompressed() throws IOException, InterruptedException {
+        HttpResponse<byte[]> response = get("/messages/1", "gzip");
+
+        Assert.assertEquals(200, response.statusCode());
+        Assert.assertFalse(response.headers().firstValue("Content-Encoding").isPresent());
+        Message message = objectMapper.readValue(response.body(), Message.class);
+        Assert.assertEquals(new Message(1, 1, "test message 1", 1669947792), message);
+    }
+
+    /**
+     * Sending GET localhost:8080/messages twice, then POST localhost:8080/messages, then GET again
+     *
+     * Expected Response:
+     *  The second read is served from the cached body; the read after the post includes the new message
+     */
+    @Test
+    public void repeatedReadsUseCachedBodyUntilMessagesChange() throws IOException, InterruptedException {
+        postMessages(40);
+        String first = decode(get("/messages", "gzip"));
+        long hits = listBodyCacheHits();
+
+        Assert.assertEquals(first, decode(get("/messages", "gzip")));
+        Assert.assertEquals(hits + 1, listBodyCacheHits());
+
+        postMessages(1);
+        List<Message> messages = objectMapper.readValue(decode(get("/messages", "gzip")), new TypeReference<List<Message>>() {});
+        Assert.assertEquals(42, messages.size());
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/accounts/1/messages with Accept-Encoding gzip, then again
+     * with the ETag it returned
+     *
+     * Expected Response:
+     *  Status Code: 200 with a gzip body and the coding in the ETag, then 304 with that same ETag
+     */
+    @Test
+    public void compressedListingsKeepConditionalGets() throws IOException, InterruptedException {
+        postMessages(40);
+
+        HttpResponse<byte[]> response = get("/accounts/1/messages", "gzip");
+        String etag = response.headers().firstValue("ETag").orElse("");
+
+        Assert.assertEquals(200, response.statusCode());
+        Assert.assertEquals("gzip", response.headers().firstValue("Content-Encoding").orElse(null));
+        Assert.assertTrue(etag.endsWith("-gzip\""));
+        Assert.assertEquals(41, objectMapper.readValue(decode(response), new TypeReference<List<Message>>() {}).size());
+
+        HttpRequest conditional = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/accounts/1/messages"))
+                .header("Accept-Encoding", "gzip")
+                .header("If-None-Match", etag)
+                .build();
+        HttpResponse<byte[]> notModified = webClient.send(conditional, HttpResponse.BodyHandlers.ofByteArray());
+        Assert.assertEquals(304, notModified.statusCode());
+        Assert.assertEquals(etag, notModified.headers().firstValue("ETag").orElse(null));
+    }
+}
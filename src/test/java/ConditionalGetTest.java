@@ -0,0 +1,97 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import Controller.SocialMediaController;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class ConditionalGetTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, and create a new webClient
+     * for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    private HttpResponse<String> get(String path, String ifNoneMatch) throws IOException, InterruptedException {
+        HttpRequest.Builder request = HttpRequest.newBuilder().uri(URI.create("http://localhost:8080" + path));
+        if (ifNoneMatch != null) {
+            request.header("If-None-Match", ifNoneMatch);
+        }
+        return webClient.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpResponse<String> send(HttpRequest.Builder builder) throws IOException, InterruptedException {
+        return webClient.send(builder.header("Content-Type", "application/json").build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    /**
+     * GET localhost:8080/messages/1 with the ETag of the previous response is answered 304 with no body,
+     * until the message is updated.
+     */
+    @Test
+    public void getMessageByIdNotModifiedUntilUpdated() throws IOException, InterruptedException {
+        HttpResponse<String> first = get("/messages/1", null);
+        Assert.assertEquals(200, first.statusCode());
+        String etag = first.headers().firstValue("ETag").orElse(null);
+        Assert.assertNotNull(etag);
+
+        HttpResponse<String> unchanged = get("/messages/1", etag);
+        Assert.assertEquals(304, unchanged.statusCode());
+        Assert.assertEquals("", unchanged.body());
+        Assert.assertEquals(304, get("/messages/1", "\"other\", W/" + etag).statusCode());
+
+        send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/1"))
+                .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"message_text\":\"updated message\"}")));
+        HttpResponse<String> changed = get("/messages/1", etag);
+        Assert.assertEquals(200, changed.statusCode());
+        Assert.assertTrue(changed.body().contains("updated message"));
+        Assert.assertNotEquals(etag, changed.headers().firstValue("ETag").orElse(null));
+    }
+
+    /**
+     * GET localhost:8080/accounts/1/messages with the ETag of the previous response is answered 304,
+     * until the account posts another message.
+     */
+    @Test
+    public void getMessagesByAccountIdNotModifiedUntilPosted() throws IOException, InterruptedException {
+        HttpResponse<String> first = get("/accounts/1/messages", null);
+        Assert.assertEquals(200, first.statusCode());
+        String etag = first.headers().firstValue("ETag").orElse(null);
+        Assert.assertNotNull(etag);
+        Assert.assertEquals(304, get("/accounts/1/messages", etag).statusCode());
+
+        send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"posted_by\":1,\"message_text\":\"new post\",\"time_posted_epoch\":1669947793}")));
+        HttpResponse<String> changed = get("/accounts/1/messages", etag);
+        Assert.assertEquals(200, changed.statusCode());
+        Assert.assertTrue(changed.body().contains("new post"));
+    }
+}
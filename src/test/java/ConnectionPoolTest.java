@@ -0,0 +1,225 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+
+import org.h2.engine.SessionLocal;
+import org.h2.jdbc.JdbcConnection;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import Util.ConnectionPool;
+
+public class ConnectionPoolTest {
+
+    ConnectionPool pool;
+
+    /**
+     * Before every test, create a small pool over a private in-memory database.
+     */
+    @Before
+    public void setUp() {
+        JdbcDataSource source = new JdbcDataSource();
+        source.setURL("jdbc:h2:mem:pooltest;DB_CLOSE_DELAY=-1");
+        source.setUser("sa");
+        source.setPassword("sa");
+        pool = new ConnectionPool(source, 2, 0, 200, 60_000, 0, 2);
+    }
+
+    @After
+    public void tearDown() {
+        pool.close();
+    }
+
+    /**
+     * Closing a borrowed connection returns the same physical connection to the pool
+     * instead of opening a new one.
+     */
+    @Test
+    public void closedConnectionsAreReused() throws SQLException {
+        for (int i = 0; i < 5; i++) {
+            try (Connection connection = pool.getConnection()) {
+                Assert.assertTrue(connection.isValid(1));
+            }
+        }
+        Assert.assertEquals(1, pool.getCreatedCount());
+        Assert.assertEquals(5, pool.getBorrowCount());
+        Assert.assertEquals(1, pool.getIdleConnections());
+        Assert.assertEquals(0, pool.getActiveConnections());
+    }
+
+    /**
+     * A full pool makes the next borrower wait, then fail once the max wait has passed.
+     */
+    @Test
+    public void borrowingFromAnExhaustedPoolTimesOut() throws SQLException {
+        Connection first = pool.getConnection();
+        Connection second = pool.getConnection();
+        Assert.assertEquals(1.0, pool.getUtilization(), 0.0);
+        try {
+            pool.getConnection();
+            Assert.fail("Expected the third borrow to time out");
+        } catch (SQLTransientConnectionException expected) {
+            Assert.assertEquals(1, pool.getTimeoutCount());
+        } finally {
+            first.close();
+            second.close();
+        }
+        Assert.assertEquals(2, pool.getTotalConnections());
+    }
+
+    /**
+     * A handle that has been closed cannot be used again, even after its physical
+     * connection has been lent to another borrower.
+     */
+    @Test
+    public void closedHandleCannotBeUsed() throws SQLException {
+        Connection connection = pool.getConnection();
+        connection.close();
+        try (Connection other = pool.getConnection()) {
+            Assert.assertTrue(connection.isClosed());
+            try {
+                connection.createStatement();
+                Assert.fail("Expected a closed handle to reject calls");
+            } catch (SQLException expected) {
+                Assert.assertFalse(other.isClosed());
+            }
+        }
+    }
+
+    /**
+     * Transactions left open by a borrower are rolled back when the connection is returned.
+     */
+    @Test
+    public void returnedConnectionsAreReset() throws SQLException {
+        try (Connection connection = pool.getConnection()) {
+            connection.setAutoCommit(false);
+        }
+        try (Connection connection = pool.getConnection()) {
+            Assert.assertTrue(connection.getAutoCommit());
+        }
+    }
+
+    /**
+     * Preparing the same SQL on a returned connection reuses the cached statement,
+     * and the least recently used statement is evicted once the cache is full.
+     */
+    @Test
+    public void preparedStatementsAreCachedPerConnection() throws SQLException {
+        for (int i = 0; i < 3; i++) {
+            try (Connection connection = pool.getConnection();
+                    PreparedStatement stmt = connection.prepareStatement("SELECT ? + 1")) {
+                stmt.setInt(1, i);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    Assert.assertTrue(rs.next());
+                    Assert.assertEquals(i + 1, rs.getInt(1));
+                }
+            }
+        }
+        Assert.assertEquals(1, pool.getStatementCacheMisses());
+        Assert.assertEquals(2, pool.getStatementCacheHits());
+
+        try (Connection connection = pool.getConnection()) {
+            connection.prepareStatement("SELECT 2").close();
+            connection.prepareStatement("SELECT 3").close();
+        }
+        Assert.assertEquals(1, pool.getStatementCacheEvictions());
+    }
+
+    /**
+     * With the cache full and every cached statement still open, a newly prepared
+     * statement is returned usable rather than evicted and closed.
+     */
+    @Test
+    public void newStatementIsNotEvictedWhenOthersAreInUse() throws SQLException {
+        try (Connection connection = pool.getConnection();
+                PreparedStatement first = connection.prepareStatement("SELECT 1");
+                PreparedStatement second = connection.prepareStatement("SELECT 2");
+                PreparedStatement third = connection.prepareStatement("SELECT 3")) {
+            Assert.assertFalse(third.isClosed());
+            try (ResultSet rs = third.executeQuery()) {
+                Assert.assertTrue(rs.next());
+                Assert.assertEquals(3, rs.getInt(1));
+            }
+            Assert.assertFalse(first.isClosed());
+            Assert.assertFalse(second.isClosed());
+        }
+    }
+
+    /**
+     * A statement that is still open is never handed to a second caller.
+     */
+    @Test
+    public void openCachedStatementIsNotShared() throws SQLException {
+        try (Connection connection = pool.getConnection();
+                PreparedStatement first = connection.prepareStatement("SELECT 1");
+                PreparedStatement second = connection.prepareStatement("SELECT 1")) {
+            Assert.assertNotSame(first, second);
+            try (ResultSet rs = first.executeQuery()) {
+                Assert.assertTrue(rs.next());
+            }
+            Assert.assertSame(connection, first.getConnection());
+        }
+    }
+
+    /**
+     * A pool with minIdle opens that many connections without being asked, and never more
+     * than maxSize.
+     */
+    @Test
+    public void minIdleConnectionsAreOpenedUpFront() throws Exception {
+        JdbcDataSource source = new JdbcDataSource();
+        source.setURL("jdbc:h2:mem:pooltest;DB_CLOSE_DELAY=-1");
+        source.setUser("sa");
+        source.setPassword("sa");
+        try (ConnectionPool filled = new ConnectionPool(source, 3, 3, 200, 60_000, 0, 2)) {
+            long deadline = System.currentTimeMillis() + 5000;
+            while (filled.getIdleConnections() < 3 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            Assert.assertEquals(3, filled.getIdleConnections());
+            Assert.assertEquals(3, filled.getTotalConnections());
+            Assert.assertEquals(0, filled.getBorrowCount());
+
+            try (Connection connection = filled.getConnection()) {
+                Assert.assertTrue(connection.isValid(1));
+            }
+            Assert.assertEquals(3, filled.getCreatedCount());
+        }
+    }
+
+    /**
+     * A borrower's fetch size and session settings do not carry over to the next borrower
+     * of the same connection and cached statement.
+     */
+    @Test
+    public void statementAndSessionSettingsAreResetOnReturn() throws SQLException {
+        int defaultFetchSize;
+        try (Connection connection = pool.getConnection();
+                PreparedStatement stmt = connection.prepareStatement("SELECT 1")) {
+            defaultFetchSize = stmt.getFetchSize();
+            stmt.setFetchSize(defaultFetchSize + 100);
+            try (Statement session = connection.createStatement()) {
+                session.execute("SET LAZY_QUERY_EXECUTION TRUE");
+            }
+            Assert.assertTrue(lazyQueryExecution(connection));
+        }
+        try (Connection connection = pool.getConnection();
+                PreparedStatement stmt = connection.prepareStatement("SELECT 1")) {
+            Assert.assertEquals(1, pool.getCreatedCount());
+            Assert.assertEquals(1, pool.getStatementCacheHits());
+            Assert.assertEquals(defaultFetchSize, stmt.getFetchSize());
+            Assert.assertFalse(lazyQueryExecution(connection));
+        }
+    }
+
+    // H2 does not list the setting in INFORMATION_SCHEMA, so ask the session itself
+    private static boolean lazyQueryExecution(Connection connection) throws SQLException {
+        return ((SessionLocal) connection.unwrap(JdbcConnection.class).getSession()).isLazyQueryExecution();
+    }
+}
@@ -0,0 +1,100 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import Controller.SocialMediaController;
+import Service.AccountService;
+import Service.MessageService;
+import Util.ConnectionUtil;
+import Util.DatabaseExecutor;
+import io.javalin.Javalin;
+
+public class DatabaseExecutorOverloadTest {
+    SocialMediaController socialMediaController;
+    DatabaseExecutor databaseExecutor;
+    CountDownLatch release;
+    HttpClient webClient;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database and start the Javalin app on a database
+     * executor with one thread and room for one queued task, on virtual threads when the
+     * app's request handlers are (mvn -Pjdk21).
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        databaseExecutor = new DatabaseExecutor(1, 1, Boolean.getBoolean(SocialMediaController.VIRTUAL_THREADS_PROPERTY));
+        release = new CountDownLatch(1);
+        socialMediaController = new SocialMediaController(new AccountService(), new MessageService(), databaseExecutor);
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        app.stop();
+        databaseExecutor.close();
+    }
+
+    private void block() {
+        try {
+            release.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages/1 while the executor's
+     * thread and queue are both taken
+     *
+     * Expected Response:
+     *  Status Code: 503
+     *  Retry-After header set
+     */
+    @Test
+    public void overloadedExecutorAnswers503() throws IOException, InterruptedException {
+        databaseExecutor.submit(this::block);
+        databaseExecutor.submit(this::block);
+
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/1"))
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+
+        Assert.assertEquals(503, response.statusCode());
+        Assert.assertEquals("1", response.headers().firstValue("Retry-After").orElse(null));
+        Assert.assertEquals(1, databaseExecutor.getRejectedCount());
+    }
+
+    /**
+     * Once the executor has room again, requests are served normally.
+     */
+    @Test
+    public void requestsAreServedAfterOverload() throws IOException, InterruptedException {
+        databaseExecutor.submit(this::block);
+        databaseExecutor.submit(this::block);
+        release.countDown();
+
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/1"))
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+
+        Assert.assertEquals(200, response.statusCode());
+        Assert.assertTrue(response.body().contains("\"message_id\":1"));
+    }
+}
@@ -14,6 +14,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 
 import Controller.SocialMediaController;
 import Model.Message;
+import Service.AuthTokenService;
 import Util.ConnectionUtil;
 import io.javalin.Javalin;
 
@@ -87,5 +88,32 @@ public class DeleteMessageByMessageIdTest {
         Assert.assertEquals(200, status);
         Assert.assertTrue(response.body().toString().isEmpty());
     }
-    
+
+    /**
+     * Sending an http request to DELETE localhost:8080/messages/1 with a token for account 2, then
+     * with one for account 1, who posted the message
+     *
+     * Expected Response:
+     *  Status Code: 401 and the message kept, then 200 with the deleted message
+     */
+    @Test
+    public void deleteMessageOfAnotherAccount() throws IOException, InterruptedException {
+        HttpResponse<String> response = deleteMessageAs(2);
+
+        Assert.assertEquals(401, response.statusCode());
+        Assert.assertTrue(response.body().isEmpty());
+
+        response = deleteMessageAs(1);
+        Assert.assertEquals(200, response.statusCode());
+        Assert.assertEquals(new Message(1, 1, "test message 1", 1669947792), objectMapper.readValue(response.body(), Message.class));
+    }
+
+    private HttpResponse<String> deleteMessageAs(int accountId) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/1"))
+                .DELETE()
+                .header("Authorization", "Bearer " + AuthTokenService.getDefault().issue(accountId))
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
 }
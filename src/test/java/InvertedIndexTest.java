@@ -0,0 +1,57 @@
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import Util.InvertedIndex;
+
+public class InvertedIndexTest {
+
+    /**
+     * Text is split into lower-case words of at least two letters or digits, each once.
+     */
+    @Test
+    public void tokenizeSplitsOnPunctuation() {
+        Assert.assertEquals(Arrays.asList("hello", "world", "42"),
+                Arrays.asList(InvertedIndex.tokenize("Hello, WORLD! hello a 42").toArray()));
+    }
+
+    /**
+     * AND needs every word and returns the newest first; OR ranks a rare word above a common
+     * one, and more matching words above fewer.
+     */
+    @Test
+    public void searchRanksAndOrQueries() {
+        InvertedIndex index = new InvertedIndex();
+        index.add(1, "coffee and cake");
+        index.add(2, "coffee at noon");
+        index.add(3, "cake for dessert");
+        index.add(4, "coffee again");
+
+        Assert.assertEquals(Arrays.asList(4, 2, 1), index.search("coffee", true, 10));
+        Assert.assertEquals(Arrays.asList(1), index.search("cake coffee", true, 10));
+        Assert.assertEquals(Collections.emptyList(), index.search("coffee tea", true, 10));
+        Assert.assertEquals(Arrays.asList(1, 3, 4, 2), index.search("cake coffee tea", false, 10));
+        Assert.assertEquals(Arrays.asList(1, 3), index.search("cake coffee", false, 2));
+    }
+
+    /**
+     * Updates move a document to its new words, and removed documents are no longer found.
+     */
+    @Test
+    public void updatesAndRemovesAreApplied() {
+        InvertedIndex index = new InvertedIndex();
+        index.add(1, "first draft");
+        index.add(2, "second draft");
+
+        index.update(1, "first draft", "final version");
+        index.remove(2, "second draft");
+
+        Assert.assertEquals(Collections.emptyList(), index.search("draft", false, 10));
+        Assert.assertEquals(Arrays.asList(1), index.search("final", true, 10));
+        Assert.assertEquals(1, index.getDocumentCount());
+        Assert.assertEquals(2, index.getTermCount());
+        Assert.assertEquals(2, index.getPostingCount());
+    }
+}
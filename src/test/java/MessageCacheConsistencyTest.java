@@ -0,0 +1,176 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import DAO.DaoException;
+import DAO.MessageDAO;
+import Model.Message;
+import Model.MessageResult;
+import Service.MessageService;
+import Service.ServiceException;
+import Util.BoundedCache;
+import Util.ConnectionUtil;
+
+public class MessageCacheConsistencyTest {
+
+    /**
+     * Holds the first read back after it has left the database, until released,
+     * so a write can land between a reader's query and its cache fill.
+     */
+    static class PausingMessageDAO extends MessageDAO {
+
+        final CountDownLatch loaded = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        volatile boolean pause = true;
+
+        @Override
+        public Optional<Message> getMessageById(int messageId) throws DaoException {
+            Optional<Message> message = super.getMessageById(messageId);
+            hold();
+            return message;
+        }
+
+        @Override
+        public List<Message> getMessagesByIds(List<Integer> ids) throws DaoException {
+            List<Message> messages = super.getMessagesByIds(ids);
+            hold();
+            return messages;
+        }
+
+        private void hold() {
+            if (!pause) {
+                return;
+            }
+            pause = false;
+            loaded.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    PausingMessageDAO messageDao;
+    MessageService messageService;
+    ExecutorService reader;
+
+    @Before
+    public void setUp() {
+        ConnectionUtil.resetTestDatabase();
+        messageDao = new PausingMessageDAO();
+        messageService = new MessageService(messageDao);
+        reader = Executors.newSingleThreadExecutor();
+    }
+
+    @After
+    public void tearDown() {
+        messageDao.release.countDown();
+        reader.shutdownNow();
+    }
+
+    /**
+     * A reader that loaded message 1 just before it was deleted finishes after the
+     * delete; the deleted message must not be served from the cache afterwards.
+     */
+    @Test
+    public void deletedMessageIsNotCachedByConcurrentRead() throws Exception {
+        Future<Optional<Message>> read = reader.submit(() -> messageService.getMessageById(1));
+        Assert.assertTrue(messageDao.loaded.await(5, TimeUnit.SECONDS));
+
+        Assert.assertTrue(messageService.deleteMessageById(1).isPresent());
+        messageDao.release.countDown();
+        read.get(5, TimeUnit.SECONDS);
+
+        try {
+            messageService.getMessageById(1);
+            Assert.fail("deleted message was served");
+        } catch (ServiceException e) {
+            Assert.assertEquals("Message not found", e.getMessage());
+        }
+    }
+
+    /**
+     * The same, for a batch read that loads message 1 along with others.
+     */
+    @Test
+    public void deletedMessageIsNotCachedByConcurrentBatchRead() throws Exception {
+        Future<List<MessageResult>> read = reader.submit(() -> messageService.getMessagesByIds(List.of(1, 2)));
+        Assert.assertTrue(messageDao.loaded.await(5, TimeUnit.SECONDS));
+
+        Assert.assertTrue(messageService.deleteMessageById(1).isPresent());
+        messageDao.release.countDown();
+        read.get(5, TimeUnit.SECONDS);
+
+        Assert.assertEquals(404, messageService.getMessagesByIds(List.of(1)).get(0).getStatus());
+    }
+
+    /**
+     * The cache turns the updated row away, as TinyLFU admission may, and a reader that
+     * loaded the old row caches it before the update bumps the version. The old text must
+     * not be served afterwards.
+     */
+    @Test
+    public void updateRejectedByCacheIsNotUndercutByConcurrentRead() throws Exception {
+        List<Future<Optional<Message>>> read = new ArrayList<>();
+        BoundedCache<Integer, Message> cache = new BoundedCache<>(16, 0) {
+            private boolean rejected;
+
+            @Override
+            public void put(Integer key, Message value) {
+                if (rejected) {
+                    super.put(key, value);
+                    return;
+                }
+                rejected = true;
+                // let the reader fill the cache with the old row while the version is unchanged
+                messageDao.release.countDown();
+                try {
+                    read.get(0).get(5, TimeUnit.SECONDS);
+                } catch (Exception e) {
+                    throw new AssertionError(e);
+                }
+            }
+        };
+        messageService = new MessageService(messageDao, cache);
+        read.add(reader.submit(() -> messageService.getMessageById(1)));
+        Assert.assertTrue(messageDao.loaded.await(5, TimeUnit.SECONDS));
+
+        messageService.updateMessage(new Message(1, 1, "updated message", 1669947792));
+
+        Assert.assertEquals("updated message", messageService.getMessageById(1).get().getMessage_text());
+    }
+
+    /**
+     * A delete that fails after it was committed must still change the tag of the
+     * account's listing, even though the service never learns who posted the message.
+     */
+    @Test
+    public void failedDeleteChangesAccountTag() {
+        MessageService failingService = new MessageService(new MessageDAO() {
+            @Override
+            public Optional<Message> deleteMessageReturning(int messageId) throws DaoException {
+                super.deleteMessageReturning(messageId);
+                throw new DaoException("Connection lost after commit");
+            }
+        });
+        String before = failingService.getAccountMessagesTag(1);
+
+        try {
+            failingService.deleteMessageById(1);
+            Assert.fail("the delete should have failed");
+        } catch (ServiceException e) {
+            Assert.assertNotEquals(before, failingService.getAccountMessagesTag(1));
+        }
+    }
+}
@@ -0,0 +1,175 @@
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.h2.tools.RunScript;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import DAO.DaoException;
+import DAO.MessageDAO;
+import Model.Message;
+import Model.Account;
+import Service.MessageInsertPipeline;
+import Service.MessageService;
+import Util.BoundedCache;
+import Util.ConnectionPool;
+
+public class MessageInsertPipelineTest {
+
+    ConnectionPool pool;
+    MessageDAO messageDao;
+    MessageInsertPipeline pipeline;
+
+    /**
+     * Before every test, create the tables in a private in-memory database and start a pipeline
+     * that lingers long enough for concurrent posts to share a batch.
+     */
+    @Before
+    public void setUp() throws Exception {
+        JdbcDataSource source = new JdbcDataSource();
+        source.setURL("jdbc:h2:mem:pipelinetest;DB_CLOSE_DELAY=-1");
+        source.setUser("sa");
+        source.setPassword("sa");
+        pool = new ConnectionPool(source, 4, 0, 1_000, 60_000, 0, 8);
+        try (Connection connection = pool.getConnection();
+                Reader script = new InputStreamReader(getClass().getResourceAsStream("/SocialMedia.sql"), StandardCharsets.UTF_8)) {
+            RunScript.execute(connection, script);
+        }
+        messageDao = new MessageDAO(pool);
+        pipeline = new MessageInsertPipeline(messageDao, 16, 20, 100);
+    }
+
+    @After
+    public void tearDown() {
+        pipeline.close();
+        pool.close();
+    }
+
+    /**
+     * Concurrent posts are written in fewer commits than posts, and every caller gets back
+     * its own message with its own generated ID.
+     */
+    @Test
+    public void concurrentPostsShareCommits() throws Exception {
+        ExecutorService callers = Executors.newFixedThreadPool(8);
+        List<Future<Message>> results = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            Message message = new Message(1, "pipelined " + i, 1669947800L + i);
+            results.add(callers.submit(() -> pipeline.submit(message).join()));
+        }
+        Set<Integer> ids = new HashSet<>();
+        for (int i = 0; i < results.size(); i++) {
+            Message created = results.get(i).get();
+            Assert.assertEquals("pipelined " + i, created.getMessage_text());
+            Assert.assertEquals(1669947800L + i, created.getTime_posted_epoch());
+            Assert.assertEquals(created, messageDao.getMessageById(created.getMessage_id()).orElse(null));
+            ids.add(created.getMessage_id());
+        }
+        callers.shutdown();
+
+        Assert.assertEquals(40, ids.size());
+        Assert.assertEquals(41, messageDao.getAllMessages().size());
+        Assert.assertEquals(40, pipeline.getRowCount());
+        Assert.assertTrue(pipeline.getBatchCount() < 40);
+    }
+
+    /**
+     * A message that cannot be inserted fails its own caller only; the rest of its batch is
+     * still written.
+     */
+    @Test
+    public void badRowOnlyFailsItsOwnCaller() throws Exception {
+        CompletableFuture<Message> good = pipeline.submit(new Message(1, "good", 1669947800L));
+        CompletableFuture<Message> bad = pipeline.submit(new Message(999, "no such account", 1669947800L));
+        CompletableFuture<Message> alsoGood = pipeline.submit(new Message(1, "also good", 1669947800L));
+
+        Assert.assertEquals("good", good.join().getMessage_text());
+        Assert.assertEquals("also good", alsoGood.join().getMessage_text());
+        try {
+            bad.join();
+            Assert.fail("Expected the insert to fail");
+        } catch (CompletionException e) {
+            Assert.assertTrue(e.getCause() instanceof DaoException);
+        }
+        Assert.assertEquals(3, messageDao.getAllMessages().size());
+        Assert.assertEquals(1, pipeline.getFallbackCount());
+    }
+
+    /**
+     * While the writer is stuck on a batch and the queue is full, submit fails the new
+     * message straight away instead of blocking its caller; the queued one is still written.
+     */
+    @Test
+    public void fullQueueRejectsWithoutBlocking() throws Exception {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        MessageDAO stalledDao = new MessageDAO(pool) {
+            @Override
+            public List<Message> createMessages(List<Message> messages) throws DaoException {
+                writing.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.createMessages(messages);
+            }
+        };
+        try (MessageInsertPipeline full = new MessageInsertPipeline(stalledDao, 16, 0, 1)) {
+            CompletableFuture<Message> writingNow = full.submit(new Message(1, "in the stalled batch", 1669947800L));
+            Assert.assertTrue(writing.await(5, TimeUnit.SECONDS));
+            CompletableFuture<Message> queued = full.submit(new Message(1, "queued", 1669947800L));
+            CompletableFuture<Message> rejected = full.submit(new Message(1, "rejected", 1669947800L));
+
+            Assert.assertTrue(rejected.isCompletedExceptionally());
+            try {
+                rejected.join();
+                Assert.fail("Expected the submit to be rejected");
+            } catch (CompletionException e) {
+                Assert.assertTrue(e.getCause() instanceof RejectedExecutionException);
+            }
+            Assert.assertEquals(1, full.getRejectedCount());
+
+            release.countDown();
+            Assert.assertEquals("in the stalled batch", writingNow.get(5, TimeUnit.SECONDS).getMessage_text());
+            Assert.assertEquals("queued", queued.get(5, TimeUnit.SECONDS).getMessage_text());
+        }
+    }
+
+    /**
+     * Posts made through createMessageAsync do not wait for their commit, so a single
+     * caller thread can fill a batch.
+     */
+    @Test
+    public void asyncPostsFromOneThreadShareCommits() throws Exception {
+        MessageService messageService = new MessageService(messageDao, new BoundedCache<>(16, 0), pipeline);
+        Account account = new Account(1, "testuser1", "password");
+        List<CompletableFuture<Message>> results = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            results.add(messageService.createMessageAsync(new Message(1, "async " + i, 1669947800L + i), account, Runnable::run));
+        }
+        for (int i = 0; i < results.size(); i++) {
+            Assert.assertEquals("async " + i, results.get(i).get(5, TimeUnit.SECONDS).getMessage_text());
+        }
+
+        Assert.assertEquals(20, pipeline.getRowCount());
+        Assert.assertTrue(pipeline.getBatchCount() < 20);
+    }
+}
@@ -0,0 +1,48 @@
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import Util.LatencyHistogram;
+import Util.Metrics;
+
+public class MetricsTest {
+
+    /**
+     * Samples land in the first bucket whose bound is at least the sample, and the
+     * Prometheus rendering lists cumulative bucket counts, the sum and the count.
+     */
+    @Test
+    public void histogramRendersCumulativeBuckets() {
+        Metrics metrics = new Metrics();
+        LatencyHistogram histogram = metrics.histogram("test_seconds", "Test latencies", "route", "/a");
+        histogram.record(TimeUnit.MICROSECONDS.toNanos(500));
+        histogram.record(TimeUnit.MILLISECONDS.toNanos(3));
+        histogram.record(TimeUnit.SECONDS.toNanos(30));
+
+        String scraped = metrics.scrape();
+        Assert.assertTrue(scraped.contains("# TYPE test_seconds histogram\n"));
+        Assert.assertTrue(scraped.contains("test_seconds_bucket{route=\"/a\",le=\"5.0E-4\"} 1\n"));
+        Assert.assertTrue(scraped.contains("test_seconds_bucket{route=\"/a\",le=\"0.0025\"} 1\n"));
+        Assert.assertTrue(scraped.contains("test_seconds_bucket{route=\"/a\",le=\"0.005\"} 2\n"));
+        Assert.assertTrue(scraped.contains("test_seconds_bucket{route=\"/a\",le=\"10.0\"} 2\n"));
+        Assert.assertTrue(scraped.contains("test_seconds_bucket{route=\"/a\",le=\"+Inf\"} 3\n"));
+        Assert.assertTrue(scraped.contains("test_seconds_count{route=\"/a\"} 3\n"));
+        Assert.assertTrue(scraped.contains("test_seconds_sum{route=\"/a\"} 30.0035\n"));
+    }
+
+    /**
+     * The same name and labels always give back the same counter, and label values are escaped.
+     */
+    @Test
+    public void countersAreSharedByNameAndLabels() {
+        Metrics metrics = new Metrics();
+        metrics.counter("test_total", "Test events", "kind", "say \"hi\"").increment();
+        metrics.counter("test_total", "Test events", "kind", "say \"hi\"").add(2);
+        metrics.gauge("test_level", "Test level", () -> 0.5);
+
+        String scraped = metrics.scrape();
+        Assert.assertTrue(scraped.contains("test_total{kind=\"say \\\"hi\\\"\"} 3\n"));
+        Assert.assertTrue(scraped.contains("# TYPE test_level gauge\ntest_level 0.5\n"));
+    }
+}
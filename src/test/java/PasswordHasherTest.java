@@ -0,0 +1,53 @@
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import Service.PasswordHasher;
+
+public class PasswordHasherTest {
+    PasswordHasher passwordHasher;
+
+    @Before
+    public void setUp() {
+        passwordHasher = new PasswordHasher(1000, 1, 4);
+    }
+
+    @After
+    public void tearDown() {
+        passwordHasher.close();
+    }
+
+    /**
+     * A hash verifies only the password it was made from, and two hashes of the same
+     * password differ because each has its own salt.
+     */
+    @Test
+    public void hashVerifiesOnlyItsPassword() {
+        String hash = passwordHasher.hash("password").join();
+
+        Assert.assertTrue(PasswordHasher.isHashed(hash));
+        Assert.assertNotEquals(hash, passwordHasher.hash("password").join());
+        Assert.assertTrue(passwordHasher.verify("password", hash).join());
+        Assert.assertFalse(passwordHasher.verify("passw0rd", hash).join());
+        Assert.assertFalse(passwordHasher.needsRehash(hash));
+    }
+
+    /**
+     * Plain text stored before hashing still verifies, and is reported for rehashing,
+     * as are hashes made with fewer iterations.
+     */
+    @Test
+    public void legacyValuesNeedRehash() {
+        Assert.assertTrue(passwordHasher.verify("password", "password").join());
+        Assert.assertFalse(passwordHasher.verify("password", "pass").join());
+        Assert.assertTrue(passwordHasher.needsRehash("password"));
+
+        PasswordHasher stronger = new PasswordHasher(2000, 1, 4);
+        try {
+            Assert.assertTrue(stronger.needsRehash(passwordHasher.hash("password").join()));
+        } finally {
+            stronger.close();
+        }
+    }
+}
@@ -0,0 +1,126 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Clock;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import Controller.SocialMediaController;
+import Service.AccountService;
+import Service.AuthTokenService;
+import Service.MessageService;
+import Util.ConnectionUtil;
+import Util.DatabaseExecutor;
+import Util.RateLimiter;
+import io.javalin.Javalin;
+
+public class RateLimitTest {
+    SocialMediaController socialMediaController;
+    AuthTokenService tokenService;
+    HttpClient webClient;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database and start the Javalin app with a write
+     * limit of two requests at once, refilling at one per minute.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        tokenService = new AuthTokenService("0123456789abcdef0123456789abcdef".getBytes(), 60, Clock.systemUTC());
+        socialMediaController = new SocialMediaController(new AccountService(), new MessageService(),
+                DatabaseExecutor.getDefault(), tokenService, new RateLimiter(1.0 / 60, 2, 64));
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+        System.clearProperty(SocialMediaController.TRUST_FORWARDED_FOR_PROPERTY);
+    }
+
+    private HttpResponse<String> postMessage(String authorization) throws IOException, InterruptedException {
+        return send("/messages", "{\"posted_by\":1,\"message_text\":\"limited message\",\"time_posted_epoch\":1669947793}",
+                "Authorization", authorization);
+    }
+
+    private HttpResponse<String> send(String path, String body, String header, String value) throws IOException, InterruptedException {
+        HttpRequest.Builder request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080" + path))
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .header("Content-Type", "application/json");
+        if (value != null) {
+            request.header(header, value);
+        }
+        return webClient.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    /**
+     * Sending three POST localhost:8080/messages requests without a token, then one with a token,
+     * then GET localhost:8080/messages/1
+     *
+     * Expected Response:
+     *  Status Code: 200, 200, then 429 with a Retry-After header; the authenticated account has
+     *  its own limit, and reads are not limited
+     */
+    @Test
+    public void writesOverTheLimitAnswer429() throws IOException, InterruptedException {
+        Assert.assertEquals(200, postMessage(null).statusCode());
+        Assert.assertEquals(200, postMessage(null).statusCode());
+
+        HttpResponse<String> limited = postMessage(null);
+        Assert.assertEquals(429, limited.statusCode());
+        long retryAfter = Long.parseLong(limited.headers().firstValue("Retry-After").orElse("0"));
+        Assert.assertTrue(retryAfter > 0 && retryAfter <= 60);
+
+        Assert.assertEquals(200, postMessage("Bearer " + tokenService.issue(1)).statusCode());
+        HttpRequest read = HttpRequest.newBuilder().uri(URI.create("http://localhost:8080/messages/1")).build();
+        Assert.assertEquals(200, webClient.send(read, HttpResponse.BodyHandlers.ofString()).statusCode());
+    }
+
+    /**
+     * Sending POST localhost:8080/messages/batch-delete with three ids, then POST localhost:8080/messages
+     *
+     * Expected Response:
+     *  Status Code: 200, as the bucket is full, but the batch costs three permits of a burst of two;
+     *  then 429 with a Retry-After of two minutes, one for the permit owed and one for the next
+     */
+    @Test
+    public void batchesAreChargedPerMessage() throws IOException, InterruptedException {
+        Assert.assertEquals(200, send("/messages/batch-delete", "[1, 2, 3]", null, null).statusCode());
+
+        HttpResponse<String> limited = postMessage(null);
+        Assert.assertEquals(429, limited.statusCode());
+        Assert.assertEquals("120", limited.headers().firstValue("Retry-After").orElse(null));
+    }
+
+    /**
+     * With ratelimit.trustForwardedFor, callers without a token behind the same proxy are told
+     * apart by the address the proxy appended to X-Forwarded-For, not by any earlier entry
+     */
+    @Test
+    public void forwardedAddressesHaveTheirOwnLimit() throws IOException, InterruptedException {
+        app.stop();
+        System.setProperty(SocialMediaController.TRUST_FORWARDED_FOR_PROPERTY, "true");
+        socialMediaController = new SocialMediaController(new AccountService(), new MessageService(),
+                DatabaseExecutor.getDefault(), tokenService, new RateLimiter(1.0 / 60, 2, 64));
+        app = socialMediaController.startAPI();
+        app.start(8080);
+        Thread.sleep(1000);
+
+        String body = "{\"posted_by\":1,\"message_text\":\"limited message\",\"time_posted_epoch\":1669947793}";
+        Assert.assertEquals(200, send("/messages", body, "X-Forwarded-For", "spoofed, 203.0.113.1").statusCode());
+        Assert.assertEquals(200, send("/messages", body, "X-Forwarded-For", "other, 203.0.113.1").statusCode());
+        Assert.assertEquals(429, send("/messages", body, "X-Forwarded-For", "203.0.113.1").statusCode());
+        Assert.assertEquals(200, send("/messages", body, "X-Forwarded-For", "203.0.113.2").statusCode());
+    }
+}
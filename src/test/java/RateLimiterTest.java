@@ -0,0 +1,76 @@
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import Util.RateLimiter;
+
+public class RateLimiterTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * A key can spend its whole burst at once, is then told how long until its
+     * next permit, and earns permits back at the configured rate.
+     */
+    @Test
+    public void burstThenRefill() {
+        RateLimiter limiter = new RateLimiter(2, 3, 64);
+        long now = 1_000 * SECOND;
+
+        for (int i = 0; i < 3; i++) {
+            Assert.assertEquals(0, limiter.tryAcquire(7, 1, now));
+        }
+        Assert.assertEquals(SECOND / 2, limiter.tryAcquire(7, 1, now));
+        Assert.assertEquals(0, limiter.tryAcquire(7, 1, now + SECOND / 2));
+        Assert.assertTrue(limiter.tryAcquire(7, 1, now + SECOND / 2) > 0);
+
+        // idle long enough to refill completely, and no further
+        long later = now + 60 * SECOND;
+        for (int i = 0; i < 3; i++) {
+            Assert.assertEquals(0, limiter.tryAcquire(7, 1, later));
+        }
+        Assert.assertTrue(limiter.tryAcquire(7, 1, later) > 0);
+        Assert.assertEquals(7, limiter.getAllowedCount());
+        Assert.assertEquals(3, limiter.getLimitedCount());
+    }
+
+    /**
+     * Several permits are taken at once. More than burst takes a full bucket and
+     * leaves the key waiting until the extra permits would have been earned.
+     */
+    @Test
+    public void manyPermitsAtOnce() {
+        RateLimiter limiter = new RateLimiter(1, 4, 64);
+        long now = 1_000 * SECOND;
+
+        Assert.assertEquals(0, limiter.tryAcquire(7, 3, now));
+        Assert.assertEquals(2 * SECOND, limiter.tryAcquire(7, 3, now));
+        Assert.assertEquals(0, limiter.tryAcquire(7, 1, now));
+
+        long later = now + 60 * SECOND;
+        Assert.assertEquals(0, limiter.tryAcquire(7, 10, later));
+        Assert.assertEquals(7 * SECOND, limiter.tryAcquire(7, 1, later));
+        Assert.assertEquals(0, limiter.tryAcquire(7, 1, later + 7 * SECOND));
+    }
+
+    /**
+     * Keys have separate buckets, and a full table makes room for new keys by
+     * evicting buckets instead of growing.
+     */
+    @Test
+    public void keysAreIndependentAndTableStaysBounded() {
+        RateLimiter limiter = new RateLimiter(1, 1, 4);
+        long now = 1_000 * SECOND;
+
+        Assert.assertEquals(0, limiter.tryAcquire(1, 1, now));
+        Assert.assertEquals(0, limiter.tryAcquire(2, 1, now));
+        Assert.assertTrue(limiter.tryAcquire(1, 1, now) > 0);
+
+        for (long key = 100; key < 1_100; key++) {
+            Assert.assertEquals(0, limiter.tryAcquire(key, 1, now));
+        }
+        Assert.assertEquals(4, limiter.getTableSize());
+        Assert.assertTrue(limiter.getEvictionCount() > 0);
+    }
+}
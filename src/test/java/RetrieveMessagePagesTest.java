@@ -0,0 +1,211 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaController;
+import Model.Message;
+import Model.MessagePage;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class RetrieveMessagePagesTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, and create a new webClient and ObjectMapper
+     * for interacting locally on the web. Two more messages are posted so there is more than one page.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException, IOException {
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        app.start(8080);
+        Thread.sleep(1000);
+        postMessage("test message 2", 1669947793);
+        postMessage("test message 3", 1669947794);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    private void postMessage(String text, long epoch) throws IOException, InterruptedException {
+        HttpRequest postRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString("{" +
+                        "\"posted_by\":1, " +
+                        "\"message_text\": \"" + text + "\", " +
+                        "\"time_posted_epoch\": " + epoch + " }"))
+                .header("Content-Type", "application/json")
+                .build();
+        webClient.send(postRequest, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpResponse<String> get(String path) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080" + path))
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    /**
+     * Following the next cursor from GET localhost:8080/messages?limit=2 walks every message exactly once.
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: a page of two messages with a next cursor, then a page of one message without one
+     */
+    @Test
+    public void getMessagePagesFollowingCursor() throws IOException, InterruptedException {
+        HttpResponse<String> response = get("/messages?limit=2");
+        Assert.assertEquals(200, response.statusCode());
+        MessagePage first = objectMapper.readValue(response.body(), MessagePage.class);
+
+        List<Message> expectedFirst = new ArrayList<>();
+        expectedFirst.add(new Message(1, 1, "test message 1", 1669947792));
+        expectedFirst.add(new Message(2, 1, "test message 2", 1669947793));
+        Assert.assertEquals(expectedFirst, first.getItems());
+        Assert.assertNotNull(first.getNext());
+
+        response = get("/messages?limit=2&cursor=" + first.getNext());
+        Assert.assertEquals(200, response.statusCode());
+        MessagePage second = objectMapper.readValue(response.body(), MessagePage.class);
+
+        List<Message> expectedSecond = new ArrayList<>();
+        expectedSecond.add(new Message(3, 1, "test message 3", 1669947794));
+        Assert.assertEquals(expectedSecond, second.getItems());
+        Assert.assertNull(second.getNext());
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/accounts/1/messages?limit=1
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the account's first message and a next cursor
+     */
+    @Test
+    public void getMessagePageForUser() throws IOException, InterruptedException {
+        HttpResponse<String> response = get("/accounts/1/messages?limit=1");
+        Assert.assertEquals(200, response.statusCode());
+        MessagePage page = objectMapper.readValue(response.body(), MessagePage.class);
+
+        List<Message> expected = new ArrayList<>();
+        expected.add(new Message(1, 1, "test message 1", 1669947792));
+        Assert.assertEquals(expected, page.getItems());
+        Assert.assertNotNull(page.getNext());
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages with a cursor that was not issued by the server
+     *
+     * Expected Response:
+     *  Status Code: 400
+     */
+    @Test
+    public void getMessagePageInvalidCursor() throws IOException, InterruptedException {
+        HttpResponse<String> response = get("/messages?cursor=not-a-cursor");
+        Assert.assertEquals(400, response.statusCode());
+
+        response = get("/messages?limit=0");
+        Assert.assertEquals(400, response.statusCode());
+    }
+
+    /**
+     * Following the next cursor from GET localhost:8080/messages?order=desc&limit=2 walks every message newest
+     * first, with messages posted at the same time ordered by message id.
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: pages of two, two and no more messages, newest first
+     */
+    @Test
+    public void getMessageTimelineNewestFirst() throws IOException, InterruptedException {
+        postMessage("test message 4", 1669947793);
+
+        HttpResponse<String> response = get("/messages?order=desc&limit=2");
+        Assert.assertEquals(200, response.statusCode());
+        MessagePage first = objectMapper.readValue(response.body(), MessagePage.class);
+
+        List<Message> expectedFirst = new ArrayList<>();
+        expectedFirst.add(new Message(3, 1, "test message 3", 1669947794));
+        expectedFirst.add(new Message(4, 1, "test message 4", 1669947793));
+        Assert.assertEquals(expectedFirst, first.getItems());
+        Assert.assertNotNull(first.getNext());
+
+        response = get("/messages?order=desc&limit=2&cursor=" + first.getNext());
+        Assert.assertEquals(200, response.statusCode());
+        MessagePage second = objectMapper.readValue(response.body(), MessagePage.class);
+
+        List<Message> expectedSecond = new ArrayList<>();
+        expectedSecond.add(new Message(2, 1, "test message 2", 1669947793));
+        expectedSecond.add(new Message(1, 1, "test message 1", 1669947792));
+        Assert.assertEquals(expectedSecond, second.getItems());
+        Assert.assertNull(second.getNext());
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages?since=1669947793&until=1669947794, and the same
+     * range for account 1
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: only the message posted at 1669947793; until is exclusive
+     */
+    @Test
+    public void getMessageTimelineTimeRange() throws IOException, InterruptedException {
+        List<Message> expected = new ArrayList<>();
+        expected.add(new Message(2, 1, "test message 2", 1669947793));
+
+        HttpResponse<String> response = get("/messages?since=1669947793&until=1669947794");
+        Assert.assertEquals(200, response.statusCode());
+        MessagePage page = objectMapper.readValue(response.body(), MessagePage.class);
+        Assert.assertEquals(expected, page.getItems());
+        Assert.assertNull(page.getNext());
+
+        response = get("/accounts/1/messages?since=1669947793&until=1669947794&order=desc");
+        Assert.assertEquals(200, response.statusCode());
+        page = objectMapper.readValue(response.body(), MessagePage.class);
+        Assert.assertEquals(expected, page.getItems());
+
+        response = get("/accounts/2/messages?since=1669947793");
+        Assert.assertEquals(200, response.statusCode());
+        page = objectMapper.readValue(response.body(), MessagePage.class);
+        Assert.assertTrue(page.getItems().isEmpty());
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages with a bad since, order or cursor
+     *
+     * Expected Response:
+     *  Status Code: 400
+     */
+    @Test
+    public void getMessageTimelineInvalidParameters() throws IOException, InterruptedException {
+        Assert.assertEquals(400, get("/messages?since=yesterday").statusCode());
+        Assert.assertEquals(400, get("/messages?order=sideways").statusCode());
+
+        // a cursor from an id-ordered listing does not say where a timeline left off
+        MessagePage page = objectMapper.readValue(get("/messages?limit=1").body(), MessagePage.class);
+        Assert.assertEquals(400, get("/messages?order=desc&cursor=" + page.getNext()).statusCode());
+    }
+}
@@ -0,0 +1,95 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import Controller.SocialMediaController;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class RetrieveMetricsTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, and create a new webClient
+     * for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages/1 and then GET localhost:8080/metrics
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: Prometheus text with the request counted under its route template,
+     *  a latency histogram for the route, DAO timings, connection pool statistics and the
+     *  username filter's false positive rates
+     */
+    @Test
+    public void getMetricsAfterRequest() throws IOException, InterruptedException {
+        HttpRequest messageRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/1"))
+                .build();
+        webClient.send(messageRequest, HttpResponse.BodyHandlers.ofString());
+
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/metrics"))
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+        String body = response.body();
+
+        Assert.assertEquals(200, response.statusCode());
+        Assert.assertTrue(response.headers().firstValue("Content-Type").orElse("").startsWith("text/plain"));
+        Assert.assertTrue(body.contains("http_requests_total{method=\"GET\",route=\"/messages/{message_id}\",status=\"200\"}"));
+        Assert.assertTrue(body.contains("http_request_duration_seconds_count{method=\"GET\",route=\"/messages/{message_id}\"}"));
+        Assert.assertTrue(body.contains("dao_operation_seconds_count{operation=\"MessageDAO.getMessageById\"}"));
+        Assert.assertTrue(body.contains("db_pool_active_connections{pool=\"main\"}"));
+        Assert.assertTrue(body.contains("db_pool_utilization{pool=\"main\"}"));
+        Assert.assertTrue(body.contains("cache_hits_total{cache=\"messages\"}"));
+        Assert.assertTrue(body.contains("username_filter_false_positive_rate{kind=\"expected\"}"));
+        Assert.assertTrue(body.contains("username_filter_false_positive_rate{kind=\"observed\"}"));
+    }
+
+    /**
+     * Requests for paths with no route are counted under a single series, not one per path.
+     */
+    @Test
+    public void unmatchedPathsShareOneSeries() throws IOException, InterruptedException {
+        for (String path : new String[] { "/nope", "/nope/again" }) {
+            HttpRequest request = HttpRequest.newBuilder()
+                    .uri(URI.create("http://localhost:8080" + path))
+                    .build();
+            Assert.assertEquals(404, webClient.send(request, HttpResponse.BodyHandlers.ofString()).statusCode());
+        }
+
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/metrics"))
+                .build();
+        String body = webClient.send(request, HttpResponse.BodyHandlers.ofString()).body();
+
+        Assert.assertTrue(body.contains("http_requests_total{method=\"GET\",route=\"unmatched\",status=\"404\"}"));
+        Assert.assertFalse(body.contains("/nope"));
+    }
+}
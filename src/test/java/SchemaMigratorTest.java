@@ -0,0 +1,51 @@
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import Util.SchemaMigrator;
+
+public class SchemaMigratorTest {
+
+    JdbcDataSource dataSource;
+
+    /**
+     * Before every test, point the migrator at a fresh, empty in-memory database.
+     */
+    @Before
+    public void setUp() throws SQLException {
+        dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:migrationtest;DB_CLOSE_DELAY=-1");
+        dataSource.setUser("sa");
+        dataSource.setPassword("sa");
+        try (Connection connection = dataSource.getConnection(); Statement stmt = connection.createStatement()) {
+            stmt.execute("DROP ALL OBJECTS");
+        }
+    }
+
+    /**
+     * Migrating an empty database creates the tables and indexes and records every version;
+     * migrating again changes nothing.
+     */
+    @Test
+    public void migrateIsAppliedOnce() throws SQLException {
+        SchemaMigrator migrator = new SchemaMigrator(dataSource);
+        Assert.assertEquals(3, migrator.migrate());
+        Assert.assertEquals(3, migrator.currentVersion());
+        Assert.assertEquals(0, migrator.migrate());
+
+        try (Connection connection = dataSource.getConnection(); Statement stmt = connection.createStatement();
+                ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM INFORMATION_SCHEMA.INDEXES "
+                        + "WHERE INDEX_NAME IN ('MESSAGE_POSTED_BY_MESSAGE_ID', 'MESSAGE_TIME_POSTED_EPOCH_ASC', "
+                        + "'MESSAGE_TIME_POSTED_EPOCH_DESC', 'MESSAGE_POSTED_BY_TIME_POSTED_EPOCH_ASC', "
+                        + "'MESSAGE_POSTED_BY_TIME_POSTED_EPOCH_DESC', 'MESSAGE_TIME_POSTED_EPOCH')")) {
+            rs.next();
+            Assert.assertEquals(5, rs.getInt(1));
+        }
+    }
+}
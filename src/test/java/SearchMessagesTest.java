@@ -0,0 +1,104 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaController;
+import Model.Message;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class SearchMessagesTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, and create a new webClient and ObjectMapper
+     * for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    private HttpResponse<String> search(String query) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/search?" + query))
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private List<Message> searchFor(String words, String mode) throws IOException, InterruptedException {
+        HttpResponse<String> response = search("q=" + URLEncoder.encode(words, StandardCharsets.UTF_8) + "&mode=" + mode);
+        Assert.assertEquals(200, response.statusCode());
+        return objectMapper.readValue(response.body(), new TypeReference<List<Message>>() {});
+    }
+
+    private HttpResponse<String> send(HttpRequest.Builder builder) throws IOException, InterruptedException {
+        return webClient.send(builder.header("Content-Type", "application/json").build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    /**
+     * The seeded message is indexed at startup, messages posted afterwards are found straight away,
+     * and an update or delete changes what matches.
+     */
+    @Test
+    public void searchFollowsCreateUpdateAndDelete() throws IOException, InterruptedException {
+        Assert.assertEquals(Arrays.asList(new Message(1, 1, "test message 1", 1669947792)), searchFor("TEST message", "and"));
+
+        send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"posted_by\":1,\"message_text\":\"hello search\",\"time_posted_epoch\":1669947793}")));
+        Assert.assertEquals(Arrays.asList(new Message(2, 1, "hello search", 1669947793)), searchFor("hello", "and"));
+        Assert.assertEquals(2, searchFor("hello test", "or").size());
+
+        send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/2"))
+                .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"message_text\":\"goodbye search\"}")));
+        Assert.assertTrue(searchFor("hello", "and").isEmpty());
+        Assert.assertEquals(Arrays.asList(new Message(2, 1, "goodbye search", 1669947793)), searchFor("goodbye", "and"));
+
+        send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/1"))
+                .DELETE());
+        Assert.assertTrue(searchFor("test", "or").isEmpty());
+    }
+
+    /**
+     * A missing or blank query, or an unknown mode, is a bad request.
+     */
+    @Test
+    public void searchRejectsBadQueries() throws IOException, InterruptedException {
+        Assert.assertEquals(400, search("").statusCode());
+        Assert.assertEquals(400, search("q=%20").statusCode());
+        Assert.assertEquals(400, search("q=test&mode=xor").statusCode());
+        Assert.assertEquals(400, search("q=test&limit=0").statusCode());
+    }
+}
@@ -0,0 +1,134 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaController;
+import Model.Message;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class StreamAllMessagesTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, and create a new webClient and ObjectMapper
+     * for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException, IOException {
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        app.start(8080);
+        Thread.sleep(1000);
+        HttpRequest postRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString("{" +
+                        "\"posted_by\":1, " +
+                        "\"message_text\": \"test message 2\", " +
+                        "\"time_posted_epoch\": 1669947793 }"))
+                .header("Content-Type", "application/json")
+                .build();
+        webClient.send(postRequest, HttpResponse.BodyHandlers.ofString());
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages with Accept: application/x-ndjson
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: one JSON message per line
+     */
+    @Test
+    public void streamMessagesAsNdjson() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .header("Accept", "application/x-ndjson")
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+
+        Assert.assertEquals(200, response.statusCode());
+        Assert.assertTrue(response.headers().firstValue("Content-Type").orElse("").startsWith("application/x-ndjson"));
+
+        String[] lines = response.body().split("\n");
+        Assert.assertEquals(2, lines.length);
+        Assert.assertEquals(new Message(1, 1, "test message 1", 1669947792), objectMapper.readValue(lines[0], Message.class));
+        Assert.assertEquals(new Message(2, 1, "test message 2", 1669947793), objectMapper.readValue(lines[1], Message.class));
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages?stream=true
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the same JSON array as the unstreamed listing
+     */
+    @Test
+    public void streamMessagesAsJsonArray() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages?stream=true"))
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+
+        Assert.assertEquals(200, response.statusCode());
+        List<Message> expectedResult = new ArrayList<>();
+        expectedResult.add(new Message(1, 1, "test message 1", 1669947792));
+        expectedResult.add(new Message(2, 1, "test message 2", 1669947793));
+        List<Message> actualResult = objectMapper.readValue(response.body(), new TypeReference<List<Message>>(){});
+        Assert.assertEquals(expectedResult, actualResult);
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages?stream=true when no more streams may run at once
+     *
+     * Expected Response:
+     *  Status Code: 503 with a Retry-After header, while the unstreamed listing is still served
+     */
+    @Test
+    public void streamsPastTheLimitAreRejected() throws IOException, InterruptedException {
+        app.stop();
+        System.setProperty(SocialMediaController.MAX_STREAMS_PROPERTY, "0");
+        try {
+            socialMediaController = new SocialMediaController();
+        } finally {
+            System.clearProperty(SocialMediaController.MAX_STREAMS_PROPERTY);
+        }
+        app = socialMediaController.startAPI();
+        app.start(8080);
+        Thread.sleep(1000);
+
+        HttpResponse<String> streamed = webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages?stream=true"))
+                .build(), HttpResponse.BodyHandlers.ofString());
+        Assert.assertEquals(503, streamed.statusCode());
+        Assert.assertTrue(streamed.headers().firstValue("Retry-After").isPresent());
+
+        HttpResponse<String> listed = webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .build(), HttpResponse.BodyHandlers.ofString());
+        Assert.assertEquals(200, listed.statusCode());
+    }
+}
@@ -13,6 +13,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 
 import Controller.SocialMediaController;
 import Model.Message;
+import Service.AuthTokenService;
 import Util.ConnectionUtil;
 import io.javalin.Javalin;
 
@@ -72,6 +73,39 @@ public class UpdateMessageTextTest {
     }
 
 
+    /**
+     * Sending an http request to PATCH localhost:8080/messages/1 with a token for account 2, then
+     * with one for account 1, who posted the message
+     *
+     * Expected Response:
+     *  Status Code: 401 and the message unchanged, then 200
+     */
+    @Test
+    public void updateMessageOfAnotherAccount() throws IOException, InterruptedException {
+        HttpResponse<String> response = patchMessageAs(2);
+
+        Assert.assertEquals(401, response.statusCode());
+        Assert.assertTrue(response.body().isEmpty());
+
+        HttpRequest getRequest = HttpRequest.newBuilder().uri(URI.create("http://localhost:8080/messages/1")).build();
+        Message unchanged = objectMapper.readValue(webClient.send(getRequest, HttpResponse.BodyHandlers.ofString()).body(), Message.class);
+        Assert.assertEquals(new Message(1, 1, "test message 1", 1669947792), unchanged);
+
+        Assert.assertEquals(200, patchMessageAs(1).statusCode());
+    }
+
+    private HttpResponse<String> patchMessageAs(int accountId) throws IOException, InterruptedException {
+        HttpRequest patchRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/1"))
+                .method("PATCH", HttpRequest.BodyPublishers.ofString("{"+
+                        "\"message_text\": \"updated message\" }"))
+                .header("Content-Type", "application/json")
+                .header("Authorization", "Bearer " + AuthTokenService.getDefault().issue(accountId))
+                .build();
+        return webClient.send(patchRequest, HttpResponse.BodyHandlers.ofString());
+    }
+
+
     /**
      * Sending an http request to PATCH localhost:8080/messages/1 (message id does NOT exist in db) 
      * 
@@ -3,6 +3,10 @@ import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 
 import org.junit.After;
 import org.junit.Assert;
@@ -119,4 +123,85 @@ public class UserLoginTest {
         Assert.assertEquals("", response.body().toString());
 
     }
+
+    /**
+     * Sending an http request to POST localhost:8080/login with valid credentials, then
+     * POST localhost:8080/messages with the returned token for that account and for another one
+     *
+     * Expected Response:
+     *  Login: Status Code 200 with an X-Auth-Token header
+     *  Posting as the token's account: Status Code 200
+     *  Posting as another account, or with a forged token: Status Code 401
+     */
+    @Test
+    public void loginIssuesBearerToken() throws IOException, InterruptedException {
+        HttpRequest loginRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/login"))
+                .POST(HttpRequest.BodyPublishers.ofString("{" +
+                        "\"username\": \"testuser1\", " +
+                        "\"password\": \"password\" }"))
+                .header("Content-Type", "application/json")
+                .build();
+        HttpResponse<String> loginResponse = webClient.send(loginRequest, HttpResponse.BodyHandlers.ofString());
+        String token = loginResponse.headers().firstValue(SocialMediaController.AUTH_TOKEN_HEADER).orElse(null);
+
+        Assert.assertEquals(200, loginResponse.statusCode());
+        Assert.assertNotNull(token);
+
+        Assert.assertEquals(200, postMessageAs(1, "Bearer " + token).statusCode());
+        Assert.assertEquals(401, postMessageAs(2, "Bearer " + token).statusCode());
+        Assert.assertEquals(401, postMessageAs(1, "Bearer 1.9999999999.forged").statusCode());
+    }
+
+    private HttpResponse<String> postMessageAs(int postedBy, String authorization) throws IOException, InterruptedException {
+        HttpRequest postRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString("{" +
+                        "\"posted_by\":" + postedBy + ", " +
+                        "\"message_text\": \"hello message\", " +
+                        "\"time_posted_epoch\": 1669947792}"))
+                .header("Content-Type", "application/json")
+                .header("Authorization", authorization)
+                .build();
+        return webClient.send(postRequest, HttpResponse.BodyHandlers.ofString());
+    }
+
+    /**
+     * testuser1 is seeded with a plain text password. Logging in replaces it with a hash,
+     * and the same password keeps working afterwards.
+     */
+    @Test
+    public void loginUpgradesPlaintextPassword() throws IOException, InterruptedException, SQLException {
+        HttpRequest postRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/login"))
+                .POST(HttpRequest.BodyPublishers.ofString("{" +
+                        "\"username\": \"testuser1\", " +
+                        "\"password\": \"password\" }"))
+                .header("Content-Type", "application/json")
+                .build();
+        Assert.assertEquals(200, webClient.send(postRequest, HttpResponse.BodyHandlers.ofString()).statusCode());
+
+        // the upgrade happens after the response
+        String stored = storedPassword("testuser1");
+        for (int i = 0; i < 50 && "password".equals(stored); i++) {
+            Thread.sleep(100);
+            stored = storedPassword("testuser1");
+        }
+        Assert.assertTrue(stored.startsWith("pbkdf2_sha256$"));
+
+        HttpResponse<String> response = webClient.send(postRequest, HttpResponse.BodyHandlers.ofString());
+        Assert.assertEquals(200, response.statusCode());
+        Assert.assertEquals(new Account(1, "testuser1", "password"), objectMapper.readValue(response.body(), Account.class));
+    }
+
+    private String storedPassword(String username) throws SQLException {
+        try (Connection connection = ConnectionUtil.getConnection();
+                PreparedStatement stmt = connection.prepareStatement("SELECT password FROM account WHERE username = ?")) {
+            stmt.setString(1, username);
+            try (ResultSet rs = stmt.executeQuery()) {
+                rs.next();
+                return rs.getString(1);
+            }
+        }
+    }
 }